@@ -0,0 +1,217 @@
+package org.jivesoftware.util.cache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jivesoftware.openfire.SessionManager;
+import org.jivesoftware.openfire.cluster.ClusterNode;
+import org.jivesoftware.openfire.cluster.ClusterNodeStatus;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.jivesoftware.openfire.filetransfer.proxy.ClusterCrossProxyInfo;
+import org.jivesoftware.openfire.filetransfer.proxy.ProxyConnectionManager;
+import org.jivesoftware.openfire.filetransfer.proxy.credentials.ProxyServerCredential;
+import org.jivesoftware.openfire.muc.spi.LocalMUCRoom;
+import org.jivesoftware.openfire.muc.spi.LocalMUCRoomManager;
+import org.jivesoftware.openfire.muc.spi.RemoteMUCCache;
+import org.jivesoftware.openfire.roster.Roster;
+import org.jivesoftware.openfire.roster.RosterItem;
+import org.jivesoftware.openfire.roster.RosterItem.AskType;
+import org.jivesoftware.openfire.roster.RosterItem.RecvType;
+import org.jivesoftware.openfire.roster.RosterItem.SubType;
+import org.jivesoftware.openfire.session.ClientSessionInfo;
+import org.jivesoftware.openfire.session.DomainPair;
+import org.jivesoftware.openfire.session.LocalClientSession;
+import org.jivesoftware.openfire.spi.ClientRoute;
+import org.jivesoftware.openfire.spi.RoutingTableImpl;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Presence;
+
+/**
+ * The typed caches created by the RedisDelegatedClusterCacheFactory along with realistic keys and values for each.
+ * @since 1.0
+ */
+public enum BenchmarkCacheType
+{
+	C2S_ROUTES(RoutingTableImpl.C2S_CACHE_NAME),
+	
+	S2S_ROUTES(RoutingTableImpl.S2S_CACHE_NAME),
+	
+	COMPONENT_ROUTES(RoutingTableImpl.COMPONENT_CACHE_NAME),
+	
+	C2S_SESSIONS(RoutingTableImpl.C2S_SESSION_NAME),
+	
+	CLIENT_SESSION_INFO(SessionManager.C2S_INFO_CACHE_NAME),
+	
+	ROSTER(ClusteredCacheFactory.ROSTER_CACHE_NAME),
+	
+	CLUSTER_CROSS_PROXY(ProxyConnectionManager.CLUSTER_CROSS_PROXY_MAP_CACHE_NAME),
+	
+	MUC_NICK_JID(RemoteMUCCache.MUC_NICK_JID_CACHE_NAME),
+	
+	MUC_OCCUPANTS(RemoteMUCCache.MUC_OCCUPANT_CACHE_NAME),
+	
+	LOCAL_MUC_ROOM(LocalMUCRoomManager.LOCAL_ROOM_MANAGER_CACHE_BASE_NAME + "conference.benchmark.com"),
+	
+	GENERIC("Benchmark Generic Cache");
+	
+	protected static final String DOMAIN = "benchmark.com";
+	
+	private final String cacheName;
+	
+	private BenchmarkCacheType(String cacheName)
+	{
+		this.cacheName = cacheName;
+	}
+	
+	/**
+	 * Gets the name the factory creates this cache type for.
+	 * @return The cache name.
+	 */
+	public String getCacheName()
+	{
+		return cacheName;
+	}
+	
+	/**
+	 * Creates the key of an entry.
+	 * @param index The index of the entry.
+	 * @return The key of the entry.
+	 */
+	public Object createKey(int index)
+	{
+		switch (this)
+		{
+			case S2S_ROUTES:
+				return new DomainPair(DOMAIN, "remote" + index + ".example.com");
+			case CLUSTER_CROSS_PROXY:
+				return Integer.toHexString(index * 31 + 7) + "a1b2c3d4e5f6";
+			default:
+				return new JID("user" + index, DOMAIN, "resource" + index).toString();
+		}
+	}
+	
+	/**
+	 * Creates the value of an entry.
+	 * @param index The index of the entry.
+	 * @param nodeId The node writing the entry.
+	 * @return The value of the entry.
+	 */
+	public Object createValue(int index, NodeID nodeId)
+	{
+		switch (this)
+		{
+			case C2S_ROUTES:
+				return new ClientRoute(nodeId, true);
+			case S2S_ROUTES:
+				return nodeId;
+			case COMPONENT_ROUTES:
+			{
+				final List<NodeID> nodes = new ArrayList<>();
+				nodes.add(nodeId);
+				
+				return nodes;
+			}
+			case C2S_SESSIONS:
+			{
+				final List<String> sessions = new ArrayList<>();
+				for (int i = 0; i < 3; ++i)
+					sessions.add(new JID("user" + index, DOMAIN, "resource" + i).toString());
+				
+				return sessions;
+			}
+			case CLIENT_SESSION_INFO:
+				return createClientSessionInfo(index);
+			case ROSTER:
+				return createRoster(index);
+			case CLUSTER_CROSS_PROXY:
+				return createClusterCrossProxyInfo(nodeId);
+			case MUC_NICK_JID:
+				return new JID("user" + index, DOMAIN, null).toString();
+			case MUC_OCCUPANTS:
+			{
+				final Map<String, String> occupants = new HashMap<>();
+				for (int i = 0; i < 10; ++i)
+					occupants.put("nick" + i, new JID("user" + i, DOMAIN, "resource" + i).toString());
+				
+				return occupants;
+			}
+			case LOCAL_MUC_ROOM:
+				return new LocalMUCRoom();
+			default:
+				return "value" + index;
+		}
+	}
+	
+	protected static ClientSessionInfo createClientSessionInfo(int index)
+	{
+		final JID fromJid = new JID("user" + index, DOMAIN, "resource" + index);
+		
+		final Presence pres = new Presence();
+		pres.setTo(new JID("contact" + index, DOMAIN, null));
+		pres.setFrom(fromJid);
+		pres.setStatus("Available for benchmarking");
+		
+		final LocalClientSession clientSession = mock(LocalClientSession.class);
+		when(clientSession.getPresence()).thenReturn(pres);
+		when(clientSession.isOfflineFloodStopped()).thenReturn(false);
+		when(clientSession.isMessageCarbonsEnabled()).thenReturn(true);
+		when(clientSession.hasRequestedBlocklist()).thenReturn(false);
+		
+		return new ClientSessionInfo(clientSession);
+	}
+	
+	protected static Roster createRoster(int index)
+	{
+		// a typical roster holds a few dozen contacts spread over a handful of groups
+		final ConcurrentMap<String, RosterItem> rosterItems = new ConcurrentHashMap<>();
+		for (int i = 0; i < 25; ++i)
+		{
+			final List<String> groups = new ArrayList<>();
+			groups.add("Group" + (i % 4));
+			
+			final JID contact = new JID("contact" + i, DOMAIN, null);
+			rosterItems.put(contact.toBareJID(), new RosterItem(i, contact, SubType.BOTH, AskType.NONE, RecvType.NONE, "Contact " + i, groups));
+		}
+		
+		final Roster roster = new Roster();
+		roster.setUsername("user" + index);
+		roster.setDomain(DOMAIN);
+		roster.setRosterItems(rosterItems);
+		
+		return roster;
+	}
+	
+	protected static ClusterCrossProxyInfo createClusterCrossProxyInfo(NodeID nodeId)
+	{
+		final ProxyServerCredential cred = new ProxyServerCredential();
+		cred.setCreationDate(Calendar.getInstance().getTime());
+		cred.setSubject("subject");
+		cred.setSecret("secret");
+		cred.setSecretHash(new byte[] {0,1,1,1});
+		
+		final ClusterNode node = new ClusterNode();
+		node.setLastNodeHBDtTm(Instant.now());
+		node.setNodeHost("benchmark");
+		node.setNodeId(nodeId);
+		node.setNodeIP("127.0.0.1");
+		node.setNodeJoinedDtTm(Instant.now());
+		node.setNodeStatus(ClusterNodeStatus.NODE_JOINED);
+		
+		final ClusterCrossProxyInfo proxyInfo = new ClusterCrossProxyInfo();
+		proxyInfo.setPort(7777);
+		proxyInfo.setResponseDigest("12345");
+		proxyInfo.setProxyServiceCredential(cred);
+		proxyInfo.setReceiversClusterNode(node);
+		
+		return proxyInfo;
+	}
+}
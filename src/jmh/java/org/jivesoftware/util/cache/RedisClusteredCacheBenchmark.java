@@ -0,0 +1,158 @@
+package org.jivesoftware.util.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory;
+import org.directtruststandards.timplus.cluster.cache.TestApplication;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * JMH benchmarks of the hot paths of the typed caches created by the {@link RedisDelegatedClusterCacheFactory}.  Each fork
+ * boots the test application which launches a local Redis server.
+ * <p>
+ * The roster, local MUC room, and remote MUC caches are singleton caches, so {@link #put()} measures singleton puts for those
+ * cache types.  Node purges are measured against the entries of a second, departed node that are rewritten before every call.
+ * <p>
+ * Run with <code>mvn -P benchmark test-compile exec:exec</code>.  See the README for comparing results against a baseline.
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedisClusteredCacheBenchmark
+{
+	protected static final NodeID LOCAL_NODE = NodeID.getInstance(new byte[] {0,0,0,0});
+	
+	protected static final NodeID DEPARTED_NODE = NodeID.getInstance(new byte[] {0,0,0,1});
+	
+	@Param
+	public BenchmarkCacheType cacheType;
+	
+	@Param({"1000"})
+	public int entries;
+	
+	@Param({"100"})
+	public int batchSize;
+	
+	protected ConfigurableApplicationContext ctx;
+	
+	protected Cache<Object, Object> cache;
+	
+	protected Cache<Object, Object> departedNodeCache;
+	
+	protected Object[] keys;
+	
+	protected Object[] values;
+	
+	protected Map<Object, Object> batch;
+	
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		ctx = new SpringApplicationBuilder(TestApplication.class).web(WebApplicationType.NONE).run();
+		
+		final RedisDelegatedClusterCacheFactory factory = new RedisDelegatedClusterCacheFactory();
+		
+		cache = (Cache<Object, Object>)factory.createCache(cacheType.getCacheName(), -1, 0, LOCAL_NODE, true);
+		departedNodeCache = (Cache<Object, Object>)factory.createCache(cacheType.getCacheName(), -1, 0, DEPARTED_NODE, true);
+		
+		keys = new Object[entries];
+		values = new Object[entries];
+		for (int i = 0; i < entries; ++i)
+		{
+			keys[i] = cacheType.createKey(i);
+			values[i] = cacheType.createValue(i, LOCAL_NODE);
+		}
+		
+		batch = new LinkedHashMap<>();
+		for (int i = 0; i < Math.min(batchSize, entries); ++i)
+			batch.put(keys[i], values[i]);
+		
+		final Map<Object, Object> all = new LinkedHashMap<>();
+		for (int i = 0; i < entries; ++i)
+			all.put(keys[i], values[i]);
+		
+		cache.putAll(all);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		cache.clear();
+		
+		ctx.close();
+	}
+	
+	/**
+	 * Rewrites the departed node's entries before each purge.
+	 */
+	@State(Scope.Benchmark)
+	public static class DepartedNodeState
+	{
+		@Setup(Level.Invocation)
+		public void populate(RedisClusteredCacheBenchmark benchmark)
+		{
+			benchmark.departedNodeCache.putAll(benchmark.batch);
+		}
+	}
+	
+	protected int nextIndex()
+	{
+		return ThreadLocalRandom.current().nextInt(entries);
+	}
+	
+	@Benchmark
+	public Object get()
+	{
+		return cache.get(keys[nextIndex()]);
+	}
+	
+	@Benchmark
+	public Object put()
+	{
+		final int index = nextIndex();
+		
+		return cache.put(keys[index], values[index]);
+	}
+	
+	@Benchmark
+	public void putAll()
+	{
+		cache.putAll(batch);
+	}
+	
+	@Benchmark
+	public Object keySet()
+	{
+		return cache.keySet();
+	}
+	
+	@Benchmark
+	public void purgeNode(DepartedNodeState departedNode)
+	{
+		cache.purgeClusteredNodeCaches(DEPARTED_NODE);
+	}
+}
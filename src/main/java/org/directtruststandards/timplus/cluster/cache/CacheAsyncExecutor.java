@@ -0,0 +1,149 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Runs asynchronous cache operations off the calling threads, so threads that handle packets do not stall while Redis responds.
+ * Operations are spread over a fixed number of stripes, each a single daemon thread with a bounded queue.  The stripe of an
+ * operation is chosen from the cache name and the encoded entry key, so all asynchronous operations on the same entry run in
+ * the order they were submitted.  The Redis connection is shared by all stripes, so the stripes only add threads, not connections.
+ * <p>
+ * When the queue of a stripe is full, submitting blocks until the stripe catches up.  This pushes back on callers instead of
+ * dropping operations or running them out of order.  Stripe threads, which run the continuations of the futures, never block:
+ * a stripe thread waiting for room may be waiting for itself or for a stripe that waits for it.  Operations a stripe thread
+ * submits to a full stripe fail instead of running inline, because running them ahead of the queued operations would break
+ * the order of the operations on an entry.  Queued operations are completed on shutdown.
+ * @since 1.0
+ */
+public class CacheAsyncExecutor implements DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(CacheAsyncExecutor.class);
+
+	protected static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+
+	protected final ThreadPoolExecutor[] stripes;
+
+	/**
+	 * Constructor
+	 * @param properties The cache settings.
+	 */
+	public CacheAsyncExecutor(ClusterCacheProperties properties)
+	{
+		stripes = new ThreadPoolExecutor[Math.max(properties.getAsyncThreads(), 1)];
+
+		for (int i = 0; i < stripes.length; ++i)
+		{
+			final String threadName = "timplus-cache-async-" + i;
+
+			stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(properties.getAsyncQueueCapacity(), 1)),
+				runnable ->
+				{
+					final Thread thread = new Thread(() ->
+					{
+						WORKER.set(Boolean.TRUE);
+						runnable.run();
+					}, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}, CacheAsyncExecutor::enqueue);
+		}
+	}
+
+	/**
+	 * Runs an operation on the stripe of an entry.
+	 * @param cacheName The name of the cache.
+	 * @param storeKey The encoded key of the entry.
+	 * @param operation The operation.
+	 * @return A future completed with the result of the operation, or exceptionally if the operation fails.  The future
+	 * completes with a {@link RejectedExecutionException} if the operations are shut down, or if the calling thread is a stripe
+	 * thread and the stripe of the entry is full.
+	 */
+	public <T> CompletableFuture<T> submit(String cacheName, String storeKey, Supplier<T> operation)
+	{
+		try
+		{
+			return CompletableFuture.supplyAsync(operation, stripes[stripe(cacheName, storeKey)]);
+		}
+		catch (RejectedExecutionException e)
+		{
+			final CompletableFuture<T> retVal = new CompletableFuture<>();
+			retVal.completeExceptionally(e);
+
+			return retVal;
+		}
+	}
+
+	/**
+	 * Indicates if the calling thread is a stripe thread.  Operations running on a stripe must not wait for other asynchronous
+	 * operations, because those may be queued behind them on the same stripe.
+	 * @return True if the calling thread is a stripe thread.
+	 */
+	public static boolean isWorkerThread()
+	{
+		return WORKER.get() != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() throws Exception
+	{
+		for (ThreadPoolExecutor stripe : stripes)
+			stripe.shutdown();
+
+		for (ThreadPoolExecutor stripe : stripes)
+		{
+			if (!stripe.awaitTermination(5, TimeUnit.SECONDS))
+				Log.warn("Asynchronous cache operations did not complete before shutdown.  {} queued operations are dropped.", stripe.shutdownNow().size());
+		}
+	}
+
+	protected int stripe(String cacheName, String storeKey)
+	{
+		return ((31 * cacheName.hashCode() + storeKey.hashCode()) & Integer.MAX_VALUE) % stripes.length;
+	}
+
+	/**
+	 * Blocks the submitting thread until the stripe has room for the operation.  Operations submitted by stripe threads are
+	 * rejected instead.
+	 */
+	protected static void enqueue(Runnable runnable, ThreadPoolExecutor stripe)
+	{
+		if (stripe.isShutdown())
+			throw new RejectedExecutionException("Asynchronous cache operations are shut down");
+
+		final BlockingQueue<Runnable> queue = stripe.getQueue();
+		if (isWorkerThread())
+		{
+			if (!queue.offer(runnable))
+				throw new RejectedExecutionException("The stripe of the asynchronous cache operation is full and stripe threads can not wait for it");
+		}
+		else
+		{
+			try
+			{
+				queue.put(runnable);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting to queue an asynchronous cache operation", e);
+			}
+		}
+
+		// the stripe may have drained its queue and stopped while the submitting thread waited for room
+		if (stripe.isShutdown() && queue.remove(runnable))
+			throw new RejectedExecutionException("Asynchronous cache operations are shut down");
+	}
+}
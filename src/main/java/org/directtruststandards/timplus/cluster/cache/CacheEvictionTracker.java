@@ -0,0 +1,318 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.EvictionPolicy;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Keeps the local node's entries of a cache within the cache's max size.  The entries of the node are tracked in a Redis
+ * sorted set scored by the eviction policy: the last access time for LRU, the number of accesses for LFU, and the first
+ * write time for FIFO.  Once the set holds more members than the max size, the lowest scored entries are evicted.
+ * <p>
+ * Accesses are only recorded in memory on the caller's thread.  The {@link CacheEvictor} periodically sends the recorded
+ * accesses in a single pipeline and evicts the excess entries, so a node may briefly hold more entries than the max size.
+ * Accesses of the same entry between passes are merged.
+ * <p>
+ * Entries that disappear without a recorded removal, for example by expiring, are found by checking tracked keys against the
+ * storage engine in Redis, so they neither count toward the max size nor keep live entries from being evicted last.  Singleton
+ * writes and the expired entry sweeper remove the keys of the entries they delete from the tracking sets directly.
+ * <p>
+ * Keys are laid out as follows, where the cache name is a Redis Cluster hash tag:
+ * <br>
+ * timpluscacheeviction:{CacheName}:NodeID - Sorted set of the entry keys of a node
+ * <br>
+ * timpluscacheeviction:{CacheName}:NodeID:sweep - Cursor of the walk that removes keys of entries that no longer exist
+ * @since 1.0
+ */
+public class CacheEvictionTracker
+{
+	public static final String KEYSPACE = "timpluscacheeviction";
+
+	protected static final byte[] WRITE = { 'w' };
+
+	protected static final byte[] READ = { 'r' };
+
+	protected static final byte[] REMOVE = { 'd' };
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final EvictionPolicy policy;
+
+	protected final NodeID nodeId;
+
+	protected final int chunkSize;
+
+	protected final Consumer<List<String>> evictor;
+
+	protected final Supplier<byte[][]> livenessCheck;
+
+	protected final Map<String, Access> pending = new ConcurrentHashMap<>();
+
+	protected volatile String cacheName;
+
+	protected volatile long maxEntries;
+
+	protected volatile long maxLifetime;
+
+	protected volatile boolean recheck;
+
+	/**
+	 * An access of an entry recorded since the last pass.
+	 */
+	protected static class Access
+	{
+		protected byte[] operation;
+
+		protected long score;
+
+		protected boolean removed;
+
+		protected Access(byte[] operation, long score)
+		{
+			this.operation = operation;
+			this.score = score;
+			this.removed = (operation == REMOVE);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to drop tracking sets.
+	 * @param scripts The scripts used to record accesses and pop the entries to evict.
+	 * @param policy The eviction policy.  Must not be {@link EvictionPolicy#NONE}.
+	 * @param cacheName The name of the cache.
+	 * @param nodeId The id of the local cluster node.
+	 * @param maxEntries The maximum number of the local node's entries.  Values less than 1 never evict.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 * @param chunkSize The maximum number of accesses sent in and entries evicted by a single script.
+	 * @param evictor Removes the local node's entries of evicted keys.
+	 * @param livenessCheck Supplies the arguments used to check if the local node still holds an entry.  See {@link RedisCacheStore#getLivenessCheck()}.
+	 */
+	public CacheEvictionTracker(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, EvictionPolicy policy, String cacheName, NodeID nodeId,
+			long maxEntries, long maxLifetime, int chunkSize, Consumer<List<String>> evictor, Supplier<byte[][]> livenessCheck)
+	{
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.policy = policy;
+		this.cacheName = cacheName;
+		this.nodeId = nodeId;
+		this.maxEntries = maxEntries;
+		this.maxLifetime = maxLifetime;
+		this.chunkSize = Math.max(chunkSize, 1);
+		this.evictor = evictor;
+		this.livenessCheck = livenessCheck;
+	}
+
+	/**
+	 * Records a write of the local node's entry for a key.
+	 * @param key The key of the entry.
+	 */
+	public void recordWrite(String key)
+	{
+		final long now = System.currentTimeMillis();
+
+		pending.compute(key, (k, access) ->
+		{
+			if (access == null)
+				return new Access(WRITE, (policy == EvictionPolicy.LFU) ? 1 : now);
+
+			if (policy == EvictionPolicy.LFU)
+				access.score = (access.operation == REMOVE) ? 1 : access.score + 1;
+			else if (policy == EvictionPolicy.LRU || access.operation == REMOVE)
+				access.score = now;
+
+			access.operation = WRITE;
+
+			return access;
+		});
+	}
+
+	/**
+	 * Records a read of a key.  Reads only count for entries held by the local node.
+	 * @param key The key of the entry.
+	 */
+	public void recordRead(String key)
+	{
+		if (policy == EvictionPolicy.FIFO)
+			return;
+
+		final long now = System.currentTimeMillis();
+
+		pending.compute(key, (k, access) ->
+		{
+			if (access == null)
+				return new Access(READ, (policy == EvictionPolicy.LFU) ? 1 : now);
+
+			if (access.operation != REMOVE)
+				access.score = (policy == EvictionPolicy.LFU) ? access.score + 1 : now;
+
+			return access;
+		});
+	}
+
+	/**
+	 * Records the removal of the local node's entry for a key.
+	 * @param key The key of the entry.
+	 */
+	public void recordRemove(String key)
+	{
+		pending.put(key, new Access(REMOVE, 0));
+	}
+
+	/**
+	 * Sets the maximum number of the local node's entries.  Excess entries are evicted by the next pass.
+	 * @param maxEntries The maximum number of the local node's entries.  Values less than 1 never evict.
+	 */
+	public void setMaxEntries(long maxEntries)
+	{
+		this.maxEntries = maxEntries;
+		this.recheck = true;
+	}
+
+	/**
+	 * Sets the time in milliseconds entries remain in the cache.  The tracking set expires once no entry was written for that long.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 */
+	public void setMaxLifetime(long maxLifetime)
+	{
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * Sets the name of the cache.  Accesses recorded under the previous name are dropped.
+	 * @param cacheName The name of the cache.
+	 */
+	public void setCacheName(String cacheName)
+	{
+		this.cacheName = cacheName;
+
+		pending.clear();
+	}
+
+	/**
+	 * Drops the tracking of all of the local node's entries.  Called when the local node's entries are cleared.
+	 */
+	public void clear()
+	{
+		pending.clear();
+
+		drop(nodeId);
+	}
+
+	/**
+	 * Drops the tracking of a node's entries.  Called when a node's entries are purged.
+	 * @param node The node whose entries were purged.
+	 */
+	public void drop(NodeID node)
+	{
+		final String trackingKey = getTrackingKey(cacheName, node);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> connection.keyCommands().unlink(trackingKey.getBytes(StandardCharsets.UTF_8),
+				(trackingKey + ":sweep").getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Sends the accesses recorded since the last pass and evicts the local node's excess entries.  Does nothing without Redis
+	 * round trips if no access was recorded and the max size did not change.
+	 * @return The number of evicted entries.
+	 */
+	public synchronized int run()
+	{
+		final List<byte[]> accesses = drain();
+
+		if (accesses.isEmpty() && !recheck)
+			return 0;
+
+		recheck = false;
+
+		final String trackingKey = getTrackingKey(cacheName, nodeId);
+
+		int retVal = 0;
+
+		try
+		{
+			List<String> evicted = scripts.trackEviction(trackingKey, policy, accesses, maxEntries, maxLifetime, chunkSize, livenessCheck.get());
+			while (!evicted.isEmpty())
+			{
+				evictor.accept(evicted);
+				retVal += evicted.size();
+
+				// a full batch may leave more excess entries
+				if (evicted.size() < chunkSize)
+					break;
+
+				evicted = scripts.trackEviction(trackingKey, policy, new ArrayList<>(), maxEntries, maxLifetime, chunkSize, livenessCheck.get());
+			}
+		}
+		catch (RuntimeException e)
+		{
+			recheck = true;
+			throw e;
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Removes the recorded accesses and flattens them into the triplets sent to the script.
+	 */
+	protected List<byte[]> drain()
+	{
+		final List<byte[]> retVal = new ArrayList<>();
+
+		for (String key : pending.keySet())
+		{
+			final Access access = pending.remove(key);
+			if (access == null)
+				continue;
+
+			final byte[] member = key.getBytes(StandardCharsets.UTF_8);
+
+			// a removed and rewritten entry is a new entry for FIFO and LFU
+			if (access.removed && access.operation != REMOVE)
+			{
+				retVal.add(REMOVE);
+				retVal.add(member);
+				retVal.add(new byte[] { '0' });
+			}
+
+			retVal.add(access.operation);
+			retVal.add(member);
+			retVal.add(String.valueOf(access.score).getBytes(StandardCharsets.UTF_8));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Gets the name of the sorted set that tracks a node's entries of a cache.
+	 * @param cacheName The name of the cache.
+	 * @param node The node.
+	 * @return The name of the sorted set.
+	 */
+	public static String getTrackingKey(String cacheName, NodeID node)
+	{
+		return getTrackingKeyPrefix(cacheName) + node.toString();
+	}
+
+	/**
+	 * Gets the prefix of the names of the sorted sets that track the nodes' entries of a cache.  The node id follows the prefix.
+	 * @param cacheName The name of the cache.
+	 * @return The prefix of the names of the sorted sets.
+	 */
+	public static String getTrackingKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:";
+	}
+}
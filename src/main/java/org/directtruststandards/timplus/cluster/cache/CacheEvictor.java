@@ -0,0 +1,90 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Runs the {@link CacheEvictionTracker} of every bounded cache on a single background thread, so recording accesses and
+ * evicting entries never adds Redis round trips to cache operations.  Trackers are held weakly and stop running once
+ * their cache is no longer referenced.
+ * @since 1.0
+ */
+public class CacheEvictor implements DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(CacheEvictor.class);
+
+	protected final Set<CacheEvictionTracker> trackers = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	protected final ScheduledExecutorService executor;
+
+	/**
+	 * Constructor
+	 * @param properties The cache settings.
+	 */
+	public CacheEvictor(ClusterCacheProperties properties)
+	{
+		final long interval = Math.max(properties.getEvictionInterval(), 1);
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		executor.scheduleWithFixedDelay(this::runAll, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Registers the tracker of a bounded cache.
+	 * @param tracker The tracker.
+	 */
+	public void register(CacheEvictionTracker tracker)
+	{
+		trackers.add(tracker);
+	}
+
+	/**
+	 * Runs a pass of every registered tracker.
+	 */
+	public void runAll()
+	{
+		final List<CacheEvictionTracker> snapshot;
+		synchronized (trackers)
+		{
+			snapshot = new ArrayList<>(trackers);
+		}
+
+		for (CacheEvictionTracker tracker : snapshot)
+		{
+			try
+			{
+				tracker.run();
+			}
+			catch (Exception e)
+			{
+				Log.warn("Failed to evict entries of cache {}.  The accesses of the pass are dropped and eviction is retried on the next pass.", tracker.cacheName, e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() throws Exception
+	{
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,24 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * Converts cache keys to and from the entry keys used in Redis key names, hash fields and index values.  Encoded keys must be
+ * stable across cluster nodes and JVM restarts, so they must not depend on identity or on a representation that may change,
+ * such as a toString method meant for logging.
+ * @since 1.0
+ */
+public interface CacheKeyCodec
+{
+	/**
+	 * Encodes a cache key.
+	 * @param key The key to encode.
+	 * @return The encoded key.
+	 */
+	public String encode(Object key);
+	
+	/**
+	 * Decodes a cache key.
+	 * @param encoded The encoded key.
+	 * @return The decoded key.
+	 */
+	public Object decode(String encoded);
+}
@@ -0,0 +1,51 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Registry of the codecs bound to cache key types.  Caches look up their key codec by the declared key type of the cache.
+ * Key types without a bound codec use the {@link DefaultCacheKeyCodec}.
+ * @since 1.0
+ */
+public class CacheKeyCodecRegistry
+{
+	protected final ObjectMapper objectMapper;
+	
+	protected final Map<Class<?>, Supplier<CacheKeyCodec>> codecs = new ConcurrentHashMap<>();
+	
+	/**
+	 * Constructor
+	 * @param objectMapper The mapper used to resolve declared key types.
+	 */
+	public CacheKeyCodecRegistry(ObjectMapper objectMapper)
+	{
+		this.objectMapper = objectMapper;
+	}
+	
+	/**
+	 * Binds a codec to a key type.  Only caches whose declared key type is exactly the provided type use the codec.
+	 * @param keyType The key type.
+	 * @param codec Creates the codec for a cache.
+	 */
+	public void register(Class<?> keyType, Supplier<CacheKeyCodec> codec)
+	{
+		codecs.put(keyType, codec);
+	}
+	
+	/**
+	 * Gets the key codec for a cache.
+	 * @param keyType The declared key type of the cache.
+	 * @return The codec bound to the key type or the default codec.
+	 */
+	public CacheKeyCodec getCodec(TypeReference<?> keyType)
+	{
+		final Supplier<CacheKeyCodec> codec = codecs.get(objectMapper.getTypeFactory().constructType(keyType).getRawClass());
+		
+		return (codec != null) ? codec.get() : new DefaultCacheKeyCodec();
+	}
+}
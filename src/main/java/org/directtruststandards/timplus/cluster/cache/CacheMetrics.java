@@ -0,0 +1,203 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per operation latency histograms and Redis command accounting of a single cache.  Operations are measured with
+ * {@link #start(CacheOperation)} and the metrics are published over JMX under the
+ * <code>org.directtruststandards.timplus.cluster.cache</code> domain along with the cache's {@link CacheStatistics}.  The
+ * published metrics are removed when the cache is renamed or destroyed, and all published metrics are removed on shutdown.
+ * <p>
+ * Disabled metrics hand out a sample that records nothing so that callers don't need to check if metrics are enabled.
+ * @since 1.0
+ */
+public class CacheMetrics
+{
+	private static final Logger Log = LoggerFactory.getLogger(CacheMetrics.class);
+
+	public static final String JMX_DOMAIN = "org.directtruststandards.timplus.cluster.cache";
+
+	protected static final Sample DISABLED_SAMPLE = new Sample(null);
+
+	protected static final Map<String, CacheMetrics> PUBLISHED = new ConcurrentHashMap<>();
+
+	protected final boolean enabled;
+
+	protected final Map<CacheOperation, CacheOperationMetrics> operations = new EnumMap<>(CacheOperation.class);
+
+	protected String publishedName;
+
+	/**
+	 * A single measured call of an operation.  Closing the sample records the latency and Redis usage of the call.
+	 */
+	public static class Sample implements AutoCloseable
+	{
+		protected final CacheOperationMetrics metrics;
+
+		protected final long startNanos;
+
+		protected final RedisCommandCounter.Counts counts;
+
+		protected Sample(CacheOperationMetrics metrics)
+		{
+			this.metrics = metrics;
+			this.startNanos = (metrics == null) ? 0 : System.nanoTime();
+			this.counts = (metrics == null) ? null : RedisCommandCounter.begin();
+		}
+
+		/**
+		 * Records the call.
+		 */
+		@Override
+		public void close()
+		{
+			if (metrics == null)
+				return;
+
+			RedisCommandCounter.end(counts);
+
+			metrics.record(System.nanoTime() - startNanos, counts.getCommands(), counts.getRoundTrips());
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param enabled Indicates if operations are measured.
+	 */
+	public CacheMetrics(boolean enabled)
+	{
+		this.enabled = enabled;
+
+		for (CacheOperation operation : CacheOperation.values())
+			operations.put(operation, new CacheOperationMetrics());
+	}
+
+	/**
+	 * Starts measuring a call of an operation.  The returned sample must be closed when the call completes.
+	 * @param operation The operation being called.
+	 * @return The sample of the call.
+	 */
+	public Sample start(CacheOperation operation)
+	{
+		return enabled ? new Sample(operations.get(operation)) : DISABLED_SAMPLE;
+	}
+
+	/**
+	 * Gets the metrics of an operation.
+	 * @param operation The operation.
+	 * @return The metrics of the operation.
+	 */
+	public CacheOperationMetrics getOperationMetrics(CacheOperation operation)
+	{
+		return operations.get(operation);
+	}
+
+	/**
+	 * Publishes the metrics and statistics of a cache over JMX if metrics are enabled.  Metrics previously published for a
+	 * cache with the same name are replaced, and metrics this instance published under a previous name are removed.
+	 * @param cacheName The name of the cache.
+	 * @param statistics The usage counters of the cache.
+	 */
+	public synchronized void register(String cacheName, CacheStatistics statistics)
+	{
+		if (!enabled)
+			return;
+
+		if (publishedName != null && !publishedName.equals(cacheName))
+			unregister();
+
+		try
+		{
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			registerMBean(server, getObjectName(cacheName, null), statistics);
+
+			for (Map.Entry<CacheOperation, CacheOperationMetrics> entry : operations.entrySet())
+				registerMBean(server, getObjectName(cacheName, entry.getKey()), entry.getValue());
+
+			publishedName = cacheName;
+			PUBLISHED.put(cacheName, this);
+		}
+		catch (Exception e)
+		{
+			Log.warn("Failed to publish metrics of cache {} over JMX", cacheName, e);
+		}
+	}
+
+	/**
+	 * Removes the metrics published by {@link #register(String, CacheStatistics)}.  Metrics that were since replaced by another
+	 * instance with the same cache name are left in place.
+	 */
+	public synchronized void unregister()
+	{
+		if (publishedName == null)
+			return;
+
+		final String cacheName = publishedName;
+		publishedName = null;
+
+		if (!PUBLISHED.remove(cacheName, this))
+			return;
+
+		try
+		{
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			unregisterMBean(server, getObjectName(cacheName, null));
+
+			for (CacheOperation operation : operations.keySet())
+				unregisterMBean(server, getObjectName(cacheName, operation));
+		}
+		catch (Exception e)
+		{
+			Log.warn("Failed to remove metrics of cache {} from JMX", cacheName, e);
+		}
+	}
+
+	/**
+	 * Removes the metrics of all caches published over JMX.  Called on shutdown.
+	 */
+	public static void unregisterAll()
+	{
+		PUBLISHED.values().forEach(CacheMetrics::unregister);
+	}
+
+	/**
+	 * Gets the JMX name of the metrics of a cache.
+	 * @param cacheName The name of the cache.
+	 * @param operation The operation or null for the cache's statistics.
+	 * @return The JMX name.
+	 * @throws Exception Thrown if the name is not a valid JMX name.
+	 */
+	public static ObjectName getObjectName(String cacheName, CacheOperation operation) throws Exception
+	{
+		final StringBuilder name = new StringBuilder(JMX_DOMAIN).append(":type=ClusterCache,name=").append(ObjectName.quote(cacheName));
+
+		if (operation != null)
+			name.append(",operation=").append(operation.getOperationName());
+
+		return new ObjectName(name.toString());
+	}
+
+	protected static void registerMBean(MBeanServer server, ObjectName name, Object mbean) throws Exception
+	{
+		unregisterMBean(server, name);
+
+		server.registerMBean(mbean, name);
+	}
+
+	protected static void unregisterMBean(MBeanServer server, ObjectName name) throws Exception
+	{
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+	}
+}
@@ -0,0 +1,52 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * Cache operations whose latency and Redis usage are measured by {@link CacheMetrics}.
+ * @since 1.0
+ */
+public enum CacheOperation
+{
+	GET("get"),
+	
+	GET_ALL("getAll"),
+	
+	PUT("put"),
+	
+	PUT_ALL("putAll"),
+	
+	REMOVE("remove"),
+	
+	VALUES("values"),
+	
+	KEY_SET("keySet"),
+	
+	ENTRY_SET("entrySet"),
+	
+	SIZE("size"),
+	
+	CONTAINS_KEY("containsKey"),
+	
+	CONTAINS_VALUE("containsValue"),
+	
+	PURGE("purgeClusteredNodeCaches"),
+	
+	CLEAR("clear"),
+	
+	EVICT("evict");
+	
+	private final String operationName;
+	
+	private CacheOperation(String operationName)
+	{
+		this.operationName = operationName;
+	}
+	
+	/**
+	 * Gets the name of the operation as published over JMX.
+	 * @return The name of the cache method that performs the operation.
+	 */
+	public String getOperationName()
+	{
+		return operationName;
+	}
+}
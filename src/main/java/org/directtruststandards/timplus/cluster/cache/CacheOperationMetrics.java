@@ -0,0 +1,103 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and Redis usage of a single operation of a single cache.
+ * @since 1.0
+ */
+public class CacheOperationMetrics implements CacheOperationMetricsMXBean
+{
+	protected final LatencyHistogram latency = new LatencyHistogram();
+	
+	protected final LongAdder redisCommands = new LongAdder();
+	
+	protected final LongAdder redisRoundTrips = new LongAdder();
+	
+	/**
+	 * Records a call of the operation.
+	 * @param nanos The latency of the call in nanoseconds.
+	 * @param commands The number of Redis commands issued by the call.
+	 * @param roundTrips The number of Redis round trips caused by the call.
+	 */
+	public void record(long nanos, long commands, long roundTrips)
+	{
+		latency.record(nanos);
+		redisCommands.add(commands);
+		redisRoundTrips.add(roundTrips);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCount()
+	{
+		return latency.getCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMeanLatencyMicros()
+	{
+		return latency.getMeanMicros();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getP50LatencyMicros()
+	{
+		return latency.getPercentileMicros(0.5);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getP99LatencyMicros()
+	{
+		return latency.getPercentileMicros(0.99);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMaxLatencyMicros()
+	{
+		return latency.getMaxMicros();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRedisCommands()
+	{
+		return redisCommands.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRedisRoundTrips()
+	{
+		return redisRoundTrips.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reset()
+	{
+		latency.reset();
+		redisCommands.reset();
+		redisRoundTrips.reset();
+	}
+}
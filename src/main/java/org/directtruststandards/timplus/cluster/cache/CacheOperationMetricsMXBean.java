@@ -0,0 +1,55 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * JMX view of the metrics of a single operation of a single cache.
+ * @since 1.0
+ */
+public interface CacheOperationMetricsMXBean
+{
+	/**
+	 * Gets the number of calls of the operation.
+	 * @return The number of calls of the operation.
+	 */
+	public long getCount();
+	
+	/**
+	 * Gets the mean latency of the operation.
+	 * @return The mean latency in microseconds.
+	 */
+	public long getMeanLatencyMicros();
+	
+	/**
+	 * Gets the median latency of the operation.
+	 * @return The median latency in microseconds.
+	 */
+	public long getP50LatencyMicros();
+	
+	/**
+	 * Gets the 99th percentile latency of the operation.
+	 * @return The 99th percentile latency in microseconds.
+	 */
+	public long getP99LatencyMicros();
+	
+	/**
+	 * Gets the highest latency of the operation.
+	 * @return The highest latency in microseconds.
+	 */
+	public long getMaxLatencyMicros();
+	
+	/**
+	 * Gets the number of Redis commands issued by all calls of the operation.
+	 * @return The number of Redis commands.
+	 */
+	public long getRedisCommands();
+	
+	/**
+	 * Gets the number of Redis round trips caused by all calls of the operation.  A pipeline counts as a single round trip.
+	 * @return The number of Redis round trips.
+	 */
+	public long getRedisRoundTrips();
+	
+	/**
+	 * Resets the metrics of the operation.
+	 */
+	public void reset();
+}
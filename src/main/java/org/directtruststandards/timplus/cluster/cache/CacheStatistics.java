@@ -0,0 +1,252 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage counters of a single cache.  Counters are striped so that recording from many threads does not contend on a
+ * single memory location.  Reads of the counters are not atomic across counters and are only meant for monitoring.
+ * <p>
+ * Hits are split into local hits, served from the near cache, and remote hits, served from Redis.  Serialized bytes count
+ * the encoded value bytes written to and read from Redis and are also used to estimate the memory footprint of the cache.
+ * @since 1.0
+ */
+public class CacheStatistics implements CacheStatisticsMXBean
+{
+	protected final LongAdder localHits = new LongAdder();
+
+	protected final LongAdder remoteHits = new LongAdder();
+
+	protected final LongAdder misses = new LongAdder();
+
+	protected final LongAdder puts = new LongAdder();
+
+	protected final LongAdder removes = new LongAdder();
+
+	protected final LongAdder evictions = new LongAdder();
+
+	protected final LongAdder failedWrites = new LongAdder();
+
+	protected final LongAdder serializedBytesWritten = new LongAdder();
+
+	protected final LongAdder serializedValuesWritten = new LongAdder();
+
+	protected final LongAdder serializedBytesRead = new LongAdder();
+
+	protected final LongAdder serializedValuesRead = new LongAdder();
+
+	/**
+	 * Records a lookup served from the near cache.
+	 */
+	public void recordLocalHit()
+	{
+		localHits.increment();
+	}
+
+	/**
+	 * Records a lookup served from Redis.
+	 */
+	public void recordRemoteHit()
+	{
+		remoteHits.increment();
+	}
+
+	/**
+	 * Records a lookup that found no value.
+	 */
+	public void recordMiss()
+	{
+		misses.increment();
+	}
+
+	/**
+	 * Records written entries.
+	 * @param count The number of entries written.
+	 */
+	public void recordPuts(int count)
+	{
+		puts.add(count);
+	}
+
+	/**
+	 * Records a removed entry.
+	 */
+	public void recordRemove()
+	{
+		removes.increment();
+	}
+
+	/**
+	 * Records entries evicted to keep the cache within its max size.
+	 * @param count The number of evicted entries.
+	 */
+	public void recordEvictions(int count)
+	{
+		evictions.add(count);
+	}
+
+	/**
+	 * Records asynchronous or write behind writes that failed.
+	 * @param count The number of failed writes.
+	 */
+	public void recordFailedWrites(int count)
+	{
+		failedWrites.add(count);
+	}
+
+	/**
+	 * Records an encoded value written to Redis.
+	 * @param value The encoded value.  Null values are not recorded.
+	 */
+	public void recordSerializedWrite(byte[] value)
+	{
+		if (value != null)
+		{
+			serializedBytesWritten.add(value.length);
+			serializedValuesWritten.increment();
+		}
+	}
+
+	/**
+	 * Records an encoded value read from Redis.
+	 * @param value The encoded value.  Null values are not recorded.
+	 */
+	public void recordSerializedRead(byte[] value)
+	{
+		if (value != null)
+		{
+			serializedBytesRead.add(value.length);
+			serializedValuesRead.increment();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getHits()
+	{
+		return localHits.sum() + remoteHits.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getLocalHits()
+	{
+		return localHits.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRemoteHits()
+	{
+		return remoteHits.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getPuts()
+	{
+		return puts.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRemoves()
+	{
+		return removes.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getFailedWrites()
+	{
+		return failedWrites.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getSerializedBytesWritten()
+	{
+		return serializedBytesWritten.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getSerializedBytesRead()
+	{
+		return serializedBytesRead.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getAverageSerializedValueSize()
+	{
+		final long values = serializedValuesWritten.sum() + serializedValuesRead.sum();
+
+		return (values == 0) ? 0 : (serializedBytesWritten.sum() + serializedBytesRead.sum()) / values;
+	}
+
+	/**
+	 * Estimates the memory footprint of a number of entries from the average size of the observed encoded values.
+	 * The estimate does not include Redis' own per key overhead.
+	 * @param entries The number of entries.
+	 * @return The estimated footprint in bytes.
+	 */
+	public long estimateFootprint(long entries)
+	{
+		return entries * getAverageSerializedValueSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reset()
+	{
+		localHits.reset();
+		remoteHits.reset();
+		misses.reset();
+		puts.reset();
+		removes.reset();
+		evictions.reset();
+		failedWrites.reset();
+		serializedBytesWritten.reset();
+		serializedValuesWritten.reset();
+		serializedBytesRead.reset();
+		serializedValuesRead.reset();
+	}
+}
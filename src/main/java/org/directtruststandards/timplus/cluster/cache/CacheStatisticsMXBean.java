@@ -0,0 +1,79 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * JMX view of the usage counters of a single cache.
+ * @since 1.0
+ */
+public interface CacheStatisticsMXBean
+{
+	/**
+	 * Gets the number of lookups that found a value.
+	 * @return The number of local and remote hits.
+	 */
+	public long getHits();
+
+	/**
+	 * Gets the number of lookups served from the near cache.
+	 * @return The number of local hits.
+	 */
+	public long getLocalHits();
+
+	/**
+	 * Gets the number of lookups served from Redis.
+	 * @return The number of remote hits.
+	 */
+	public long getRemoteHits();
+
+	/**
+	 * Gets the number of lookups that found no value.
+	 * @return The number of misses.
+	 */
+	public long getMisses();
+
+	/**
+	 * Gets the number of written entries.
+	 * @return The number of written entries.
+	 */
+	public long getPuts();
+
+	/**
+	 * Gets the number of removed entries.
+	 * @return The number of removed entries.
+	 */
+	public long getRemoves();
+
+	/**
+	 * Gets the number of entries evicted to keep the cache within its max size.
+	 * @return The number of evicted entries.
+	 */
+	public long getEvictions();
+
+	/**
+	 * Gets the number of asynchronous and write behind writes that failed.  A write behind write that is retried is counted each time it fails.
+	 * @return The number of failed writes.
+	 */
+	public long getFailedWrites();
+
+	/**
+	 * Gets the number of encoded value bytes written to Redis.
+	 * @return The number of encoded value bytes written to Redis.
+	 */
+	public long getSerializedBytesWritten();
+
+	/**
+	 * Gets the number of encoded value bytes read from Redis.
+	 * @return The number of encoded value bytes read from Redis.
+	 */
+	public long getSerializedBytesRead();
+
+	/**
+	 * Gets the average size of the encoded values observed by the cache.
+	 * @return The average size in bytes of the encoded values written to and read from Redis.
+	 */
+	public long getAverageSerializedValueSize();
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset();
+}
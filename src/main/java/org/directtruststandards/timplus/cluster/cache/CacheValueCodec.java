@@ -0,0 +1,24 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * Converts cache values to and from the raw bytes stored in Redis.
+ * @since 1.0
+ */
+public interface CacheValueCodec
+{
+	/**
+	 * Encodes a cache value.
+	 * @param value The value to encode.
+	 * @return The encoded value.
+	 * @throws Exception If the value can not be encoded.
+	 */
+	public byte[] encode(Object value) throws Exception;
+	
+	/**
+	 * Decodes a cache value.
+	 * @param data The encoded value.
+	 * @return The decoded value.
+	 * @throws Exception If the value can not be decoded.
+	 */
+	public Object decode(byte[] data) throws Exception;
+}
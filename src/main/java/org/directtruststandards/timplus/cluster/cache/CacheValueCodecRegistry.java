@@ -0,0 +1,72 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.io.Externalizable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Registry of the codecs bound to cache value types.  Caches look up their codec by the declared value type of the cache.
+ * Value types without a bound codec use the {@link ExternalizableCacheValueCodec} if the type is {@link Externalizable} and the
+ * {@link DefaultCacheValueCodec} (Jackson) otherwise.
+ * @since 1.0
+ */
+public class CacheValueCodecRegistry
+{
+	protected final ObjectMapper objectMapper;
+	
+	protected final Map<Class<?>, Supplier<CacheValueCodec>> codecs = new ConcurrentHashMap<>();
+	
+	/**
+	 * Constructor
+	 * @param objectMapper The mapper used by the Jackson fallback codec.
+	 */
+	public CacheValueCodecRegistry(ObjectMapper objectMapper)
+	{
+		this.objectMapper = objectMapper;
+	}
+	
+	/**
+	 * Binds a codec to a value type.  Only caches whose declared value type is exactly the provided type use the codec.
+	 * @param valueType The value type.
+	 * @param codec Creates the codec for a cache.
+	 */
+	public void register(Class<?> valueType, Supplier<CacheValueCodec> codec)
+	{
+		codecs.put(valueType, codec);
+	}
+	
+	/**
+	 * Gets the codec for a cache.
+	 * @param valueType The declared value type of the cache.
+	 * @return The codec bound to the value type or a fallback codec.
+	 */
+	public CacheValueCodec getCodec(TypeReference<?> valueType)
+	{
+		return getCodec(objectMapper.getTypeFactory().constructType(valueType));
+	}
+	
+	/**
+	 * Gets the codec for a resolved value type.
+	 * @param resolvedType The resolved value type.
+	 * @return The codec bound to the value type or a fallback codec.
+	 */
+	@SuppressWarnings("unchecked")
+	public CacheValueCodec getCodec(JavaType resolvedType)
+	{
+		final Class<?> rawType = resolvedType.getRawClass();
+		
+		final Supplier<CacheValueCodec> codec = codecs.get(rawType);
+		if (codec != null)
+			return codec.get();
+		
+		if (Externalizable.class.isAssignableFrom(rawType))
+			return new ExternalizableCacheValueCodec((Class<? extends Externalizable>)rawType);
+		
+		return new DefaultCacheValueCodec(objectMapper, resolvedType);
+	}
+}
@@ -0,0 +1,113 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Flushes the {@link WriteBehindQueue} of every cache in write behind mode on a single background thread.  Each queue is
+ * flushed on a fixed interval and as soon as it holds its batch size.  Queues are held weakly and stop being flushed once
+ * their cache is no longer referenced.  All queues are flushed once more on shutdown.
+ * @since 1.0
+ */
+public class CacheWriteBehindFlusher implements DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(CacheWriteBehindFlusher.class);
+
+	protected final Set<WriteBehindQueue> queues = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	protected final ScheduledExecutorService executor;
+
+	/**
+	 * Constructor
+	 * @param properties The cache settings.
+	 */
+	public CacheWriteBehindFlusher(ClusterCacheProperties properties)
+	{
+		final long interval = Math.max(properties.getWriteBehindFlushInterval(), 1);
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		executor.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Registers the queue of a cache in write behind mode.
+	 * @param queue The queue.
+	 */
+	public void register(WriteBehindQueue queue)
+	{
+		queues.add(queue);
+	}
+
+	/**
+	 * Flushes a queue on the background thread as soon as possible.  The queue is flushed on the calling thread if the
+	 * flusher is shut down.
+	 * @param queue The queue.
+	 */
+	public void requestFlush(WriteBehindQueue queue)
+	{
+		try
+		{
+			executor.execute(() -> flush(queue));
+		}
+		catch (RejectedExecutionException e)
+		{
+			queue.flush();
+		}
+	}
+
+	/**
+	 * Flushes every registered queue.
+	 */
+	public void flushAll()
+	{
+		final List<WriteBehindQueue> snapshot;
+		synchronized (queues)
+		{
+			snapshot = new ArrayList<>(queues);
+		}
+
+		snapshot.forEach(this::flush);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() throws Exception
+	{
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+
+		// queued writes are written by the thread shutting down so they are not lost
+		flushAll();
+	}
+
+	protected void flush(WriteBehindQueue queue)
+	{
+		try
+		{
+			queue.flush();
+		}
+		catch (Exception e)
+		{
+			Log.warn("Failed to flush queued writes of cache {}.  The writes are retried on the next flush.", queue.cacheName, e);
+		}
+	}
+}
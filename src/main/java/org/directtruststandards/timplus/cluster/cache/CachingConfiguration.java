@@ -1,24 +1,37 @@
 package org.directtruststandards.timplus.cluster.cache;
 
+import java.util.Arrays;
+
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.RedisCustomConversions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * Spring configuration for Redis repositories and Redis Template
  * Redis connection information can set using spring configuration (properties files, 
- * spring cloud config, etc).
+ * spring cloud config, etc).  Cache behavior can be tuned using the timplus.cluster.cache
+ * properties described in {@link ClusterCacheProperties}.
  * @author Greg Meyer
  * @since 1.0
  */
 @EnableRedisRepositories
+@EnableConfigurationProperties(ClusterCacheProperties.class)
 @Configuration
-public class CachingConfiguration implements ApplicationContextAware
+public class CachingConfiguration implements ApplicationContextAware, DisposableBean
 {
 	protected static ApplicationContext ctx;
 	
@@ -27,11 +40,110 @@ public class CachingConfiguration implements ApplicationContextAware
 	{
 	   RedisTemplate<byte[], byte[]> template = new RedisTemplate<byte[], byte[]>();
 	   
-	   template.setConnectionFactory(redisConnectionFactory);
+	   // count the commands issued through the template so cache operations can report their Redis usage
+	   template.setConnectionFactory(RedisCommandCounter.wrap(redisConnectionFactory));
 	   
 	   return template;
 	}
 	
+	@Bean
+	public RedisCustomConversions redisCustomConversions()
+	{
+		return new RedisCustomConversions(Arrays.asList(new RedisCacheEntry.EncodedValueWriter(), new RedisCacheEntry.EncodedValueReader()));
+	}
+	
+	@Bean
+	public RedisCacheScripts redisCacheScripts(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate)
+	{
+		return new RedisCacheScripts(redisTemplate);
+	}
+	
+	@Bean
+	public CacheValueCodecRegistry cacheValueCodecRegistry(ObjectMapper objectMapper)
+	{
+		final CacheValueCodecRegistry registry = new CacheValueCodecRegistry(objectMapper);
+		
+		RedisDelegatedClusterCacheFactory.registerValueCodecs(registry);
+		
+		return registry;
+	}
+	
+	@Bean
+	public CacheKeyCodecRegistry cacheKeyCodecRegistry(ObjectMapper objectMapper)
+	{
+		final CacheKeyCodecRegistry registry = new CacheKeyCodecRegistry(objectMapper);
+		
+		RedisDelegatedClusterCacheFactory.registerKeyCodecs(registry);
+		
+		return registry;
+	}
+	
+	@Bean
+	public NearCacheInvalidationBus nearCacheInvalidationBus(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate, ClusterCacheProperties properties)
+	{
+		return new NearCacheInvalidationBus(redisTemplate, properties.getInvalidationHeartbeatInterval());
+	}
+	
+	@Bean
+	public RetiredEntryReclaimer retiredEntryReclaimer(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate, RedisCacheScripts redisCacheScripts)
+	{
+		return new RetiredEntryReclaimer(redisTemplate, redisCacheScripts);
+	}
+	
+	@Bean
+	public ExpiredEntrySweeper expiredEntrySweeper(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate, RedisCacheScripts redisCacheScripts,
+			ClusterCacheProperties clusterCacheProperties)
+	{
+		return new ExpiredEntrySweeper(redisTemplate, redisCacheScripts, clusterCacheProperties);
+	}
+	
+	@Bean
+	public CacheEvictor cacheEvictor(ClusterCacheProperties clusterCacheProperties)
+	{
+		return new CacheEvictor(clusterCacheProperties);
+	}
+	
+	// queued operations are completed on shutdown, so these are shut down before the template's connection
+	@Bean
+	@DependsOn("redisTemplate")
+	public CacheAsyncExecutor cacheAsyncExecutor(ClusterCacheProperties clusterCacheProperties)
+	{
+		return new CacheAsyncExecutor(clusterCacheProperties);
+	}
+	
+	@Bean
+	@DependsOn("redisTemplate")
+	public CacheWriteBehindFlusher cacheWriteBehindFlusher(ClusterCacheProperties clusterCacheProperties)
+	{
+		return new CacheWriteBehindFlusher(clusterCacheProperties);
+	}
+	
+	@Bean
+	public NodePurgeCoordinator nodePurgeCoordinator(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate, RedisCacheScripts redisCacheScripts,
+			NearCacheInvalidationBus nearCacheInvalidationBus, ClusterCacheProperties clusterCacheProperties)
+	{
+		return new NodePurgeCoordinator(redisTemplate, redisCacheScripts, nearCacheInvalidationBus, clusterCacheProperties);
+	}
+	
+	@Bean
+	public RedisMessageListenerContainer clusterCacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory, 
+			NearCacheInvalidationBus nearCacheInvalidationBus)
+	{
+		final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+		
+		container.setConnectionFactory(redisConnectionFactory);
+		container.addMessageListener(nearCacheInvalidationBus, new ChannelTopic(NearCacheInvalidationBus.INVALIDATION_CHANNEL));
+		
+		return container;
+	}
+	
+	@Bean
+	public NearCacheClientTracking nearCacheClientTracking(RedisConnectionFactory redisConnectionFactory, 
+			NearCacheInvalidationBus nearCacheInvalidationBus)
+	{
+		return new NearCacheClientTracking(redisConnectionFactory, nearCacheInvalidationBus);
+	}
+	
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException 
 	{
@@ -42,4 +154,13 @@ public class CachingConfiguration implements ApplicationContextAware
 	{
 		return ctx;
 	}
+	
+	/**
+	 * Removes the JMX metrics of all caches when the cache factory shuts down.
+	 */
+	@Override
+	public void destroy()
+	{
+		CacheMetrics.unregisterAll();
+	}
 }
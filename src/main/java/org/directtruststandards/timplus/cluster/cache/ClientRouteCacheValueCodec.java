@@ -0,0 +1,47 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Arrays;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.jivesoftware.openfire.spi.ClientRoute;
+
+/**
+ * Compact codec for {@link ClientRoute} values.  Values are written as a format marker, a single availability byte, and 
+ * the raw bytes of the route's node id.  Values written in the externalized form by earlier versions are still decoded.
+ * @since 1.0
+ */
+public class ClientRouteCacheValueCodec implements CacheValueCodec
+{
+	protected static final byte FORMAT_MARKER = 0x01;
+	
+	protected final ExternalizableCacheValueCodec legacyCodec = new ExternalizableCacheValueCodec(ClientRoute.class);
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(Object value) throws Exception
+	{
+		final ClientRoute route = (ClientRoute)value;
+		final byte[] nodeId = route.getNodeID().toByteArray();
+		
+		final byte[] retVal = new byte[nodeId.length + 2];
+		retVal[0] = FORMAT_MARKER;
+		retVal[1] = (byte)(route.isAvailable() ? 1 : 0);
+		System.arraycopy(nodeId, 0, retVal, 2, nodeId.length);
+		
+		return retVal;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(byte[] data) throws Exception
+	{
+		if (data.length < 2 || data[0] != FORMAT_MARKER)
+			return legacyCodec.decode(data);
+		
+		return new ClientRoute(NodeID.getInstance(Arrays.copyOfRange(data, 2, data.length)), data[1] != 0);
+	}
+}
@@ -0,0 +1,307 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Tunable settings for the Redis backed cluster caches.  Settings are bound from spring configuration
+ * using the timplus.cluster.cache prefix.  Settings under "defaults" apply to every cache and may be overridden
+ * for an individual cache by adding an entry under "caches" keyed by the cache name.  Cache names that contain spaces
+ * or periods must use bracket notation.  For example:
+ * <pre>
+ * timplus.cluster.cache.defaults.near-cache-enabled=false
+ * timplus.cluster.cache.caches.[Routing\ Users\ Cache].near-cache-enabled=true
+ * </pre>
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "timplus.cluster.cache")
+@Data
+public class ClusterCacheProperties
+{
+	/**
+	 * Settings applied to all caches unless overridden for a specific cache.
+	 */
+	private CacheSettings defaults = CacheSettings.createDefaults();
+
+	/**
+	 * Per cache overrides keyed by cache name.  Only the values that are explicitly set override the defaults.
+	 */
+	private Map<String, CacheSettings> caches = new HashMap<>();
+
+	/**
+	 * Indicates if a single node removes a departed node's entries from all caches while the other nodes wait for it.
+	 * See {@link NodePurgeCoordinator}.
+	 */
+	private boolean purgeCoordinationEnabled = true;
+
+	/**
+	 * The time in milliseconds a node holds the lease to purge a departed node's entries.
+	 */
+	private long purgeLeaseDuration = 60000;
+
+	/**
+	 * The time in milliseconds between checks of a node waiting for another node to finish purging a departed node's entries.
+	 */
+	private long purgePollInterval = 100;
+
+	/**
+	 * The time in milliseconds between heartbeats of the near cache invalidation channel.  Near caches invalidated over pub/sub
+	 * are suspended when a node misses its own heartbeats.
+	 */
+	private long invalidationHeartbeatInterval = 1000;
+
+	/**
+	 * The time in milliseconds between passes that record entry accesses and evict entries of caches with an eviction policy.
+	 * See {@link CacheEvictor}.
+	 */
+	private long evictionInterval = 1000;
+
+	/**
+	 * Indicates if the index memberships of expired repository entries are removed in the background.  See {@link ExpiredEntrySweeper}.
+	 */
+	private boolean indexSweepEnabled = true;
+
+	/**
+	 * The time in milliseconds between batches of the expired entry sweeper.
+	 */
+	private long indexSweepInterval = 1000;
+
+	/**
+	 * The number of entries checked per batch of the expired entry sweeper.  Together with the interval this limits the rate
+	 * of the sweep.
+	 */
+	private int indexSweepBatchSize = 200;
+
+	/**
+	 * The number of threads that run asynchronous cache operations.  See {@link CacheAsyncExecutor}.
+	 */
+	private int asyncThreads = 4;
+
+	/**
+	 * The number of asynchronous cache operations each thread queues before callers block until the thread catches up.
+	 */
+	private int asyncQueueCapacity = 10000;
+
+	/**
+	 * The time in milliseconds between flushes of the queued writes of caches in write behind mode.  See {@link CacheWriteBehindFlusher}.
+	 */
+	private long writeBehindFlushInterval = 100;
+
+	/**
+	 * Gets the effective settings of a cache.
+	 * @param cacheName The name of the cache.
+	 * @return The settings of the cache with any unset values filled in from the defaults.
+	 */
+	public CacheSettings getCacheSettings(String cacheName)
+	{
+		final CacheSettings overrides = caches.get(cacheName);
+
+		return (overrides == null) ? new CacheSettings().applyDefaults(defaults) : overrides.applyDefaults(defaults);
+	}
+
+	/**
+	 * Mechanisms for invalidating near cache entries modified by other cluster nodes.
+	 * @since 1.0
+	 */
+	public enum NearCacheInvalidation
+	{
+		/**
+		 * Writers publish invalidation messages over Redis pub/sub.  See {@link NearCacheInvalidationBus}.
+		 */
+		PUBSUB,
+		
+		/**
+		 * Redis pushes invalidations using server assisted client side caching.  Requires Redis 6 or later.  
+		 * See {@link NearCacheClientTracking}.
+		 */
+		TRACKING
+	}
+	
+	/**
+	 * Layouts used to store the entries of a cache in Redis.
+	 * @since 1.0
+	 */
+	public enum StorageEngine
+	{
+		/**
+		 * Each entry is a Spring Data entity with indexed properties.  See {@link RepositoryRedisCacheStore}.
+		 */
+		REPOSITORY,
+		
+		/**
+		 * Each node's entries of a cache are fields of a single Redis hash.  See {@link HashRedisCacheStore}.
+		 */
+		HASH,
+		
+		/**
+		 * Each node's members of a collection value are a native Redis set.  Only applies to caches whose values are collections.
+		 * Other caches fall back to the repository engine.  See {@link SetRedisCacheStore}.
+		 */
+		SET
+	}
+	
+	/**
+	 * Policies that choose the entries evicted when a node holds more entries of a cache than the cache's max size.
+	 * @since 1.0
+	 */
+	public enum EvictionPolicy
+	{
+		/**
+		 * Entries are never evicted.  The max size only bounds the near cache.
+		 */
+		NONE,
+		
+		/**
+		 * The least recently read or written entries are evicted first.
+		 */
+		LRU,
+		
+		/**
+		 * The least frequently read or written entries are evicted first.
+		 */
+		LFU,
+		
+		/**
+		 * The entries written first are evicted first regardless of reads.  Rewriting an entry does not make it newer.
+		 */
+		FIFO
+	}
+	
+	/**
+	 * Settings of an individual cache.  A null value indicates the value is not set and should be
+	 * inherited from the defaults.
+	 * @since 1.0
+	 */
+	@Data
+	public static class CacheSettings
+	{
+		/**
+		 * Indicates if deserialized values should be held in a bounded in-process tier in front of Redis.
+		 */
+		private Boolean nearCacheEnabled;
+
+		/**
+		 * The maximum number of entries held in the near cache.  The cache's max size further bounds this value
+		 * when the cache has a positive max size.
+		 */
+		private Long nearCacheMaxEntries;
+
+		/**
+		 * The maximum time in milliseconds an entry is held in the near cache.  The cache's max lifetime further
+		 * bounds this value when the cache has a positive max lifetime.
+		 */
+		private Long nearCacheMaxLifetime;
+
+		/**
+		 * How near cache entries are invalidated when other cluster nodes modify the cache.
+		 */
+		private NearCacheInvalidation nearCacheInvalidation;
+		
+		/**
+		 * The maximum number of entries sent to Redis in a single pipeline by bulk operations such as putAll.
+		 */
+		private Integer bulkChunkSize;
+		
+		/**
+		 * The layout used to store the entries of the cache in Redis.  Nodes sharing a cache must use the same engine.
+		 */
+		private StorageEngine storageEngine;
+		
+		/**
+		 * Indicates if per operation latency and Redis command metrics are recorded and published over JMX.
+		 */
+		private Boolean metricsEnabled;
+
+		/**
+		 * Indicates if entries are indexed by a fingerprint of their value so that containsValue checks only the entries with
+		 * a matching fingerprint instead of scanning the cache.  Only applies to the repository storage engine.  Entries written
+		 * while the index is disabled are not found by containsValue, so all nodes sharing a cache must use the same setting.
+		 */
+		private Boolean valueIndexEnabled;
+
+		/**
+		 * The policy used to evict the local node's entries once it holds more entries than the cache's max size.  Eviction
+		 * runs in the background, so a node may briefly hold more entries than the max size.
+		 */
+		private EvictionPolicy evictionPolicy;
+
+		/**
+		 * Indicates if put, addMember and removeMember return without waiting for Redis.  The writes complete in the background
+		 * in the order they were made for each key, and other operations of the local node on a key wait for its pending writes,
+		 * so the local node always reads its own writes.  Failed writes are logged and counted but not reported to the caller.
+		 */
+		private Boolean asyncWritesEnabled;
+
+		/**
+		 * Indicates if put and putAll queue the local node's writes and return immediately.  Writes to the same key are coalesced
+		 * and flushed in pipelined batches.  See {@link WriteBehindQueue}.  Takes precedence over asynchronous writes.  Writes that
+		 * are still queued are not visible to other nodes and are lost if the node fails.
+		 */
+		private Boolean writeBehindEnabled;
+
+		/**
+		 * The number of queued writes that triggers a flush in write behind mode.
+		 */
+		private Integer writeBehindBatchSize;
+
+		/**
+		 * The maximum number of queued writes in write behind mode.  Writers flush the queue themselves once it is full.
+		 */
+		private Integer writeBehindQueueCapacity;
+
+		/**
+		 * Creates settings populated with the system default values.
+		 * @return Settings populated with the system default values.
+		 */
+		public static CacheSettings createDefaults()
+		{
+			final CacheSettings retVal = new CacheSettings();
+
+			retVal.setNearCacheEnabled(false);
+			retVal.setNearCacheMaxEntries(10000L);
+			retVal.setNearCacheMaxLifetime(60000L);
+			retVal.setNearCacheInvalidation(NearCacheInvalidation.PUBSUB);
+			retVal.setBulkChunkSize(500);
+			retVal.setStorageEngine(StorageEngine.REPOSITORY);
+			retVal.setMetricsEnabled(true);
+			retVal.setValueIndexEnabled(false);
+			retVal.setEvictionPolicy(EvictionPolicy.NONE);
+			retVal.setAsyncWritesEnabled(false);
+			retVal.setWriteBehindEnabled(false);
+			retVal.setWriteBehindBatchSize(500);
+			retVal.setWriteBehindQueueCapacity(10000);
+
+			return retVal;
+		}
+
+		/**
+		 * Creates a copy of these settings with all unset values populated from the provided defaults.
+		 * @param defaults The settings used for values not set in this instance.
+		 * @return A new settings instance with all values populated.
+		 */
+		public CacheSettings applyDefaults(CacheSettings defaults)
+		{
+			final CacheSettings retVal = new CacheSettings();
+
+			retVal.setNearCacheEnabled(nearCacheEnabled != null ? nearCacheEnabled : defaults.getNearCacheEnabled());
+			retVal.setNearCacheMaxEntries(nearCacheMaxEntries != null ? nearCacheMaxEntries : defaults.getNearCacheMaxEntries());
+			retVal.setNearCacheMaxLifetime(nearCacheMaxLifetime != null ? nearCacheMaxLifetime : defaults.getNearCacheMaxLifetime());
+			retVal.setNearCacheInvalidation(nearCacheInvalidation != null ? nearCacheInvalidation : defaults.getNearCacheInvalidation());
+			retVal.setBulkChunkSize(bulkChunkSize != null ? bulkChunkSize : defaults.getBulkChunkSize());
+			retVal.setStorageEngine(storageEngine != null ? storageEngine : defaults.getStorageEngine());
+			retVal.setMetricsEnabled(metricsEnabled != null ? metricsEnabled : defaults.getMetricsEnabled());
+			retVal.setValueIndexEnabled(valueIndexEnabled != null ? valueIndexEnabled : defaults.getValueIndexEnabled());
+			retVal.setEvictionPolicy(evictionPolicy != null ? evictionPolicy : defaults.getEvictionPolicy());
+			retVal.setAsyncWritesEnabled(asyncWritesEnabled != null ? asyncWritesEnabled : defaults.getAsyncWritesEnabled());
+			retVal.setWriteBehindEnabled(writeBehindEnabled != null ? writeBehindEnabled : defaults.getWriteBehindEnabled());
+			retVal.setWriteBehindBatchSize(writeBehindBatchSize != null ? writeBehindBatchSize : defaults.getWriteBehindBatchSize());
+			retVal.setWriteBehindQueueCapacity(writeBehindQueueCapacity != null ? writeBehindQueueCapacity : defaults.getWriteBehindQueueCapacity());
+
+			return retVal;
+		}
+	}
+}
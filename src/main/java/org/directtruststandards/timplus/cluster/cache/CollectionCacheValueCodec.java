@@ -0,0 +1,111 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Codec for collection values of caches stored as native Redis sets by {@link SetRedisCacheStore}.  Each element is encoded
+ * with the codec of the element type, and the encoded elements are framed into a single value so that the value can pass
+ * through the cache store API unchanged.  Each element is written as its length as a 4 byte big endian integer followed by
+ * the encoded element.  A null value is encoded as an empty collection.
+ * <p>
+ * Values are decoded as an {@link ArrayList}.  Sets do not keep the order of their members, so the order of decoded elements
+ * may differ from the order they were written in.
+ * @since 1.0
+ */
+public class CollectionCacheValueCodec implements CacheValueCodec
+{
+	protected final CacheValueCodec elementCodec;
+
+	/**
+	 * Constructor
+	 * @param elementCodec The codec of the collection elements.
+	 */
+	public CollectionCacheValueCodec(CacheValueCodec elementCodec)
+	{
+		this.elementCodec = elementCodec;
+	}
+
+	/**
+	 * Gets the codec of the collection elements.
+	 * @return The codec of the collection elements.
+	 */
+	public CacheValueCodec getElementCodec()
+	{
+		return elementCodec;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(Object value) throws Exception
+	{
+		final List<byte[]> elements = new ArrayList<>();
+
+		if (value != null)
+		{
+			for (Object element : (Collection<?>)value)
+				elements.add(elementCodec.encode(element));
+		}
+
+		return join(elements);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(byte[] data) throws Exception
+	{
+		final List<Object> retVal = new ArrayList<>();
+
+		for (byte[] element : split(data))
+			retVal.add(elementCodec.decode(element));
+
+		return retVal;
+	}
+
+	/**
+	 * Frames encoded elements into a single value.
+	 * @param elements The encoded elements.
+	 * @return The framed value.
+	 */
+	public static byte[] join(Collection<byte[]> elements)
+	{
+		int length = 0;
+		for (byte[] element : elements)
+			length += 4 + element.length;
+
+		final ByteBuffer retVal = ByteBuffer.allocate(length);
+		for (byte[] element : elements)
+			retVal.putInt(element.length).put(element);
+
+		return retVal.array();
+	}
+
+	/**
+	 * Splits a framed value into its encoded elements.
+	 * @param data The framed value or null.
+	 * @return The encoded elements.  The list is empty if the value is null.
+	 */
+	public static List<byte[]> split(byte[] data)
+	{
+		final List<byte[]> retVal = new ArrayList<>();
+
+		if (data == null)
+			return retVal;
+
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining())
+		{
+			final byte[] element = new byte[buffer.getInt()];
+			buffer.get(element);
+			retVal.add(element);
+		}
+
+		return retVal;
+	}
+}
@@ -0,0 +1,27 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * Codec that uses the string form of a key as the encoded key.  String keys are used as is without any allocation.  Encoded
+ * keys are decoded as strings.  This is the fallback for caches without a key codec bound in the {@link CacheKeyCodecRegistry}.
+ * @since 1.0
+ */
+public class DefaultCacheKeyCodec implements CacheKeyCodec
+{
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String encode(Object key)
+	{
+		return (key instanceof String) ? (String)key : String.valueOf(key);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(String encoded)
+	{
+		return encoded;
+	}
+}
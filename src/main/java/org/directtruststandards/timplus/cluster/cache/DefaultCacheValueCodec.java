@@ -0,0 +1,94 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.io.Externalizable;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Codec that writes {@link Externalizable} values with their own externalized form and all other values as Jackson JSON.  
+ * Both forms are stored as raw bytes.  This is the fallback for caches without a codec bound in the {@link CacheValueCodecRegistry}.
+ * <p>
+ * The value type is resolved and the Jackson reader and writer are bound once when the codec is created so that encoding
+ * and decoding do no type resolution.
+ * @since 1.0
+ */
+public class DefaultCacheValueCodec implements CacheValueCodec
+{
+	protected final JavaType valueType;
+	
+	protected final ExternalizableCacheValueCodec externalizableCodec;
+	
+	protected final ObjectReader reader;
+	
+	protected final ObjectWriter writer;
+	
+	/**
+	 * Constructor
+	 * @param objectMapper The mapper used for JSON values.
+	 * @param valueType The declared value type of the cache.
+	 */
+	public DefaultCacheValueCodec(ObjectMapper objectMapper, TypeReference<?> valueType)
+	{
+		this(objectMapper, objectMapper.getTypeFactory().constructType(valueType));
+	}
+	
+	/**
+	 * Constructor
+	 * @param objectMapper The mapper used for JSON values.
+	 * @param valueType The resolved declared value type of the cache.
+	 */
+	@SuppressWarnings("unchecked")
+	public DefaultCacheValueCodec(ObjectMapper objectMapper, JavaType valueType)
+	{
+		this.valueType = valueType;
+		
+		this.externalizableCodec = Externalizable.class.isAssignableFrom(valueType.getRawClass()) ? 
+				new ExternalizableCacheValueCodec((Class<? extends Externalizable>)valueType.getRawClass()) : null;
+		
+		this.reader = objectMapper.readerFor(valueType);
+		
+		// only bind the writer to final types... values of other types are written using their runtime type
+		this.writer = valueType.isFinal() ? objectMapper.writerFor(valueType) : objectMapper.writer();
+	}
+	
+	/**
+	 * Indicates if the declared value type of the cache is {@link Externalizable}.
+	 * @return True if the declared value type of the cache is {@link Externalizable}.
+	 */
+	public boolean isExternalizable()
+	{
+		return externalizableCodec != null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(Object value) throws Exception
+	{
+		if (externalizableCodec != null)
+			return externalizableCodec.encode(value);
+		
+		// check and see if the value has it's own wrapping
+		if (value instanceof Externalizable)
+			return new ExternalizableCacheValueCodec(((Externalizable)value).getClass()).encode(value);
+		
+		return writer.writeValueAsBytes(value);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(byte[] data) throws Exception
+	{
+		if (externalizableCodec != null)
+			return externalizableCodec.decode(data);
+		
+		return reader.readValue(data);
+	}
+}
@@ -0,0 +1,39 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import org.jivesoftware.openfire.session.DomainPair;
+
+/**
+ * Compact codec for {@link DomainPair} keys.  Keys are written as the local domain followed by a '|' separator and the remote
+ * domain.  The separator can not occur in a domain name, so keys decode back to the original pair.  Unlike the toString form,
+ * the encoding is built in a single exactly sized buffer and does not change with the Openfire version.
+ * @since 1.0
+ */
+public class DomainPairCacheKeyCodec implements CacheKeyCodec
+{
+	protected static final char SEPARATOR = '|';
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String encode(Object key)
+	{
+		final DomainPair pair = (DomainPair)key;
+		
+		final String local = pair.getLocal();
+		final String remote = pair.getRemote();
+		
+		return new StringBuilder(local.length() + 1 + remote.length()).append(local).append(SEPARATOR).append(remote).toString();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(String encoded)
+	{
+		final int separator = encoded.indexOf(SEPARATOR);
+		
+		return new DomainPair(encoded.substring(0, separator), encoded.substring(separator + 1));
+	}
+}
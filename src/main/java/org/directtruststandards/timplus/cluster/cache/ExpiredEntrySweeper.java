@@ -0,0 +1,255 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Removes the index memberships of expired {@link RedisCacheEntry} records in the background.  Redis expires entry hashes on
+ * its own, but Spring Data only cleans the secondary index sets of expired entries when keyspace events are enabled and
+ * the expiration listener is running.  Otherwise every index set keeps the ids of expired entries, and every lookup through
+ * an index pays for them.
+ * <p>
+ * The sweeper walks the keyspace set, which holds the id of every entry, with a cursor and removes the index memberships
+ * of the entries whose hash no longer exists.  Each batch checks a bounded number of entries in a single script, and
+ * batches run on a single daemon thread at a fixed interval, so the sweep is rate limited and never blocks Redis for long.
+ * The cursor is kept across batches, so a walk of all entries spans many batches.  Progress is published over JMX.
+ * @since 1.0
+ */
+public class ExpiredEntrySweeper implements ExpiredEntrySweeperMXBean, DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(ExpiredEntrySweeper.class);
+
+	protected static final String START_CURSOR = "0";
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final ClusterCacheProperties properties;
+
+	protected final ScheduledExecutorService executor;
+
+	protected final AtomicLong batches = new AtomicLong();
+
+	protected final AtomicLong scannedEntries = new AtomicLong();
+
+	protected final AtomicLong removedEntries = new AtomicLong();
+
+	protected final AtomicLong completedWalks = new AtomicLong();
+
+	protected final AtomicLong failures = new AtomicLong();
+
+	protected volatile long lastWalkDurationMillis;
+
+	protected String cursor = START_CURSOR;
+
+	protected long walkStartedAt = System.currentTimeMillis();
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to execute the sweep script.
+	 * @param scripts The scripts used to sweep expired entries.
+	 * @param properties The cache settings.
+	 */
+	public ExpiredEntrySweeper(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, ClusterCacheProperties properties)
+	{
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.properties = properties;
+
+		if (!properties.isIndexSweepEnabled())
+		{
+			this.executor = null;
+			return;
+		}
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-index-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		final long interval = Math.max(properties.getIndexSweepInterval(), 1);
+		executor.scheduleWithFixedDelay(this::sweepScheduled, interval, interval, TimeUnit.MILLISECONDS);
+
+		register();
+	}
+
+	/**
+	 * Checks the next batch of entries and removes the index memberships of the expired ones.
+	 * @return The number of removed expired entries.
+	 */
+	public synchronized long sweep()
+	{
+		final byte[][] keysAndArgs = { toBytes(RedisCacheEntry.KEYSPACE), toBytes(RedisCacheEntry.KEYSPACE + ":"), toBytes(cursor),
+				toBytes(String.valueOf(Math.max(properties.getIndexSweepBatchSize(), 1))), toBytes(CacheEvictionTracker.KEYSPACE) };
+
+		final List<?> result = redisTemplate.execute((RedisCallback<List<?>>)connection ->
+			scripts.execute(connection, RedisCacheScripts.SWEEP_EXPIRED, ReturnType.MULTI, 1, keysAndArgs));
+
+		final long removed = (Long)result.get(2);
+
+		batches.incrementAndGet();
+		scannedEntries.addAndGet((Long)result.get(1));
+		removedEntries.addAndGet(removed);
+
+		cursor = new String((byte[])result.get(0), StandardCharsets.UTF_8);
+		if (START_CURSOR.equals(cursor))
+		{
+			final long now = System.currentTimeMillis();
+
+			completedWalks.incrementAndGet();
+			lastWalkDurationMillis = now - walkStartedAt;
+			walkStartedAt = now;
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Walks all entries from the start in consecutive batches on the calling thread.
+	 * @return The number of removed expired entries.
+	 */
+	public synchronized long sweepAll()
+	{
+		cursor = START_CURSOR;
+		walkStartedAt = System.currentTimeMillis();
+
+		long retVal = 0;
+		do
+		{
+			retVal += sweep();
+		} while (!START_CURSOR.equals(cursor));
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getBatches()
+	{
+		return batches.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getScannedEntries()
+	{
+		return scannedEntries.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRemovedEntries()
+	{
+		return removedEntries.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCompletedWalks()
+	{
+		return completedWalks.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getLastWalkDurationMillis()
+	{
+		return lastWalkDurationMillis;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getFailures()
+	{
+		return failures.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() throws Exception
+	{
+		if (executor == null)
+			return;
+
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Gets the JMX name of the sweeper.
+	 * @return The JMX name.
+	 * @throws Exception Thrown if the name is not a valid JMX name.
+	 */
+	public static ObjectName getObjectName() throws Exception
+	{
+		return new ObjectName(CacheMetrics.JMX_DOMAIN + ":type=ExpiredEntrySweeper");
+	}
+
+	protected void sweepScheduled()
+	{
+		try
+		{
+			sweep();
+		}
+		catch (Exception e)
+		{
+			failures.incrementAndGet();
+			Log.warn("Failed to sweep expired cache entries.  The batch is retried on the next run.", e);
+		}
+	}
+
+	protected void register()
+	{
+		try
+		{
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = getObjectName();
+
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+
+			server.registerMBean(this, name);
+		}
+		catch (Exception e)
+		{
+			Log.warn("Failed to publish the expired entry sweeper over JMX", e);
+		}
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
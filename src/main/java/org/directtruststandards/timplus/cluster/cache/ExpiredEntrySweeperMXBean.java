@@ -0,0 +1,44 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+/**
+ * JMX view of the progress of the {@link ExpiredEntrySweeper}.
+ * @since 1.0
+ */
+public interface ExpiredEntrySweeperMXBean
+{
+	/**
+	 * Gets the number of batches run.
+	 * @return The number of batches run.
+	 */
+	public long getBatches();
+
+	/**
+	 * Gets the number of entries checked for expiration.
+	 * @return The number of checked entries.
+	 */
+	public long getScannedEntries();
+
+	/**
+	 * Gets the number of expired entries whose index memberships were removed.
+	 * @return The number of removed expired entries.
+	 */
+	public long getRemovedEntries();
+
+	/**
+	 * Gets the number of completed walks of all entries.
+	 * @return The number of completed walks.
+	 */
+	public long getCompletedWalks();
+
+	/**
+	 * Gets the time in milliseconds the last completed walk of all entries took.
+	 * @return The duration of the last completed walk or 0 if no walk completed yet.
+	 */
+	public long getLastWalkDurationMillis();
+
+	/**
+	 * Gets the number of batches that failed.
+	 * @return The number of failed batches.
+	 */
+	public long getFailures();
+}
@@ -0,0 +1,70 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Codec for caches whose values are {@link Externalizable}.  Values are written with their own externalized form.
+ * <p>
+ * Earlier versions stored externalized values as Base64 text.  Externalized values always start with the Java serialization
+ * stream magic number, which is not a Base64 character, so values without the magic number are decoded as Base64 text.
+ * @since 1.0
+ */
+public class ExternalizableCacheValueCodec implements CacheValueCodec
+{
+	protected static final byte STREAM_MAGIC_HIGH_BYTE = (byte)((ObjectOutputStream.STREAM_MAGIC >> 8) & 0xFF);
+	
+	protected final Class<? extends Externalizable> valueType;
+	
+	/**
+	 * Constructor
+	 * @param valueType The value type of the cache.  The type must have a public no argument constructor.
+	 */
+	public ExternalizableCacheValueCodec(Class<? extends Externalizable> valueType)
+	{
+		this.valueType = valueType;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(Object value) throws Exception
+	{
+		final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		final ObjectOutputStream obOutStream = new ObjectOutputStream(outStream);
+		((Externalizable)value).writeExternal(obOutStream);
+		obOutStream.flush();
+		
+		return outStream.toByteArray();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(byte[] data) throws Exception
+	{
+		final ObjectInputStream obInStream = new ObjectInputStream(new ByteArrayInputStream(isExternalized(data) ? data : Base64.decodeBase64(data)));
+		 
+		final Externalizable retVal = valueType.newInstance();
+		retVal.readExternal(obInStream);
+		 
+		return retVal;
+	}
+	
+	/**
+	 * Indicates if encoded data starts with the Java serialization stream magic number.
+	 * @param data The encoded data.
+	 * @return True if the data starts with the Java serialization stream magic number.
+	 */
+	public static boolean isExternalized(byte[] data)
+	{
+		return data.length > 0 && data[0] == STREAM_MAGIC_HIGH_BYTE;
+	}
+}
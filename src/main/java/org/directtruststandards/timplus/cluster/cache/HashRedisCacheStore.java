@@ -0,0 +1,634 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * Storage engine that keeps one Redis hash per cache per cluster node.  Each entry is a single field of the node's hash, so
+ * an entry costs one hash field instead of an entity hash, three index set memberships, and an index membership set.  The
+ * nodes that hold entries of a cache are registered in a set, which is used to read the entries of all nodes for a key.
+ * <p>
+ * Keys are laid out as follows, where the cache name is a Redis Cluster hash tag:
+ * <br>
+ * timpluscache:{CacheName}:node:NodeID - Hash of a node's entries keyed by entry key
+ * <br>
+ * timpluscache:{CacheName}:nodes - Set of the ids of the nodes that hold entries of the cache
+ * <p>
+ * Redis can only expire whole keys, so each node hash expires once the cache max lifetime has passed since the node last
+ * wrote to the cache.  Each entry additionally carries its own expiration time, and readers skip entries that expired
+ * while the node hash is still alive.  Every write also checks a few fields of the node's hash and removes the expired ones,
+ * so the hash of a node that keeps writing does not grow with expired entries.  The position of this sweep is kept in
+ * timpluscache:{CacheName}:sweep:NodeID.  Entries are encoded as the expiration time in milliseconds since the epoch (0 for
+ * entries that never expire) as ASCII digits, followed by a '|' separator and the encoded value.  The separator is omitted for
+ * null values.
+ * @since 1.0
+ */
+public class HashRedisCacheStore extends RedisCacheStore
+{
+	public static final String KEYSPACE = "timpluscache";
+
+	protected static final byte VALUE_SEPARATOR = '|';
+
+	/**
+	 * The number of fields checked for expiration per written entry.  More than one, so expired fields are removed faster
+	 * than new fields are added.
+	 */
+	protected static final int SWEPT_FIELDS_PER_ENTRY = 4;
+
+	/**
+	 * The number of keys and arguments of the hash put script that precede the entries.
+	 */
+	protected static final int PUT_HEADER_LENGTH = 10;
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected String nodeKeyPrefix;
+
+	protected byte[] nodeKeyPrefixBytes;
+
+	protected byte[] nodeRegistryKey;
+
+	protected byte[] localNodeKey;
+
+	protected byte[] localSweepKey;
+
+	protected byte[] trackingKeyPrefix;
+
+	protected byte[] localNodeId;
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to access Redis.
+	 * @param scripts The scripts used for atomic and bulk operations.
+	 * @param name The name of the cache.
+	 * @param nodeId The id of the local cluster node.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 * @param bulkChunkSize The maximum number of entries sent to Redis in a single script by bulk operations.
+	 */
+	public HashRedisCacheStore(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, String name, NodeID nodeId,
+			long maxLifetime, int bulkChunkSize)
+	{
+		super(name, nodeId, maxLifetime, bulkChunkSize);
+
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+
+		this.localNodeId = toBytes(nodeId.toString());
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setName(String name)
+	{
+		super.setName(name);
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void put(String key, byte[] value, boolean singleton)
+	{
+		final byte[][] keysAndArgs = createPutArgs(1, singleton);
+		keysAndArgs[PUT_HEADER_LENGTH] = toBytes(key);
+		keysAndArgs[PUT_HEADER_LENGTH + 1] = encode(value, getExpiresAt());
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.HASH_PUT, ReturnType.INTEGER,
+				3, keysAndArgs));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putAll(Map<String, byte[]> values, boolean singleton)
+	{
+		final long expiresAt = getExpiresAt();
+
+		final List<byte[][]> chunks = new ArrayList<>();
+
+		byte[][] chunk = null;
+		int index = 0;
+		int remaining = values.size();
+		for (Entry<String, byte[]> entry : values.entrySet())
+		{
+			if (chunk == null)
+			{
+				chunk = createPutArgs(Math.min(remaining, Math.max(bulkChunkSize, 1)), singleton);
+				index = PUT_HEADER_LENGTH;
+			}
+
+			chunk[index++] = toBytes(entry.getKey());
+			chunk[index++] = encode(entry.getValue(), expiresAt);
+			--remaining;
+
+			if (index == chunk.length)
+			{
+				chunks.add(chunk);
+				chunk = null;
+			}
+		}
+
+		// writing the same values again is harmless, so the chunks can safely be resent if the scripts were not loaded
+		scripts.executePipelined(connection -> chunks.forEach(keysAndArgs ->
+				scripts.execute(connection, RedisCacheScripts.HASH_PUT, ReturnType.INTEGER, 3, keysAndArgs)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> get(String key)
+	{
+		final byte[][] keysAndArgs = createGetArgs(1);
+		keysAndArgs[3] = toBytes(key);
+
+		final List<?> result = redisTemplate.execute((RedisCallback<List<?>>)connection -> scripts.execute(connection,
+				RedisCacheScripts.HASH_GET, ReturnType.MULTI, 1, keysAndArgs));
+
+		return toValues((List<?>)result.get(0));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<List<byte[]>> getAll(List<String> keys)
+	{
+		final int size = Math.max(bulkChunkSize, 1);
+
+		final List<Object> results = scripts.executePipelined(connection ->
+		{
+			for (int start = 0; start < keys.size(); start += size)
+			{
+				final List<String> chunk = keys.subList(start, Math.min(start + size, keys.size()));
+
+				final byte[][] keysAndArgs = createGetArgs(chunk.size());
+				for (int i = 0; i < chunk.size(); ++i)
+					keysAndArgs[3 + i] = toBytes(chunk.get(i));
+
+				scripts.execute(connection, RedisCacheScripts.HASH_GET, ReturnType.MULTI, 1, keysAndArgs);
+			}
+		});
+
+		final List<List<byte[]>> retVal = new ArrayList<>(keys.size());
+		for (Object chunkResult : results)
+		{
+			for (Object keyResult : (List<?>)chunkResult)
+				retVal.add(toValues((List<?>)keyResult));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] remove(String key)
+	{
+		final byte[] encoded = redisTemplate.execute((RedisCallback<byte[]>)connection -> scripts.execute(connection,
+				RedisCacheScripts.HASH_REMOVE, ReturnType.VALUE, 1, localNodeKey, toBytes(key)));
+
+		if (encoded == null || isExpired(encoded, System.currentTimeMillis()))
+			return null;
+
+		return decodeValue(encoded);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeAll(Collection<String> keys)
+	{
+		if (keys.isEmpty())
+			return;
+
+		final byte[][] fields = new byte[keys.size()][];
+		int i = 0;
+		for (String key : keys)
+			fields[i++] = toBytes(key);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> connection.hashCommands().hDel(localNodeKey, fields));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> values()
+	{
+		final List<byte[]> retVal = new LinkedList<>();
+
+		final long now = System.currentTimeMillis();
+
+		for (Object nodeValues : readAllNodes((connection, nodeKey) -> connection.hashCommands().hVals(nodeKey)))
+		{
+			for (Object encoded : (List<?>)nodeValues)
+			{
+				if (!isExpired((byte[])encoded, now))
+					retVal.add(decodeValue((byte[])encoded));
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, byte[]> entries()
+	{
+		final Map<byte[], byte[]> encoded = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>)connection ->
+				connection.hashCommands().hGetAll(localNodeKey));
+
+		final Map<String, byte[]> retVal = new HashMap<>();
+
+		final long now = System.currentTimeMillis();
+
+		encoded.forEach((key, value) ->
+		{
+			if (!isExpired(value, now))
+				retVal.put(toString(key), decodeValue(value));
+		});
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<String> keys()
+	{
+		return entries().keySet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<byte[]> scanValues()
+	{
+		final Set<byte[]> nodes = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+				connection.setCommands().sMembers(nodeRegistryKey));
+
+		final List<byte[]> nodeKeys = new ArrayList<>();
+		if (nodes != null)
+			nodes.forEach(node -> nodeKeys.add(toBytes(nodeKeyPrefix + toString(node))));
+
+		return scanNodes(nodeKeys, entry -> decodeValue(entry.getValue()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<Entry<String, byte[]>> scanEntries()
+	{
+		return scanNodes(Collections.singletonList(localNodeKey),
+				entry -> new AbstractMap.SimpleImmutableEntry<>(toString(entry.getKey()), decodeValue(entry.getValue())));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<String> scanKeys()
+	{
+		return scanNodes(Collections.singletonList(localNodeKey), entry -> toString(entry.getKey()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Fields are counted with a single HLEN, which may include expired fields that were not removed yet.  Every write removes the
+	 * expired fields it checks and the hash expires as a whole once the node stops writing, so the count exceeds the number of
+	 * unexpired entries by at most the fields that expired since they were last checked by a write.
+	 */
+	@Override
+	public long size()
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> connection.hashCommands().hLen(localNodeKey));
+
+		return (retVal == null) ? 0 : retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Expired fields that were not removed yet are skipped, and the hash is only scanned up to its first unexpired field.
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		if (maxLifetime < 1)
+			return size() == 0;
+
+		try (CloseableIterator<String> keys = scanKeys())
+		{
+			return !keys.hasNext();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsKey(String key)
+	{
+		return !get(key).isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsValue(byte[] value)
+	{
+		for (byte[] existing : values())
+		{
+			if (Arrays.equals(existing, value))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void purge(NodeID node)
+	{
+		final byte[] nodeKey = toBytes(nodeKeyPrefix + node.toString());
+		final byte[] sweepKey = toBytes(getSweepKey(name, node));
+		final byte[] purgedNodeId = toBytes(node.toString());
+
+		// UNLINK reclaims the memory of large hashes off the Redis main thread
+		redisTemplate.execute((RedisCallback<List<Object>>)connection ->
+		{
+			connection.openPipeline();
+
+			connection.keyCommands().unlink(nodeKey, sweepKey);
+			connection.setCommands().sRem(nodeRegistryKey, purgedNodeId);
+
+			return connection.closePipeline();
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The local node's entries are a single hash that is unlinked in constant time.
+	 */
+	@Override
+	public void clear()
+	{
+		purge(nodeId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * An entry is live while the local node's hash holds an unexpired field for it.
+	 */
+	@Override
+	public byte[][] getLivenessCheck()
+	{
+		return new byte[][] { { 'h' }, localNodeKey, new byte[0], new byte[0] };
+	}
+
+	/**
+	 * Gets the name of the hash holding a node's entries of a cache.
+	 * @param cacheName The name of the cache.
+	 * @param node The node.
+	 * @return The name of the hash holding the node's entries of the cache.
+	 */
+	public static String getNodeKey(String cacheName, NodeID node)
+	{
+		return getNodeKeyPrefix(cacheName) + node.toString();
+	}
+
+	/**
+	 * Gets the name of the set of nodes holding entries of a cache.
+	 * @param cacheName The name of the cache.
+	 * @return The name of the set of nodes holding entries of the cache.
+	 */
+	public static String getNodeRegistryKey(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:nodes";
+	}
+
+	/**
+	 * Gets the name of the key holding the expiration sweep cursor of a node's hash of a cache.
+	 * @param cacheName The name of the cache.
+	 * @param node The node.
+	 * @return The name of the key holding the sweep cursor.
+	 */
+	public static String getSweepKey(String cacheName, NodeID node)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:sweep:" + node.toString();
+	}
+
+	protected static String getNodeKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:node:";
+	}
+
+	protected void initKeys()
+	{
+		nodeKeyPrefix = getNodeKeyPrefix(name);
+		nodeKeyPrefixBytes = toBytes(nodeKeyPrefix);
+		nodeRegistryKey = toBytes(getNodeRegistryKey(name));
+		localNodeKey = toBytes(getNodeKey(name, nodeId));
+		localSweepKey = toBytes(getSweepKey(name, nodeId));
+		trackingKeyPrefix = toBytes(CacheEvictionTracker.getTrackingKeyPrefix(name));
+	}
+
+	protected long getExpiresAt()
+	{
+		return (maxLifetime > 0) ? System.currentTimeMillis() + maxLifetime : 0;
+	}
+
+	/**
+	 * Creates the keys and arguments of the hash put script with room for the given number of entries.
+	 */
+	protected byte[][] createPutArgs(int entryCount, boolean singleton)
+	{
+		final byte[][] retVal = new byte[PUT_HEADER_LENGTH + entryCount * 2][];
+
+		retVal[0] = localNodeKey;
+		retVal[1] = nodeRegistryKey;
+		retVal[2] = localSweepKey;
+		retVal[3] = nodeKeyPrefixBytes;
+		retVal[4] = localNodeId;
+		retVal[5] = toBytes(String.valueOf(maxLifetime));
+		retVal[6] = toBytes(singleton ? "1" : "0");
+		retVal[7] = toBytes(String.valueOf(System.currentTimeMillis()));
+		retVal[8] = toBytes(String.valueOf(entryCount * SWEPT_FIELDS_PER_ENTRY));
+		retVal[9] = trackingKeyPrefix;
+
+		return retVal;
+	}
+
+	/**
+	 * Creates the keys and arguments of the hash get script with room for the given number of keys.
+	 */
+	protected byte[][] createGetArgs(int keyCount)
+	{
+		final byte[][] retVal = new byte[3 + keyCount][];
+
+		retVal[0] = nodeRegistryKey;
+		retVal[1] = nodeKeyPrefixBytes;
+		retVal[2] = toBytes(String.valueOf(System.currentTimeMillis()));
+
+		return retVal;
+	}
+
+	/**
+	 * Issues a read command against the hash of every node registered with the cache in a single pipeline.
+	 */
+	protected List<Object> readAllNodes(NodeReader reader)
+	{
+		final Set<byte[]> nodes = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+				connection.setCommands().sMembers(nodeRegistryKey));
+
+		if (nodes == null || nodes.isEmpty())
+			return new ArrayList<>();
+
+		return redisTemplate.execute((RedisCallback<List<Object>>)connection ->
+		{
+			connection.openPipeline();
+
+			for (byte[] node : nodes)
+				reader.read(connection, toBytes(nodeKeyPrefix + toString(node)));
+
+			return connection.closePipeline();
+		});
+	}
+
+	/**
+	 * Lazily iterates the unexpired entries of node hashes one HSCAN cursor at a time.
+	 */
+	protected <T> CloseableIterator<T> scanNodes(List<byte[]> nodeKeys, Function<Entry<byte[], byte[]>, T> mapper)
+	{
+		final ScanOptions options = ScanOptions.scanOptions().count(bulkChunkSize).build();
+
+		final List<Supplier<Cursor<Entry<byte[], byte[]>>>> sources = new ArrayList<>(nodeKeys.size());
+		nodeKeys.forEach(nodeKey -> sources.add(() -> redisTemplate.executeWithStickyConnection(
+				(RedisCallback<Cursor<Entry<byte[], byte[]>>>)connection -> connection.hashCommands().hScan(nodeKey, options))));
+
+		return new StoreCursor<>(sources, bulkChunkSize, batch ->
+		{
+			final long now = System.currentTimeMillis();
+
+			final List<T> retVal = new ArrayList<>(batch.size());
+			batch.forEach(entry ->
+			{
+				if (!isExpired(entry.getValue(), now))
+					retVal.add(mapper.apply(entry));
+			});
+
+			return retVal;
+		});
+	}
+
+	protected static List<byte[]> toValues(List<?> encoded)
+	{
+		final List<byte[]> retVal = new ArrayList<>(encoded.size());
+		for (Object value : encoded)
+			retVal.add((byte[])value);
+
+		return retVal;
+	}
+
+	protected static byte[] encode(byte[] value, long expiresAt)
+	{
+		final byte[] expiration = toBytes(String.valueOf(expiresAt));
+
+		if (value == null)
+			return expiration;
+
+		final byte[] retVal = new byte[expiration.length + 1 + value.length];
+		System.arraycopy(expiration, 0, retVal, 0, expiration.length);
+		retVal[expiration.length] = VALUE_SEPARATOR;
+		System.arraycopy(value, 0, retVal, expiration.length + 1, value.length);
+
+		return retVal;
+	}
+
+	protected static boolean isExpired(byte[] entry, long now)
+	{
+		long expiresAt = 0;
+		for (int i = 0; i < entry.length && entry[i] != VALUE_SEPARATOR; ++i)
+			expiresAt = expiresAt * 10 + (entry[i] - '0');
+
+		return expiresAt > 0 && expiresAt <= now;
+	}
+
+	protected static byte[] decodeValue(byte[] entry)
+	{
+		final int separator = indexOfSeparator(entry);
+
+		return (separator < 0) ? null : Arrays.copyOfRange(entry, separator + 1, entry.length);
+	}
+
+	protected static int indexOfSeparator(byte[] entry)
+	{
+		for (int i = 0; i < entry.length; ++i)
+		{
+			if (entry[i] == VALUE_SEPARATOR)
+				return i;
+		}
+
+		return -1;
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	protected static String toString(byte[] value)
+	{
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	@FunctionalInterface
+	protected interface NodeReader
+	{
+		void read(RedisConnection connection, byte[] nodeKey);
+	}
+}
@@ -0,0 +1,29 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import org.xmpp.packet.JID;
+
+/**
+ * Codec for {@link JID} keys.  Keys are written as the full JID, which the JID computes once and caches, so encoding does not
+ * allocate.
+ * @since 1.0
+ */
+public class JidCacheKeyCodec implements CacheKeyCodec
+{
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String encode(Object key)
+	{
+		return ((JID)key).toString();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(String encoded)
+	{
+		return new JID(encoded);
+	}
+}
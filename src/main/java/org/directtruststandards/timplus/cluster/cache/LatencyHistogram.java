@@ -0,0 +1,118 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two microsecond buckets.  Bucket i holds latencies up to 2^i microseconds
+ * and the last bucket holds everything above roughly one minute.  Percentiles are reported as the upper bound of the bucket
+ * they fall in, so they are accurate to within a factor of two which is enough to spot slow operations.
+ * @since 1.0
+ */
+public class LatencyHistogram
+{
+	protected static final int BUCKET_COUNT = 28;
+	
+	protected final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	
+	protected final LongAdder count = new LongAdder();
+	
+	protected final LongAdder totalNanos = new LongAdder();
+	
+	protected final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+	
+	/**
+	 * Constructor
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Records a latency.
+	 * @param nanos The latency in nanoseconds.
+	 */
+	public void record(long nanos)
+	{
+		final long micros = Math.max(0, nanos / 1000);
+		
+		buckets[Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+	
+	/**
+	 * Gets the number of recorded latencies.
+	 * @return The number of recorded latencies.
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+	
+	/**
+	 * Gets the mean of the recorded latencies.
+	 * @return The mean latency in microseconds or 0 if nothing has been recorded.
+	 */
+	public long getMeanMicros()
+	{
+		final long recorded = count.sum();
+		
+		return (recorded == 0) ? 0 : totalNanos.sum() / recorded / 1000;
+	}
+	
+	/**
+	 * Gets the highest recorded latency.
+	 * @return The highest latency in microseconds.
+	 */
+	public long getMaxMicros()
+	{
+		return maxNanos.get() / 1000;
+	}
+	
+	/**
+	 * Gets an estimate of a latency percentile.
+	 * @param percentile The percentile between 0 and 1.
+	 * @return The upper bound in microseconds of the bucket holding the percentile or 0 if nothing has been recorded.
+	 */
+	public long getPercentileMicros(double percentile)
+	{
+		final long[] counts = new long[BUCKET_COUNT];
+		long recorded = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+		{
+			counts[i] = buckets[i].sum();
+			recorded += counts[i];
+		}
+		
+		if (recorded == 0)
+			return 0;
+		
+		final long rank = (long)Math.ceil(percentile * recorded);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+				return (i == BUCKET_COUNT - 1) ? getMaxMicros() : (1L << i);
+		}
+		
+		return getMaxMicros();
+	}
+	
+	/**
+	 * Resets the histogram.
+	 */
+	public void reset()
+	{
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+}
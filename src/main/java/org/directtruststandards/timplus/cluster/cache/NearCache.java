@@ -0,0 +1,177 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded in-process tier that holds deserialized cache values in front of Redis.  Entries are evicted in least
+ * recently used order once the maximum number of entries is reached and expire after the configured lifetime.
+ * <p>
+ * Values are only ever populated from reads of Redis and are invalidated on writes.  Because a read and a concurrent
+ * invalidation can interleave, reads capture the current invalidation epoch before going to Redis and only populate the
+ * near cache if no invalidation happened in the meantime.
+ * <p>
+ * A near cache can be suspended when invalidations can no longer be delivered reliably, for example when the connection
+ * receiving invalidations is lost.  A suspended near cache holds no entries and ignores attempts to populate it.
+ * @param <V> The type of values held in the cache.
+ * @since 1.0
+ */
+public class NearCache<V>
+{
+	protected final Map<String, NearCacheEntry<V>> entries;
+
+	protected volatile long maxEntries;
+
+	protected volatile long maxLifetime;
+
+	protected long epoch;
+	
+	protected boolean suspended;
+
+	/**
+	 * Constructor
+	 * @param maxEntries The maximum number of entries held in the near cache.
+	 * @param maxLifetime The maximum time in milliseconds an entry is held in the near cache.
+	 */
+	public NearCache(long maxEntries, long maxLifetime)
+	{
+		this.maxEntries = maxEntries;
+		this.maxLifetime = maxLifetime;
+
+		this.entries = new LinkedHashMap<String, NearCacheEntry<V>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, NearCacheEntry<V>> eldest)
+			{
+				return size() > NearCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets a value from the near cache.
+	 * @param key The key of the entry.
+	 * @return The cached value or null if the key is not held or has expired.
+	 */
+	public synchronized V get(String key)
+	{
+		final NearCacheEntry<V> entry = entries.get(key);
+		if (entry == null)
+			return null;
+
+		if (entry.expires < System.currentTimeMillis())
+		{
+			entries.remove(key);
+			return null;
+		}
+
+		return entry.value;
+	}
+
+	/**
+	 * Gets the current invalidation epoch.  This should be captured before reading a value from Redis and
+	 * passed to {@link #put(String, Object, long)} when populating the near cache with the read value.
+	 * @return The current invalidation epoch.
+	 */
+	public synchronized long epoch()
+	{
+		return epoch;
+	}
+
+	/**
+	 * Populates the near cache with a value read from Redis.  The value is discarded if any invalidation occurred
+	 * since the epoch was captured.
+	 * @param key The key of the entry.
+	 * @param value The value read from Redis.
+	 * @param observedEpoch The invalidation epoch captured before reading the value from Redis.
+	 */
+	public synchronized void put(String key, V value, long observedEpoch)
+	{
+		if (value == null || suspended || observedEpoch != epoch || maxEntries <= 0)
+			return;
+
+		entries.put(key, new NearCacheEntry<>(value, System.currentTimeMillis() + maxLifetime));
+	}
+
+	/**
+	 * Removes a single entry from the near cache.
+	 * @param key The key of the entry.
+	 */
+	public synchronized void invalidate(String key)
+	{
+		++epoch;
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes a set of entries from the near cache.
+	 * @param keys The keys of the entries.
+	 */
+	public synchronized void invalidateAll(Collection<String> keys)
+	{
+		++epoch;
+		keys.forEach(entries::remove);
+	}
+	
+	/**
+	 * Removes all entries from the near cache.
+	 */
+	public synchronized void invalidateAll()
+	{
+		++epoch;
+		entries.clear();
+	}
+
+	/**
+	 * Suspends or resumes the near cache.  All entries are removed when the near cache is suspended.
+	 * @param suspended Indicates if the near cache should be suspended.
+	 */
+	public synchronized void setSuspended(boolean suspended)
+	{
+		this.suspended = suspended;
+		
+		if (suspended)
+			invalidateAll();
+	}
+	
+	/**
+	 * Gets the number of entries currently held in the near cache including entries that have expired but
+	 * have not yet been removed.
+	 * @return The number of entries held in the near cache.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Updates the bounds of the near cache.  If the near cache holds more entries than the new maximum, all
+	 * entries are removed.
+	 * @param maxEntries The maximum number of entries held in the near cache.
+	 * @param maxLifetime The maximum time in milliseconds an entry is held in the near cache.
+	 */
+	public synchronized void setBounds(long maxEntries, long maxLifetime)
+	{
+		this.maxEntries = maxEntries;
+		this.maxLifetime = maxLifetime;
+
+		if (entries.size() > maxEntries)
+			entries.clear();
+	}
+
+	protected static class NearCacheEntry<V>
+	{
+		protected final V value;
+
+		protected final long expires;
+
+		protected NearCacheEntry(V value, long expires)
+		{
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
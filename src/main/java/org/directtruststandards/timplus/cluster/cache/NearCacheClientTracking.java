@@ -0,0 +1,298 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.util.StringUtils;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+
+/**
+ * Near cache invalidation using Redis 6 server assisted client side caching.  A dedicated RESP3 connection enables
+ * CLIENT TRACKING in broadcast mode for all keys with the timplusclustercache: prefix, and Redis pushes an invalidation
+ * message to the connection whenever one of those keys is modified by any client.  Modifications of the clustered cache key
+ * index of an entry are mapped back to the cache name and key and applied to the near caches through the
+ * {@link NearCacheInvalidationBus}.
+ * <p>
+ * The tracking connection is only created once the first cache using {@link ClusterCacheProperties.NearCacheInvalidation#TRACKING}
+ * registers.  Tracking is only supported for standalone Lettuce connections.  While the tracking connection is down, invalidations
+ * can not be delivered, so the near caches of tracked caches are suspended until tracking is re-enabled on the reconnected connection.
+ * @since 1.0
+ */
+public class NearCacheClientTracking implements RedisConnectionStateListener, DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(NearCacheClientTracking.class);
+
+	public static final String TRACKING_PREFIX = "timplusclustercache:";
+
+	protected static final String CLUSTERED_CACHE_KEY_INDEX_PREFIX = TRACKING_PREFIX + "clusteredCacheKey:";
+
+	protected static final String INVALIDATE_MESSAGE_TYPE = "invalidate";
+
+	protected final RedisConnectionFactory connectionFactory;
+
+	protected final NearCacheInvalidationBus invalidationBus;
+
+	protected final Set<String> trackedCacheNames;
+
+	protected final ExecutorService trackingExecutor;
+
+	protected RedisClient client;
+
+	protected StatefulRedisConnection<String, String> connection;
+
+	protected volatile boolean tracking;
+
+	protected boolean unavailable;
+
+	/**
+	 * Constructor
+	 * @param connectionFactory The connection factory used to obtain the Redis connection settings.
+	 * @param invalidationBus The bus used to apply invalidations to near caches.
+	 */
+	public NearCacheClientTracking(RedisConnectionFactory connectionFactory, NearCacheInvalidationBus invalidationBus)
+	{
+		this.connectionFactory = connectionFactory;
+		this.invalidationBus = invalidationBus;
+		this.trackedCacheNames = ConcurrentHashMap.newKeySet();
+
+		this.trackingExecutor = Executors.newSingleThreadExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-client-tracking");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts tracking invalidations of a cache.  The tracking connection is created if it does not yet exist.
+	 * @param cacheName The name of the cache.  The near caches of the cache must already be registered with the invalidation bus.
+	 * @return True if the cache is tracked.  False if client tracking is not available, in which case the caller should fall back
+	 * to pub/sub invalidation.
+	 */
+	public synchronized boolean track(String cacheName)
+	{
+		if (!start())
+			return false;
+
+		trackedCacheNames.add(cacheName);
+
+		invalidationBus.setSuspendedLocal(cacheName, !tracking);
+
+		return true;
+	}
+
+	/**
+	 * Indicates if Redis is currently tracking keys for this node.
+	 * @return True if Redis is currently tracking keys for this node.
+	 */
+	public boolean isTracking()
+	{
+		return tracking;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress socketAddress)
+	{
+		// the initial connection enables tracking synchronously in start()
+		if (connection == null || handler != connection || tracking)
+			return;
+
+		// tracking state does not survive a reconnect... re-enable it off the event loop
+		trackingExecutor.execute(() ->
+		{
+			try
+			{
+				enableTracking();
+			}
+			catch (Exception e)
+			{
+				Log.warn("Failed to re-enable Redis client tracking.  Near caches of tracked caches remain suspended.", e);
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onRedisDisconnected(RedisChannelHandler<?, ?> handler)
+	{
+		if (handler != connection)
+			return;
+
+		Log.warn("Redis client tracking connection lost.  Suspending near caches of tracked caches.");
+
+		tracking = false;
+		trackedCacheNames.forEach(cacheName -> invalidationBus.setSuspendedLocal(cacheName, true));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onRedisExceptionCaught(RedisChannelHandler<?, ?> handler, Throwable cause)
+	{
+		Log.debug("Exception on Redis client tracking connection.", cause);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void destroy()
+	{
+		tracking = false;
+		trackingExecutor.shutdownNow();
+
+		if (connection != null)
+			connection.close();
+
+		if (client != null)
+			client.shutdown();
+	}
+
+	protected synchronized boolean start()
+	{
+		if (connection != null)
+			return true;
+
+		if (unavailable)
+			return false;
+
+		try
+		{
+			client = RedisClient.create(createRedisURI());
+			client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+			client.addListener(this);
+
+			final StatefulRedisConnection<String, String> trackingConnection = client.connect();
+			trackingConnection.addListener(this::onPushMessage);
+			connection = trackingConnection;
+
+			enableTracking();
+
+			return true;
+		}
+		catch (Exception e)
+		{
+			Log.warn("Redis client tracking is not available.  Near caches fall back to pub/sub invalidation.", e);
+
+			unavailable = true;
+
+			if (connection != null)
+				connection.close();
+
+			if (client != null)
+				client.shutdown();
+
+			connection = null;
+			client = null;
+
+			return false;
+		}
+	}
+
+	protected void enableTracking()
+	{
+		connection.sync().clientTracking(TrackingArgs.Builder.enabled().bcast().prefixes(TRACKING_PREFIX));
+
+		tracking = true;
+
+		trackedCacheNames.forEach(cacheName -> invalidationBus.setSuspendedLocal(cacheName, false));
+
+		Log.info("Redis client tracking enabled for keys with prefix {}", TRACKING_PREFIX);
+	}
+
+	protected RedisURI createRedisURI()
+	{
+		if (!(connectionFactory instanceof LettuceConnectionFactory))
+			throw new IllegalStateException("Client tracking requires a Lettuce connection factory");
+
+		final LettuceConnectionFactory lettuceFactory = (LettuceConnectionFactory)connectionFactory;
+
+		if (lettuceFactory.getClusterConfiguration() != null || lettuceFactory.getSentinelConfiguration() != null)
+			throw new IllegalStateException("Client tracking is only supported for standalone Redis connections");
+
+		final RedisURI.Builder builder = RedisURI.builder()
+				.withHost(lettuceFactory.getHostName())
+				.withPort(lettuceFactory.getPort())
+				.withDatabase(lettuceFactory.getDatabase())
+				.withSsl(lettuceFactory.isUseSsl())
+				.withTimeout(Duration.ofMillis(lettuceFactory.getTimeout()));
+
+		final String username = lettuceFactory.getStandaloneConfiguration().getUsername();
+		final String password = lettuceFactory.getPassword();
+		if (StringUtils.hasText(password))
+		{
+			if (StringUtils.hasText(username))
+				builder.withAuthentication(username, password);
+			else
+				builder.withPassword(password.toCharArray());
+		}
+
+		return builder.build();
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void onPushMessage(PushMessage message)
+	{
+		if (!INVALIDATE_MESSAGE_TYPE.equals(message.getType()))
+			return;
+
+		final List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+		final Object keys = (content.size() > 1) ? content.get(1) : null;
+
+		// a null key list indicates the Redis database was flushed
+		if (!(keys instanceof Collection))
+		{
+			trackedCacheNames.forEach(cacheName -> invalidationBus.receive(cacheName, null));
+			return;
+		}
+
+		final Map<String, Collection<String>> invalidations = new HashMap<>();
+		for (Object key : (Collection<Object>)keys)
+		{
+			final String redisKey = String.valueOf(key);
+
+			// entry hashes and the other indexes can't be mapped to an entry key... the clustered cache key index is modified on every write
+			if (!redisKey.startsWith(CLUSTERED_CACHE_KEY_INDEX_PREFIX))
+				continue;
+
+			final String clusteredCacheKey = redisKey.substring(CLUSTERED_CACHE_KEY_INDEX_PREFIX.length());
+			for (String cacheName : trackedCacheNames)
+			{
+				if (clusteredCacheKey.startsWith(cacheName))
+					invalidations.computeIfAbsent(cacheName, name -> new ArrayList<>()).add(clusteredCacheKey.substring(cacheName.length()));
+			}
+		}
+
+		invalidations.forEach(invalidationBus::receive);
+	}
+}
@@ -0,0 +1,566 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Keeps near caches coherent across cluster nodes using Redis pub/sub.  Writes to a cache publish compact invalidation
+ * messages containing the cache name and the affected keys (or an indication that the entire cache is invalid).  Every node
+ * subscribes to the invalidation channel and applies received invalidations to the near caches registered under the cache name.
+ * <p>
+ * Both directions are batched.  Outgoing invalidations are coalesced per cache and published by a background thread once the
+ * write to Redis has completed, and incoming invalidations are drained in batches and applied with a single near cache update per cache.
+ * Invalidations are applied to near caches in the local JVM synchronously at publish time, so messages originating from this bus
+ * are ignored when they are received back from Redis.
+ * <p>
+ * Messages lost while the subscription is down would leave stale entries in near caches, so every message carries a sequence
+ * number of its publisher, and each bus publishes a heartbeat to the channel.  A gap in the sequence of any publisher invalidates
+ * all near caches in this JVM.  If the bus does not receive its own heartbeat for several intervals, the subscription is
+ * considered lost and the near caches in this JVM are suspended until the heartbeat is received again.
+ * <p>
+ * Caches that rely on Redis server assisted client tracking (see {@link NearCacheClientTracking}) only publish invalidations of
+ * all entries, because clearing a cache does not modify the keys Redis tracks.  Other invalidations of these caches are only
+ * applied to the near caches registered in this JVM.
+ * @since 1.0
+ */
+public class NearCacheInvalidationBus implements MessageListener, DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(NearCacheInvalidationBus.class);
+
+	public static final String INVALIDATION_CHANNEL = "timplusclustercache:invalidations";
+
+	protected static final byte INVALIDATE_KEYS = 0;
+
+	protected static final byte INVALIDATE_ALL = 1;
+
+	protected static final byte HEARTBEAT = 2;
+
+	protected static final long DEFAULT_HEARTBEAT_INTERVAL = 1000;
+
+	protected static final int MISSED_HEARTBEATS = 3;
+
+	protected static final int MAX_TRACKED_PUBLISHERS = 1024;
+
+	protected static final int MAX_QUEUED_INVALIDATIONS = 10000;
+
+	protected static final int MAX_BATCH_SIZE = 1000;
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final String origin;
+
+	protected final byte[] channel;
+
+	protected final Map<String, Set<NearCache<?>>> nearCaches;
+
+	protected final BlockingQueue<Invalidation> outgoing;
+
+	protected final BlockingQueue<Invalidation> incoming;
+
+	protected final List<Thread> workers;
+
+	protected final ScheduledExecutorService heartbeat;
+
+	protected final long heartbeatInterval;
+
+	protected final Set<String> suspendedCacheNames = ConcurrentHashMap.newKeySet();
+
+	protected final Map<String, Long> sequences;
+
+	protected long sequence;
+
+	protected volatile long lastHeartbeat;
+
+	protected volatile boolean subscribed;
+
+	protected volatile boolean running;
+
+	/**
+	 * Constructor
+	 * @param redisTemplate Template used to publish invalidation messages.
+	 */
+	public NearCacheInvalidationBus(RedisTemplate<?, ?> redisTemplate)
+	{
+		this(redisTemplate, DEFAULT_HEARTBEAT_INTERVAL);
+	}
+
+	/**
+	 * Constructor
+	 * @param redisTemplate Template used to publish invalidation messages.
+	 * @param heartbeatInterval The time in milliseconds between heartbeats used to detect a lost subscription.
+	 */
+	public NearCacheInvalidationBus(RedisTemplate<?, ?> redisTemplate, long heartbeatInterval)
+	{
+		this.redisTemplate = redisTemplate;
+		this.origin = UUID.randomUUID().toString();
+		this.channel = INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+		this.nearCaches = new ConcurrentHashMap<>();
+		this.outgoing = new LinkedBlockingQueue<>(MAX_QUEUED_INVALIDATIONS);
+		this.incoming = new LinkedBlockingQueue<>(MAX_QUEUED_INVALIDATIONS);
+		this.running = true;
+
+		this.sequences = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+			{
+				return size() > MAX_TRACKED_PUBLISHERS;
+			}
+		});
+
+		// the subscription is assumed to be up until the first heartbeats are missed
+		this.subscribed = true;
+		this.lastHeartbeat = System.currentTimeMillis();
+		this.heartbeatInterval = Math.max(heartbeatInterval, 1);
+
+		this.workers = new ArrayList<>();
+		this.workers.add(startWorker("timplus-cache-invalidation-publisher", outgoing, this::publishBatch));
+		this.workers.add(startWorker("timplus-cache-invalidation-receiver", incoming, this::applyBatch));
+
+		this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-invalidation-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.heartbeat.scheduleWithFixedDelay(this::heartbeat, this.heartbeatInterval, this.heartbeatInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Registers a near cache to receive invalidations for a cache.  Near caches are weakly referenced and do not need
+	 * to be unregistered when the owning cache is discarded.
+	 * @param cacheName The name of the cache.
+	 * @param nearCache The near cache of a cache instance.
+	 */
+	public void register(String cacheName, NearCache<?> nearCache)
+	{
+		nearCaches.computeIfAbsent(cacheName, name -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()))).add(nearCache);
+
+		if (isSuspended(cacheName))
+			nearCache.setSuspended(true);
+	}
+
+	/**
+	 * Unregisters a near cache from receiving invalidations for a cache.
+	 * @param cacheName The name of the cache.
+	 * @param nearCache The near cache of a cache instance.
+	 */
+	public void unregister(String cacheName, NearCache<?> nearCache)
+	{
+		final Set<NearCache<?>> registered = nearCaches.get(cacheName);
+		if (registered != null)
+			registered.remove(nearCache);
+	}
+
+	/**
+	 * Invalidates keys of a cache on all cluster nodes.
+	 * @param cacheName The name of the cache.
+	 * @param keys The keys to invalidate.
+	 */
+	public void invalidate(String cacheName, Collection<String> keys)
+	{
+		if (keys.isEmpty())
+			return;
+
+		final Invalidation invalidation = new Invalidation(cacheName, keys);
+
+		apply(Collections.singletonList(invalidation));
+
+		if (!outgoing.offer(invalidation))
+			publishBatch(Collections.singletonList(invalidation));
+	}
+
+	/**
+	 * Invalidates all entries of a cache on all cluster nodes.
+	 * @param cacheName The name of the cache.
+	 */
+	public void invalidateAll(String cacheName)
+	{
+		final Invalidation invalidation = new Invalidation(cacheName, null);
+
+		apply(Collections.singletonList(invalidation));
+
+		if (!outgoing.offer(invalidation))
+			publishBatch(Collections.singletonList(invalidation));
+	}
+
+	/**
+	 * Invalidates keys of a cache in this JVM only.  No invalidation message is published.
+	 * @param cacheName The name of the cache.
+	 * @param keys The keys to invalidate or null to invalidate all entries of the cache.
+	 */
+	public void invalidateLocal(String cacheName, Collection<String> keys)
+	{
+		apply(Collections.singletonList(new Invalidation(cacheName, keys)));
+	}
+	
+	/**
+	 * Queues an invalidation received from an external source to be applied to the near caches in this JVM
+	 * by the receiver thread.
+	 * @param cacheName The name of the cache.
+	 * @param keys The keys to invalidate or null to invalidate all entries of the cache.
+	 */
+	public void receive(String cacheName, Collection<String> keys)
+	{
+		if (!incoming.offer(new Invalidation(cacheName, keys)))
+		{
+			// the receiver can't keep up... the safest thing is to drop everything in the cache
+			Log.warn("Near cache invalidation queue is full.  Invalidating all entries of cache {}", cacheName);
+			invalidateLocal(cacheName, null);
+		}
+	}
+	
+	/**
+	 * Suspends or resumes the near caches of a cache registered in this JVM.  This is intended for cases where 
+	 * invalidations can not be delivered reliably.  The near caches stay suspended while the subscription of the bus is lost.
+	 * @param cacheName The name of the cache.
+	 * @param suspended Indicates if the near caches should be suspended.
+	 */
+	public void setSuspendedLocal(String cacheName, boolean suspended)
+	{
+		if (suspended)
+			suspendedCacheNames.add(cacheName);
+		else
+			suspendedCacheNames.remove(cacheName);
+
+		updateSuspension(cacheName);
+	}
+
+	/**
+	 * Indicates if the bus receives the messages published to the invalidation channel.
+	 * @return False if the bus missed its own heartbeats.
+	 */
+	public boolean isSubscribed()
+	{
+		return subscribed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onMessage(Message message, byte[] pattern)
+	{
+		try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody())))
+		{
+			final String publisher = in.readUTF();
+			final long publisherSequence = in.readLong();
+			final String cacheName = in.readUTF();
+			final byte type = in.readByte();
+
+			checkSequence(publisher, publisherSequence);
+
+			if (origin.equals(publisher))
+			{
+				if (type == HEARTBEAT)
+					heartbeatReceived();
+
+				return;
+			}
+
+			if (type == HEARTBEAT)
+				return;
+
+			Collection<String> keys = null;
+
+			if (type == INVALIDATE_KEYS)
+			{
+				final int count = in.readInt();
+				keys = new ArrayList<>(count);
+				for (int i = 0; i < count; ++i)
+					keys.add(in.readUTF());
+			}
+
+			receive(cacheName, keys);
+		}
+		catch (IOException e)
+		{
+			Log.warn("Discarding malformed near cache invalidation message.", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy()
+	{
+		running = false;
+		workers.forEach(Thread::interrupt);
+		heartbeat.shutdownNow();
+	}
+
+	protected Thread startWorker(String threadName, BlockingQueue<Invalidation> queue, BatchProcessor processor)
+	{
+		final Thread worker = new Thread(() ->
+		{
+			final List<Invalidation> batch = new ArrayList<>();
+			while (running)
+			{
+				try
+				{
+					batch.add(queue.take());
+					queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+					processor.process(batch);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (Exception e)
+				{
+					Log.warn("Error processing near cache invalidations.", e);
+				}
+				finally
+				{
+					batch.clear();
+				}
+			}
+		}, threadName);
+
+		worker.setDaemon(true);
+		worker.start();
+
+		return worker;
+	}
+
+	protected void publishBatch(List<Invalidation> batch)
+	{
+		for (Invalidation invalidation : coalesce(batch))
+		{
+			try
+			{
+				publish(invalidation);
+			}
+			catch (Exception e)
+			{
+				// the skipped sequence number makes the other nodes drop their near caches
+				Log.warn("Failed to publish near cache invalidation for cache {}", invalidation.cacheName, e);
+			}
+		}
+	}
+
+	/**
+	 * Publishes a message.  Sequence numbers are assigned and published in order, so receivers only see gaps for lost messages.
+	 */
+	protected synchronized void publish(Invalidation invalidation) throws IOException
+	{
+		final byte[] message = encode(invalidation, ++sequence);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> connection.publish(channel, message));
+	}
+
+	/**
+	 * Publishes a heartbeat and suspends the near caches in this JVM if the previous heartbeats were not received.
+	 */
+	protected void heartbeat()
+	{
+		try
+		{
+			publish(new Invalidation("", null));
+		}
+		catch (Exception e)
+		{
+			Log.debug("Failed to publish near cache invalidation heartbeat.", e);
+		}
+
+		if (subscribed && System.currentTimeMillis() - lastHeartbeat > heartbeatInterval * MISSED_HEARTBEATS)
+		{
+			Log.warn("Near cache invalidation subscription lost.  Suspending near caches until it is restored.");
+
+			subscribed = false;
+			nearCaches.keySet().forEach(this::updateSuspension);
+		}
+	}
+
+	/**
+	 * Resumes the near caches in this JVM once the subscription is restored.
+	 */
+	protected void heartbeatReceived()
+	{
+		lastHeartbeat = System.currentTimeMillis();
+
+		if (subscribed)
+			return;
+
+		Log.info("Near cache invalidation subscription restored.  Resuming near caches.");
+
+		subscribed = true;
+		nearCaches.keySet().forEach(this::updateSuspension);
+	}
+
+	/**
+	 * Invalidates all near caches in this JVM if messages of a publisher were lost.
+	 */
+	protected void checkSequence(String publisher, long publisherSequence)
+	{
+		final Long previous = sequences.put(publisher, publisherSequence);
+
+		if (previous != null && publisherSequence != previous + 1)
+		{
+			Log.warn("Missed near cache invalidations.  Invalidating all near caches.");
+
+			nearCaches.keySet().forEach(cacheName -> invalidateLocal(cacheName, null));
+		}
+	}
+
+	protected boolean isSuspended(String cacheName)
+	{
+		return !subscribed || suspendedCacheNames.contains(cacheName);
+	}
+
+	/**
+	 * Applies the suspension state of a cache to its near caches.  Resumed near caches are invalidated as well, so values read
+	 * from Redis before invalidations were delivered again are not cached.
+	 */
+	protected void updateSuspension(String cacheName)
+	{
+		final Set<NearCache<?>> registered = nearCaches.get(cacheName);
+		if (registered == null)
+			return;
+
+		final boolean suspended = isSuspended(cacheName);
+
+		synchronized(registered)
+		{
+			registered.forEach(nearCache ->
+			{
+				nearCache.setSuspended(suspended);
+
+				if (!suspended)
+					nearCache.invalidateAll();
+			});
+		}
+	}
+
+	protected void applyBatch(List<Invalidation> batch)
+	{
+		apply(coalesce(batch));
+	}
+
+	protected void apply(Collection<Invalidation> invalidations)
+	{
+		for (Invalidation invalidation : invalidations)
+		{
+			final Set<NearCache<?>> registered = nearCaches.get(invalidation.cacheName);
+			if (registered == null)
+				continue;
+
+			synchronized(registered)
+			{
+				for (NearCache<?> nearCache : registered)
+				{
+					if (invalidation.keys == null)
+						nearCache.invalidateAll();
+					else
+						nearCache.invalidateAll(invalidation.keys);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges invalidations of the same cache into a single invalidation.
+	 */
+	protected Collection<Invalidation> coalesce(List<Invalidation> batch)
+	{
+		if (batch.size() == 1)
+			return batch;
+
+		final Map<String, Invalidation> coalesced = new LinkedHashMap<>();
+		for (Invalidation invalidation : batch)
+		{
+			coalesced.merge(invalidation.cacheName, invalidation, (existing, added) ->
+			{
+				if (existing.keys == null || added.keys == null)
+					return new Invalidation(existing.cacheName, null);
+
+				final Set<String> keys = new HashSet<>(existing.keys);
+				keys.addAll(added.keys);
+
+				return new Invalidation(existing.cacheName, keys);
+			});
+		}
+
+		return coalesced.values();
+	}
+
+	protected byte[] encode(Invalidation invalidation, long messageSequence) throws IOException
+	{
+		final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(outStream);
+
+		out.writeUTF(origin);
+		out.writeLong(messageSequence);
+		out.writeUTF(invalidation.cacheName);
+
+		if (invalidation.cacheName.isEmpty())
+			out.writeByte(HEARTBEAT);
+		else if (invalidation.keys == null)
+			out.writeByte(INVALIDATE_ALL);
+		else
+		{
+			out.writeByte(INVALIDATE_KEYS);
+			out.writeInt(invalidation.keys.size());
+			for (String key : invalidation.keys)
+				out.writeUTF(key);
+		}
+
+		out.flush();
+		return outStream.toByteArray();
+	}
+
+	@FunctionalInterface
+	protected interface BatchProcessor
+	{
+		void process(List<Invalidation> batch) throws Exception;
+	}
+
+	/**
+	 * An invalidation of a cache.  A null key collection indicates all entries of the cache are invalid.
+	 */
+	protected static class Invalidation
+	{
+		protected final String cacheName;
+
+		protected final Collection<String> keys;
+
+		protected Invalidation(String cacheName, Collection<String> keys)
+		{
+			this.cacheName = cacheName;
+			this.keys = keys;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+
+/**
+ * Codec for {@link NodeID} keys.  Keys are written as the node id bytes, which are the UTF-8 form of the node's UUID.
+ * @since 1.0
+ */
+public class NodeIdCacheKeyCodec implements CacheKeyCodec
+{
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String encode(Object key)
+	{
+		return new String(((NodeID)key).toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(String encoded)
+	{
+		return NodeID.getInstance(encoded.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,44 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Arrays;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+
+/**
+ * Compact codec for {@link NodeID} values.  Values are written as a format marker followed by the raw node id bytes.
+ * Values written in the externalized form by earlier versions are still decoded.
+ * @since 1.0
+ */
+public class NodeIdCacheValueCodec implements CacheValueCodec
+{
+	protected static final byte FORMAT_MARKER = 0x01;
+	
+	protected final ExternalizableCacheValueCodec legacyCodec = new ExternalizableCacheValueCodec(NodeID.class);
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(Object value) throws Exception
+	{
+		final byte[] nodeId = ((NodeID)value).toByteArray();
+		
+		final byte[] retVal = new byte[nodeId.length + 1];
+		retVal[0] = FORMAT_MARKER;
+		System.arraycopy(nodeId, 0, retVal, 1, nodeId.length);
+		
+		return retVal;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object decode(byte[] data) throws Exception
+	{
+		if (data.length == 0 || data[0] != FORMAT_MARKER)
+			return legacyCodec.decode(data);
+		
+		return NodeID.getInstance(Arrays.copyOfRange(data, 1, data.length));
+	}
+}
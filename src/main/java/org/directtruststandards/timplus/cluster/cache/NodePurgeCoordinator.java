@@ -0,0 +1,351 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.StorageEngine;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+/**
+ * Coordinates the removal of a departed node's entries across all caches of the cluster.  When a node leaves the cluster, every
+ * remaining node asks every purgeable cache to purge the departed node's entries.  Instead of each node sweeping each cache, the
+ * first cache to ask takes a lease on the departed node in Redis and removes the node's entries from every registered cache in
+ * a single pipelined sweep.  Requests made while the lease is held wait until the sweep of the lease holder is recorded.  If the
+ * lease expires first, for example because the sweeping node stopped, a waiting request takes the lease and sweeps itself.
+ * <p>
+ * Once the sweep completes, the lease is released and the id of the sweep is recorded for each swept cache name.  Every cache
+ * of every node then skips exactly one request per sweep: caches in the sweeping JVM are marked directly and caches of other nodes
+ * claim the recorded sweep id.  Later requests, for example for a node that rejoined with the same id, find the sweep already
+ * claimed and sweep again.
+ * <p>
+ * Caches register in a cluster wide set so that the sweep also covers caches that only exist on other nodes.
+ * @since 1.0
+ */
+public class NodePurgeCoordinator
+{
+	private static final Logger Log = LoggerFactory.getLogger(NodePurgeCoordinator.class);
+
+	public static final String KEYSPACE = "timpluscachepurge";
+
+	protected static final String CACHES_KEY = KEYSPACE + ":caches";
+
+	protected static final String LEASE_KEY_PREFIX = KEYSPACE + ":lease:";
+
+	protected static final String SWEPT_KEY_PREFIX = KEYSPACE + ":swept:";
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final NearCacheInvalidationBus invalidationBus;
+
+	protected final ClusterCacheProperties properties;
+
+	protected final String origin;
+
+	protected final Set<String> descriptors = ConcurrentHashMap.newKeySet();
+
+	protected final Set<Registration> registrations = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	protected final Map<String, Long> claims = new ConcurrentHashMap<>();
+
+	/**
+	 * The outcome of a coordinated purge request.
+	 */
+	public enum PurgeResult
+	{
+		/**
+		 * The request took the lease and removed the departed node's entries from all registered caches.
+		 */
+		PURGED,
+
+		/**
+		 * The departed node's entries were removed by another request.
+		 */
+		SKIPPED
+	}
+
+	/**
+	 * The registration of a single cache instance.  Sweeps of the JVM mark the registrations of all live instances so that
+	 * their own request for the same departed node is skipped.
+	 */
+	public static class Registration
+	{
+		protected final String cacheName;
+
+		protected final StorageEngine storageEngine;
+
+		protected final Map<String, Long> sweptNodes = new ConcurrentHashMap<>();
+
+		protected Registration(String cacheName, StorageEngine storageEngine)
+		{
+			this.cacheName = cacheName;
+			this.storageEngine = storageEngine;
+		}
+
+		/**
+		 * Gets the name of the registered cache.
+		 * @return The name of the registered cache.
+		 */
+		public String getCacheName()
+		{
+			return cacheName;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to take leases and remove entries.
+	 * @param scripts The scripts used to remove entries and release leases.
+	 * @param invalidationBus The bus used to invalidate the near caches of the swept caches.
+	 * @param properties The cache settings.
+	 */
+	public NodePurgeCoordinator(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, NearCacheInvalidationBus invalidationBus,
+			ClusterCacheProperties properties)
+	{
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.invalidationBus = invalidationBus;
+		this.properties = properties;
+		this.origin = UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Indicates if purges of departed nodes are coordinated across the cluster.
+	 * @return Indicates if purges of departed nodes are coordinated across the cluster.
+	 */
+	public boolean isEnabled()
+	{
+		return properties.isPurgeCoordinationEnabled();
+	}
+
+	/**
+	 * Registers a cache instance to be swept when a node departs.  The cache is only added to the cluster wide set once per
+	 * cache name and JVM.
+	 * @param cacheName The name of the cache.
+	 * @param storageEngine The storage engine of the cache.
+	 * @return The registration of the cache instance.  The registration must be passed to {@link #purge(Registration, NodeID, NodeID)}.
+	 */
+	public Registration registerCache(String cacheName, StorageEngine storageEngine)
+	{
+		final String descriptor = getDescriptor(cacheName, storageEngine);
+
+		if (descriptors.add(descriptor))
+			redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sAdd(toBytes(CACHES_KEY), toBytes(descriptor)));
+
+		final Registration retVal = new Registration(cacheName, storageEngine);
+
+		registrations.add(retVal);
+
+		return retVal;
+	}
+
+	/**
+	 * Removes a departed node's entries from all registered caches unless the entries were already removed on behalf of the
+	 * requesting cache.  If another request holds the lease, waits until its sweep is recorded, or until the lease expires and
+	 * can be taken over.
+	 * @param registration The registration of the requesting cache.
+	 * @param departed The node that left the cluster.
+	 * @param local The node of the requesting cache.
+	 * @return The outcome of the request.
+	 */
+	public PurgeResult purge(Registration registration, NodeID departed, NodeID local)
+	{
+		final String departedId = departed.toString();
+
+		// swept by this JVM since the instance last asked
+		final Long sweptAt = registration.sweptNodes.remove(departedId);
+		if (sweptAt != null && System.currentTimeMillis() - sweptAt < properties.getPurgeLeaseDuration())
+			return PurgeResult.SKIPPED;
+
+		final byte[] sweptKey = toBytes(SWEPT_KEY_PREFIX + departedId);
+		final byte[] leaseKey = toBytes(LEASE_KEY_PREFIX + departedId);
+		final String claimPrefix = local.toString() + ":" + registration.cacheName + ":";
+
+		final String sweepId = origin + ":" + UUID.randomUUID().toString();
+		final Expiration leaseDuration = Expiration.milliseconds(properties.getPurgeLeaseDuration());
+
+		String awaited = null;
+		while (true)
+		{
+			final String recorded = getString(connection -> connection.hashCommands().hGet(sweptKey, toBytes(registration.cacheName)));
+
+			if (recorded != null && recorded.equals(awaited))
+			{
+				// the sweep this request waited for completed... sweeps of this JVM also marked the registration
+				registration.sweptNodes.remove(departedId);
+				claim(claimPrefix + recorded);
+				return PurgeResult.SKIPPED;
+			}
+
+			// swept by another node... each sweep is claimed once per local node and cache
+			if (recorded != null && !recorded.startsWith(origin) && claim(claimPrefix + recorded))
+				return PurgeResult.SKIPPED;
+
+			final Boolean leased = redisTemplate.execute((RedisCallback<Boolean>)connection ->
+				connection.stringCommands().set(leaseKey, toBytes(sweepId), leaseDuration, SetOption.SET_IF_ABSENT));
+
+			if (Boolean.TRUE.equals(leased))
+				break;
+
+			// a lease that expires before its sweep is recorded is taken over on the next pass
+			awaited = getString(connection -> connection.stringCommands().get(leaseKey));
+			if (awaited != null && !await())
+			{
+				Log.warn("Interrupted while waiting for the purge of departed node {} by another node.", departedId);
+				return PurgeResult.SKIPPED;
+			}
+		}
+
+		final List<String> cacheNames = sweep(registration, departed);
+
+		final long completedAt = System.currentTimeMillis();
+		synchronized (registrations)
+		{
+			registrations.stream().filter(val -> val != registration && cacheNames.contains(val.cacheName))
+				.forEach(val -> val.sweptNodes.put(departedId, completedAt));
+		}
+
+		final List<byte[]> keysAndArgs = new ArrayList<>(cacheNames.size() + 4);
+		keysAndArgs.add(leaseKey);
+		keysAndArgs.add(sweptKey);
+		keysAndArgs.add(toBytes(sweepId));
+		keysAndArgs.add(toBytes(String.valueOf(properties.getPurgeLeaseDuration())));
+		cacheNames.forEach(cacheName -> keysAndArgs.add(toBytes(cacheName)));
+
+		redisTemplate.execute((RedisCallback<Long>)connection ->
+			scripts.execute(connection, RedisCacheScripts.COMPLETE_PURGE, ReturnType.INTEGER, 2, keysAndArgs.toArray(new byte[keysAndArgs.size()][])));
+
+		/*
+		 * Other nodes may have refilled their near caches from Redis while the sweep was running.
+		 */
+		cacheNames.forEach(invalidationBus::invalidateAll);
+
+		return PurgeResult.PURGED;
+	}
+
+	/**
+	 * Removes a departed node's entries from all registered caches in as few pipelines as possible.
+	 * @param registration The registration of the requesting cache.  The cache is swept even if it is missing from the cluster wide set.
+	 * @param departed The node that left the cluster.
+	 * @return The names of the swept caches.
+	 */
+	protected List<String> sweep(Registration registration, NodeID departed)
+	{
+		final Set<byte[]> registered = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+			connection.setCommands().sMembers(toBytes(CACHES_KEY)));
+
+		final Set<String> sweptDescriptors = new LinkedHashSet<>();
+		sweptDescriptors.add(getDescriptor(registration.cacheName, registration.storageEngine));
+		if (registered != null)
+			registered.forEach(descriptor -> sweptDescriptors.add(new String(descriptor, StandardCharsets.UTF_8)));
+
+		final List<String> retVal = new ArrayList<>();
+		final List<String> nodeCacheNames = new ArrayList<>();
+		final List<Integer> chunkSizes = new ArrayList<>();
+		final List<byte[]> nodeKeys = new ArrayList<>();
+		final List<byte[]> nodeRegistryKeys = new ArrayList<>();
+		final List<String> setCacheNames = new ArrayList<>();
+
+		for (String descriptor : sweptDescriptors)
+		{
+			final int separator = descriptor.indexOf(':');
+			final String cacheName = descriptor.substring(separator + 1);
+
+			retVal.add(cacheName);
+
+			if (StorageEngine.HASH.name().equals(descriptor.substring(0, separator)))
+			{
+				nodeKeys.add(toBytes(HashRedisCacheStore.getNodeKey(cacheName, departed)));
+				nodeRegistryKeys.add(toBytes(HashRedisCacheStore.getNodeRegistryKey(cacheName)));
+			}
+			else if (StorageEngine.SET.name().equals(descriptor.substring(0, separator)))
+				setCacheNames.add(cacheName);
+			else
+			{
+				nodeCacheNames.add(cacheName + departed.toString());
+				chunkSizes.add(properties.getCacheSettings(cacheName).getBulkChunkSize());
+			}
+		}
+
+		Log.info("Purging {} cluster caches of departed node {}", retVal.size(), departed.toString());
+
+		final byte[] departedId = toBytes(departed.toString());
+
+		// hash caches drop the node's hash in the same pipeline as the first batch of repository purge scripts
+		scripts.purgeNodes(nodeCacheNames, chunkSizes, connection ->
+		{
+			nodeKeys.forEach(nodeKey -> connection.keyCommands().unlink(nodeKey));
+			nodeRegistryKeys.forEach(nodeRegistryKey -> connection.setCommands().sRem(nodeRegistryKey, departedId));
+		});
+
+		// set caches hold a member set per entry, so the node's entries are removed in batches like repository caches
+		setCacheNames.forEach(cacheName -> SetRedisCacheStore.purgeNode(redisTemplate, scripts, cacheName, departed,
+				properties.getCacheSettings(cacheName).getBulkChunkSize()));
+
+		return retVal;
+	}
+
+	/**
+	 * Claims a recorded sweep for a local node and cache.  Claims are dropped once the recorded sweep would have expired.
+	 * @return True if the sweep was not claimed yet.
+	 */
+	protected boolean claim(String claimKey)
+	{
+		final long now = System.currentTimeMillis();
+
+		claims.values().removeIf(claimedAt -> now - claimedAt > properties.getPurgeLeaseDuration());
+
+		return claims.putIfAbsent(claimKey, now) == null;
+	}
+
+	/**
+	 * Waits for the poll interval.
+	 * @return False if the thread was interrupted.
+	 */
+	protected boolean await()
+	{
+		try
+		{
+			Thread.sleep(Math.max(properties.getPurgePollInterval(), 1));
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	protected String getString(RedisCallback<byte[]> action)
+	{
+		final byte[] retVal = redisTemplate.execute(action);
+
+		return (retVal != null) ? new String(retVal, StandardCharsets.UTF_8) : null;
+	}
+
+	protected static String getDescriptor(String cacheName, StorageEngine storageEngine)
+	{
+		return storageEngine.name() + ":" + cacheName;
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -2,13 +2,20 @@ package org.directtruststandards.timplus.cluster.cache;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.redis.core.RedisHash;
 import org.springframework.data.redis.core.TimeToLive;
 import org.springframework.data.redis.core.index.Indexed;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 /**
  * Entry into the cache.  Caches are logically separated by cache names and further broken down by cluster node.  The fields in this class
@@ -26,11 +33,18 @@ import lombok.Data;
  * @author Greg Meyer
  * @since 1.0
  */
-@RedisHash("timplusclustercache")
+@RedisHash(RedisCacheEntry.KEYSPACE)
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class RedisCacheEntry 
 {
+	/**
+	 * The Redis keyspace of all cache entries.  Entry hashes are stored under this prefix, and the secondary indexes
+	 * are stored as sets named keyspace:property:value.
+	 */
+	public static final String KEYSPACE = "timplusclustercache";
+	
 	/**
 	 * The primary key in the cache.  This is made up of the cache name, the cluster node name, and the 
 	 * entry key name.
@@ -62,10 +76,98 @@ public class RedisCacheEntry
 	private String nodeCacheName;
 	
 	/**
-	 * The actual value of the cache entry.
+	 * The value of the cache entry as text.  Only entries written by earlier versions hold a text value.  Current versions
+	 * write the binary data field.
 	 */
 	private String value;
 	
+	/**
+	 * The encoded value of the cache entry.
+	 */
+	private EncodedValue data;
+	
 	@TimeToLive(unit = MILLISECONDS)
 	private Long expiration;	
+	
+	/**
+	 * Creates an entry with a text value.
+	 * @param key The primary key in the cache.
+	 * @param clusteredCacheKey The cache name and entry key name.
+	 * @param cacheName The name of the cache.
+	 * @param nodeCacheName The cache name and the node id of the cluster member.
+	 * @param value The value as text.
+	 * @param expiration How long the entry should remain in the cache in milliseconds.
+	 */
+	public RedisCacheEntry(String key, String clusteredCacheKey, String cacheName, String nodeCacheName, String value, Long expiration)
+	{
+		this(key, clusteredCacheKey, cacheName, nodeCacheName, value, null, expiration);
+	}
+	
+	/**
+	 * Creates an entry with an encoded value.
+	 * @param key The primary key in the cache.
+	 * @param clusteredCacheKey The cache name and entry key name.
+	 * @param cacheName The name of the cache.
+	 * @param nodeCacheName The cache name and the node id of the cluster member.
+	 * @param data The encoded value.
+	 * @param expiration How long the entry should remain in the cache in milliseconds.
+	 */
+	public RedisCacheEntry(String key, String clusteredCacheKey, String cacheName, String nodeCacheName, byte[] data, Long expiration)
+	{
+		this(key, clusteredCacheKey, cacheName, nodeCacheName, null, (data == null) ? null : new EncodedValue(data), expiration);
+	}
+	
+	/**
+	 * Gets the encoded value of the entry, falling back to the UTF-8 bytes of the text value for entries written by earlier versions.
+	 * @return The encoded value or null if the entry holds a null value.
+	 */
+	@Transient
+	public byte[] getEncodedValue()
+	{
+		if (data != null)
+			return data.getBytes();
+		
+		return (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Holder of an encoded value.  Spring Data writes byte arrays as one hash field per array element, so the encoded value 
+	 * is wrapped and written as a single binary hash field by the {@link EncodedValueWriter} and {@link EncodedValueReader} 
+	 * converters.
+	 * @since 1.0
+	 */
+	@Data
+	@AllArgsConstructor
+	public static class EncodedValue
+	{
+		private final byte[] bytes;
+	}
+	
+	/**
+	 * Writes an encoded value as raw bytes.
+	 * @since 1.0
+	 */
+	@WritingConverter
+	public static class EncodedValueWriter implements Converter<EncodedValue, byte[]>
+	{
+		@Override
+		public byte[] convert(EncodedValue source)
+		{
+			return source.getBytes();
+		}
+	}
+	
+	/**
+	 * Reads an encoded value from raw bytes.
+	 * @since 1.0
+	 */
+	@ReadingConverter
+	public static class EncodedValueReader implements Converter<byte[], EncodedValue>
+	{
+		@Override
+		public EncodedValue convert(byte[] source)
+		{
+			return new EncodedValue(source);
+		}
+	}
 }
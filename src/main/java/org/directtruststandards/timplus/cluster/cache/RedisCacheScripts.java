@@ -0,0 +1,659 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.EvictionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Server side Lua scripts that operate on cache entries in a single round trip.  The scripts are loaded into the
+ * Redis script cache when the bean is initialized and are invoked with EVALSHA.  If Redis no longer holds a script
+ * (for example after a restart or SCRIPT FLUSH), the script is sent with EVAL, which also reloads it into the script cache.
+ * @since 1.0
+ */
+public class RedisCacheScripts implements InitializingBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(RedisCacheScripts.class);
+
+	protected static final String SCRIPT_LOCATION = "org/directtruststandards/timplus/cluster/cache/scripts/";
+
+	protected static final String KEY_PREFIX = RedisCacheEntry.KEYSPACE + ":";
+
+	protected static final byte[] ENTITY_CLASS = toBytes(RedisCacheEntry.class.getName());
+
+	/**
+	 * Writes an entry and its indexes.  For singleton cross cluster caches, the entries of all nodes for the clustered
+	 * cache key are removed first.
+	 */
+	public static final RedisScript<Long> PUT_ENTRY = createScript("put_entry.lua", Long.class);
+
+	protected static final int PUT_ENTRY_KEY_COUNT = 6;
+
+	/**
+	 * Reads the values of all nodes' entries for a set of clustered cache keys.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> GET_ENTRIES = createScript("get_entries.lua", List.class);
+
+	/**
+	 * Reads the values of a batch of entries by id and skips the entries that are not live.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> GET_LIVE_VALUES = createScript("get_live_values.lua", List.class);
+
+	/**
+	 * Indicates if any node holds a live entry for a clustered cache key.
+	 */
+	public static final RedisScript<Long> CONTAINS_KEY = createScript("contains_key.lua", Long.class);
+
+	/**
+	 * Writes entries into the hash of the local node of a cache stored by {@link HashRedisCacheStore}.
+	 */
+	public static final RedisScript<Long> HASH_PUT = createScript("hash_put.lua", Long.class);
+
+	/**
+	 * Reads the entries of all nodes for a set of keys of a cache stored by {@link HashRedisCacheStore}.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> HASH_GET = createScript("hash_get.lua", List.class);
+
+	/**
+	 * Removes and returns an entry from the hash of the local node of a cache stored by {@link HashRedisCacheStore}.
+	 */
+	public static final RedisScript<byte[]> HASH_REMOVE = createScript("hash_remove.lua", byte[].class);
+
+	/**
+	 * Replaces, adds or removes members of the local node's entry for a key of a cache stored by {@link SetRedisCacheStore}.
+	 */
+	public static final RedisScript<Long> SET_PUT = createScript("set_put.lua", Long.class);
+
+	/**
+	 * Reads the members of one or all nodes' entries for a set of keys of a cache stored by {@link SetRedisCacheStore}.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> SET_GET = createScript("set_get.lua", List.class);
+
+	/**
+	 * Removes and returns the members of the local node's entry for a key of a cache stored by {@link SetRedisCacheStore}.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> SET_REMOVE = createScript("set_remove.lua", List.class);
+
+	/**
+	 * Removes a batch of the entries of a node from a cache stored by {@link SetRedisCacheStore} and returns the number of
+	 * the node's entries that remain.
+	 */
+	public static final RedisScript<Long> SET_PURGE = createScript("set_purge.lua", Long.class);
+
+	/**
+	 * Removes a batch of the entries of a retired key set of a node from a cache stored by {@link SetRedisCacheStore} and
+	 * returns the number of entries that remain in the retired key set.
+	 */
+	public static final RedisScript<Long> SET_RECLAIM = createScript("set_reclaim.lua", Long.class);
+
+	/**
+	 * Removes a batch of the entries of a node and returns the number of the node's entries that remain.
+	 */
+	public static final RedisScript<Long> PURGE_NODE = createScript("purge_node.lua", Long.class);
+
+	/**
+	 * Records the caches swept by a coordinated purge of a departed node and releases the lease of the sweeping node.
+	 */
+	public static final RedisScript<Long> COMPLETE_PURGE = createScript("complete_purge.lua", Long.class);
+
+	/**
+	 * Retires the entries of a node by renaming its node cache name index in constant time.
+	 */
+	public static final RedisScript<Long> RETIRE_NODE = createScript("retire_node.lua", Long.class);
+
+	/**
+	 * Removes a batch of the entries of a retired node index and returns the number of entries that remain in the index.
+	 */
+	public static final RedisScript<Long> RECLAIM_NODE = createScript("reclaim_node.lua", Long.class);
+
+	/**
+	 * Indicates if a live entry of a cache holds a value by checking the entries of the value's fingerprint index.
+	 */
+	public static final RedisScript<Long> CONTAINS_VALUE = createScript("contains_value.lua", Long.class);
+
+	/**
+	 * Records entry accesses in the eviction tracking set of a node's entries and pops the entries to evict.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> TRACK_EVICTION = createScript("track_eviction.lua", List.class);
+
+	/**
+	 * Removes the index memberships of a batch of expired entries found by walking the keyspace set with a cursor.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final RedisScript<List> SWEEP_EXPIRED = createScript("sweep_expired.lua", List.class);
+
+	protected static final String RETIRED_INDEX_SEPARATOR = ":retired:";
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to load the scripts into Redis.
+	 */
+	public RedisCacheScripts(RedisTemplate<?, ?> redisTemplate)
+	{
+		this.redisTemplate = redisTemplate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void afterPropertiesSet()
+	{
+		try
+		{
+			redisTemplate.execute((RedisCallback<Void>)connection ->
+			{
+				load(connection);
+				return null;
+			});
+		}
+		catch (Exception e)
+		{
+			// not fatal... scripts are loaded on first use
+			Log.warn("Failed to preload cache scripts into Redis.", e);
+		}
+	}
+
+	/**
+	 * Loads all scripts into the Redis script cache.
+	 * @param connection The connection used to load the scripts.
+	 */
+	public void load(RedisConnection connection)
+	{
+		for (RedisScript<?> script : getScripts())
+			connection.scriptingCommands().scriptLoad(toBytes(script.getScriptAsString()));
+	}
+
+	/**
+	 * Executes a script using EVALSHA and falls back to EVAL if the script is not held by Redis.  When the connection is
+	 * pipelined, the result is not available until the pipeline is closed and the caller must handle a missing script.
+	 * @param connection The connection used to execute the script.
+	 * @param script The script to execute.
+	 * @param returnType The Redis type returned by the script.
+	 * @param numKeys The number of keys in keysAndArgs.
+	 * @param keysAndArgs The keys followed by the arguments of the script.
+	 * @return The result of the script.
+	 */
+	public <T> T execute(RedisConnection connection, RedisScript<?> script, ReturnType returnType, int numKeys, byte[]... keysAndArgs)
+	{
+		try
+		{
+			return connection.scriptingCommands().evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+		}
+		catch (Exception e)
+		{
+			if (!isNoScriptError(e))
+				throw e;
+
+			return connection.scriptingCommands().eval(toBytes(script.getScriptAsString()), returnType, numKeys, keysAndArgs);
+		}
+	}
+
+	/**
+	 * Writes an entry using the {@link #PUT_ENTRY} script.
+	 * @param connection The connection used to execute the script.
+	 * @param entry The entry to write.
+	 * @param singleton Indicates if the entries of all other nodes for the entry's clustered cache key should be removed.
+	 * @param valueIndexed Indicates if the entry is added to the fingerprint index of its value.  See {@link #containsValue(String, byte[])}.
+	 * @return The number of entries removed, or null if the connection is pipelined.
+	 */
+	public Long putEntry(RedisConnection connection, RedisCacheEntry entry, boolean singleton, boolean valueIndexed)
+	{
+		final String entryKey = KEY_PREFIX + entry.getKey();
+		final byte[] value = entry.getEncodedValue();
+
+		final List<byte[]> keysAndArgs = new ArrayList<>(PUT_ENTRY_KEY_COUNT + 10);
+		keysAndArgs.add(toBytes(RedisCacheEntry.KEYSPACE));
+		keysAndArgs.add(toBytes(entryKey));
+		keysAndArgs.add(toBytes(entryKey + ":idx"));
+		keysAndArgs.add(toBytes(indexKey("clusteredCacheKey", entry.getClusteredCacheKey())));
+		keysAndArgs.add(toBytes(indexKey("cacheName", entry.getCacheName())));
+		keysAndArgs.add(toBytes(indexKey("nodeCacheName", entry.getNodeCacheName())));
+		if (valueIndexed && value != null)
+			keysAndArgs.add(toBytes(valueIndexKey(entry.getCacheName(), value)));
+
+		final int numKeys = keysAndArgs.size();
+
+		keysAndArgs.add(toBytes(KEY_PREFIX));
+		keysAndArgs.add(toBytes(entry.getKey()));
+		keysAndArgs.add(toBytes(entry.getClusteredCacheKey()));
+		keysAndArgs.add(toBytes(entry.getCacheName()));
+		keysAndArgs.add(toBytes(entry.getNodeCacheName()));
+		keysAndArgs.add(value == null ? new byte[0] : value);
+		keysAndArgs.add(toBytes(String.valueOf(entry.getExpiration() == null ? -1 : entry.getExpiration())));
+		keysAndArgs.add(ENTITY_CLASS);
+		keysAndArgs.add(toBytes(singleton ? "1" : "0"));
+		keysAndArgs.add(toBytes(CacheEvictionTracker.getTrackingKeyPrefix(entry.getCacheName())));
+
+		return execute(connection, PUT_ENTRY, ReturnType.INTEGER, numKeys, keysAndArgs.toArray(new byte[keysAndArgs.size()][]));
+	}
+
+	/**
+	 * Writes entries using the {@link #PUT_ENTRY} script.  Entries are sent in pipelines of at most chunkSize scripts,
+	 * so a bulk write costs one round trip per chunk instead of one per entry.  Each entry is written atomically, but
+	 * the entries of a chunk are not written as a single transaction.  If Redis no longer holds the script, the scripts
+	 * are reloaded and the failed chunk is written again.
+	 * @param entries The entries to write.
+	 * @param singleton Indicates if the entries of all other nodes for each entry's clustered cache key should be removed.
+	 * @param valueIndexed Indicates if the entries are added to the fingerprint indexes of their values.
+	 * @param chunkSize The maximum number of entries written in a single pipeline.
+	 */
+	public void putEntries(Collection<RedisCacheEntry> entries, boolean singleton, boolean valueIndexed, int chunkSize)
+	{
+		final List<RedisCacheEntry> chunk = new ArrayList<>(Math.min(entries.size(), Math.max(chunkSize, 1)));
+		
+		for (RedisCacheEntry entry : entries)
+		{
+			chunk.add(entry);
+			
+			if (chunk.size() >= chunkSize)
+			{
+				putChunk(chunk, singleton, valueIndexed);
+				chunk.clear();
+			}
+		}
+		
+		if (!chunk.isEmpty())
+			putChunk(chunk, singleton, valueIndexed);
+	}
+
+	protected void putChunk(List<RedisCacheEntry> chunk, boolean singleton, boolean valueIndexed)
+	{
+		// writing an entry is idempotent, so the whole chunk can safely be written again if the scripts were not loaded
+		executePipelined(connection -> chunk.forEach(entry -> putEntry(connection, entry, singleton, valueIndexed)));
+	}
+
+	/**
+	 * Reads the values of all nodes' entries for a set of clustered cache keys using the {@link #GET_ENTRIES} script.
+	 * The keys are split into scripts of at most chunkSize keys so that a single script does not block Redis for too long,
+	 * and all scripts are sent in a single pipeline.
+	 * @param clusteredCacheKeys The clustered cache keys to read.
+	 * @param chunkSize The maximum number of keys read by a single script.
+	 * @return The encoded values of each clustered cache key in the order of the provided keys.  Each list holds one value
+	 * per existing node entry and is empty if no node holds an entry for the key.
+	 */
+	public List<List<byte[]>> getEntries(List<String> clusteredCacheKeys, int chunkSize)
+	{
+		final int size = Math.max(chunkSize, 1);
+		final byte[] prefix = toBytes(KEY_PREFIX);
+
+		final List<Object> results = executePipelined(connection ->
+		{
+			for (int start = 0; start < clusteredCacheKeys.size(); start += size)
+			{
+				final List<String> chunk = clusteredCacheKeys.subList(start, Math.min(start + size, clusteredCacheKeys.size()));
+
+				final byte[][] keysAndArgs = new byte[chunk.size() + 1][];
+				for (int i = 0; i < chunk.size(); ++i)
+					keysAndArgs[i] = toBytes(indexKey("clusteredCacheKey", chunk.get(i)));
+				keysAndArgs[chunk.size()] = prefix;
+
+				execute(connection, GET_ENTRIES, ReturnType.MULTI, chunk.size(), keysAndArgs);
+			}
+		});
+
+		final List<List<byte[]>> retVal = new ArrayList<>(clusteredCacheKeys.size());
+		for (Object chunkResult : results)
+		{
+			for (Object keyResult : (List<?>)chunkResult)
+			{
+				final List<byte[]> values = new ArrayList<>();
+				for (Object value : (List<?>)keyResult)
+					values.add((byte[])value);
+
+				retVal.add(values);
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Reads the values of the live entries of a batch of entry ids using the {@link #GET_LIVE_VALUES} script.
+	 * @param ids The ids of the entries.
+	 * @return The values of the live entries in the order of the ids.  Null values are included.
+	 */
+	public List<byte[]> getLiveValues(List<byte[]> ids)
+	{
+		if (ids.isEmpty())
+			return new ArrayList<>();
+
+		final byte[][] args = new byte[ids.size() + 1][];
+		args[0] = toBytes(KEY_PREFIX);
+		for (int i = 0; i < ids.size(); ++i)
+			args[i + 1] = ids.get(i);
+
+		final List<?> results = redisTemplate.execute((RedisCallback<List<?>>)connection -> execute(connection, GET_LIVE_VALUES, ReturnType.MULTI, 0, args));
+
+		final List<byte[]> retVal = new ArrayList<>((results != null) ? results.size() : 0);
+		if (results != null)
+			results.forEach(value -> retVal.add((byte[])value));
+
+		return retVal;
+	}
+
+	/**
+	 * Indicates if any node holds a live entry for a clustered cache key using the {@link #CONTAINS_KEY} script.
+	 * @param clusteredCacheKey The clustered cache key.
+	 * @return True if a node holds a live entry.
+	 */
+	public boolean containsKey(String clusteredCacheKey)
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> execute(connection, CONTAINS_KEY, ReturnType.INTEGER, 1,
+				toBytes(indexKey("clusteredCacheKey", clusteredCacheKey)), toBytes(KEY_PREFIX)));
+
+		return retVal != null && retVal > 0;
+	}
+
+	/**
+	 * Indicates if a live entry of a cache holds a value using the {@link #CONTAINS_VALUE} script.  Only entries written with
+	 * an indexed value are found.
+	 * @param cacheName The name of the cache.
+	 * @param value The encoded value.
+	 * @return True if a live entry of the cache holds the value.
+	 */
+	public boolean containsValue(String cacheName, byte[] value)
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> execute(connection, CONTAINS_VALUE, ReturnType.INTEGER, 1,
+				toBytes(valueIndexKey(cacheName, value)), toBytes(KEY_PREFIX), value));
+
+		return retVal != null && retVal > 0;
+	}
+
+	/**
+	 * Records entry accesses and pops the entries to evict using the {@link #TRACK_EVICTION} script.  Accesses are sent in
+	 * scripts of at most chunkSize accesses, and all scripts are sent in a single pipeline.
+	 * @param trackingKey The eviction tracking set of the node's entries.
+	 * @param policy The eviction policy of the cache.
+	 * @param accesses Triplets of operation, entry key and score.  See the script for details.
+	 * @param maxEntries The max size of the cache.  Values less than 1 never evict.
+	 * @param timeToLive The time in milliseconds the tracking set remains after the last write.  Values less than 1 never expire.
+	 * @param chunkSize The maximum number of accesses sent in and entries popped by a single script.
+	 * @param livenessCheck The arguments used to check if the node still holds an entry.  See {@link RedisCacheStore#getLivenessCheck()}.
+	 * @return The keys of the entries to evict.
+	 */
+	public List<String> trackEviction(String trackingKey, EvictionPolicy policy, List<byte[]> accesses, long maxEntries, long timeToLive, int chunkSize,
+			byte[][] livenessCheck)
+	{
+		final int size = Math.max(chunkSize, 1);
+		final byte[][] args = { toBytes(trackingKey), toBytes(trackingKey + ":sweep"), toBytes(policy.name()), toBytes(String.valueOf(maxEntries)),
+				toBytes(String.valueOf(size)), toBytes(String.valueOf(timeToLive)), toBytes(String.valueOf(System.currentTimeMillis())),
+				livenessCheck[0], livenessCheck[1], livenessCheck[2], livenessCheck[3] };
+
+		// LFU counts are not idempotent, but the pipeline only holds one script, so a missing script fails every command
+		final List<Object> results = executePipelined(connection ->
+		{
+			int start = 0;
+			do
+			{
+				final List<byte[]> chunk = accesses.subList(start, Math.min(start + size * 3, accesses.size()));
+
+				final byte[][] keysAndArgs = Arrays.copyOf(args, args.length + chunk.size());
+				for (int i = 0; i < chunk.size(); ++i)
+					keysAndArgs[args.length + i] = chunk.get(i);
+
+				execute(connection, TRACK_EVICTION, ReturnType.MULTI, 2, keysAndArgs);
+
+				start += size * 3;
+			} while (start < accesses.size());
+		});
+
+		final List<String> retVal = new ArrayList<>();
+		for (Object result : results)
+		{
+			for (Object key : (List<?>)result)
+				retVal.add(new String((byte[])key, StandardCharsets.UTF_8));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Removes all entries of a node using the {@link #PURGE_NODE} script.  See {@link #purgeNodes(List, List, Consumer)}.
+	 * @param nodeCacheName The node cache name of the node's entries.
+	 * @param chunkSize The maximum number of entries removed by a single script.
+	 */
+	public void purgeNode(String nodeCacheName, int chunkSize)
+	{
+		purgeNodes(Collections.singletonList(nodeCacheName), Collections.singletonList(chunkSize), null);
+	}
+
+	/**
+	 * Removes all entries of one or more node cache names using the {@link #PURGE_NODE} script.  The number of entries of each
+	 * node cache name is read first and enough scripts to remove all of them are sent in a single pipeline.  Each script removes
+	 * at most the chunk size of its cache entries so that Redis can serve other clients between batches.  Another pass is only
+	 * made if entries were added while purging.
+	 * @param nodeCacheNames The node cache names of the entries to remove.
+	 * @param chunkSizes The maximum number of entries removed by a single script for each node cache name.
+	 * @param additionalCommands Optional commands sent in the same pipeline as the first batch of scripts.  The commands must
+	 * be safe to repeat.
+	 */
+	public void purgeNodes(List<String> nodeCacheNames, List<Integer> chunkSizes, Consumer<RedisConnection> additionalCommands)
+	{
+		final byte[] keyspaceKey = toBytes(RedisCacheEntry.KEYSPACE);
+		final byte[] prefix = toBytes(KEY_PREFIX);
+
+		final List<byte[]> nodeIndexKeys = new ArrayList<>(nodeCacheNames.size());
+		nodeCacheNames.forEach(nodeCacheName -> nodeIndexKeys.add(toBytes(indexKey("nodeCacheName", nodeCacheName))));
+
+		final int[] sizes = new int[nodeCacheNames.size()];
+		final List<byte[]> counts = new ArrayList<>(sizes.length);
+		for (int i = 0; i < sizes.length; ++i)
+		{
+			sizes[i] = Math.max(chunkSizes.get(i), 1);
+			counts.add(toBytes(String.valueOf(sizes[i])));
+		}
+
+		final List<Object> cardinalities = pipeline(connection -> nodeIndexKeys.forEach(key -> connection.setCommands().sCard(key)));
+
+		final long[] remaining = new long[nodeIndexKeys.size()];
+		for (int i = 0; i < remaining.length; ++i)
+			remaining[i] = (cardinalities.get(i) == null) ? 0 : (Long)cardinalities.get(i);
+
+		Consumer<RedisConnection> additional = additionalCommands;
+		while (additional != null || Arrays.stream(remaining).anyMatch(val -> val > 0))
+		{
+			final long[] batches = new long[remaining.length];
+			long scriptCount = 0;
+			for (int i = 0; i < remaining.length; ++i)
+			{
+				batches[i] = (remaining[i] + sizes[i] - 1) / sizes[i];
+				scriptCount += batches[i];
+			}
+
+			final Consumer<RedisConnection> sentCommands = additional;
+			final List<Object> results = executePipelined(connection ->
+			{
+				if (sentCommands != null)
+					sentCommands.accept(connection);
+
+				for (int i = 0; i < batches.length; ++i)
+				{
+					for (long batch = 0; batch < batches[i]; ++batch)
+						execute(connection, PURGE_NODE, ReturnType.INTEGER, 2, nodeIndexKeys.get(i), keyspaceKey, prefix, counts.get(i));
+				}
+			});
+
+			// the last script of each node cache name reports how many of its entries remain
+			int resultIndex = (int)(results.size() - scriptCount);
+			for (int i = 0; i < batches.length; ++i)
+			{
+				resultIndex += batches[i];
+				if (batches[i] > 0)
+					remaining[i] = (Long)results.get(resultIndex - 1);
+			}
+
+			additional = null;
+		}
+	}
+
+	/**
+	 * Retires all entries of a node using the {@link #RETIRE_NODE} script.  The node's entries stop being returned by reads
+	 * immediately and are removed later by {@link #reclaimRetired(String, int)}.
+	 * @param cacheName The name of the cache.
+	 * @param nodeCacheName The node cache name of the node's entries.
+	 * @return True if the node held entries that were retired.
+	 */
+	public boolean retireNode(String cacheName, String nodeCacheName)
+	{
+		final String retiredIndexKey = indexKey("nodeCacheName", nodeCacheName) + RETIRED_INDEX_SEPARATOR + UUID.randomUUID().toString();
+
+		final Long retired = redisTemplate.execute((RedisCallback<Long>)connection -> execute(connection, RETIRE_NODE, ReturnType.INTEGER, 3,
+				toBytes(indexKey("nodeCacheName", nodeCacheName)), toBytes(retiredIndexKey), toBytes(retiredIndexesKey(cacheName))));
+
+		return retired != null && retired > 0;
+	}
+
+	/**
+	 * Removes a batch of the entries of a retired node index using the {@link #RECLAIM_NODE} script.  The index is dropped
+	 * from the cache's set of retired indexes once it is empty.
+	 * @param retiredIndexKey The retired index.
+	 * @param chunkSize The maximum number of entries removed.
+	 * @return The number of entries that remain in the retired index.
+	 */
+	public long reclaimRetired(String retiredIndexKey, int chunkSize)
+	{
+		final String nodeIndexKey = retiredIndexKey.substring(0, retiredIndexKey.lastIndexOf(RETIRED_INDEX_SEPARATOR));
+
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> execute(connection, RECLAIM_NODE, ReturnType.INTEGER, 3,
+				toBytes(retiredIndexKey), toBytes(nodeIndexKey), toBytes(RedisCacheEntry.KEYSPACE), toBytes(KEY_PREFIX),
+				toBytes(String.valueOf(Math.max(chunkSize, 1)))));
+
+		return (retVal == null) ? 0 : retVal;
+	}
+
+	/**
+	 * Sends commands in a single pipeline.  If Redis reports that a script is not held in the script cache, the scripts are
+	 * reloaded and the commands are sent again, so the commands must be safe to repeat.
+	 * @param commands Issues the commands on a pipelined connection.
+	 * @return The results of the commands.
+	 */
+	protected List<Object> executePipelined(Consumer<RedisConnection> commands)
+	{
+		try
+		{
+			return pipeline(commands);
+		}
+		catch (Exception e)
+		{
+			if (!isNoScriptError(e))
+				throw e;
+
+			redisTemplate.execute((RedisCallback<Void>)connection ->
+			{
+				load(connection);
+				return null;
+			});
+
+			return pipeline(commands);
+		}
+	}
+
+	protected List<Object> pipeline(Consumer<RedisConnection> commands)
+	{
+		return redisTemplate.execute((RedisCallback<List<Object>>)connection ->
+		{
+			connection.openPipeline();
+
+			commands.accept(connection);
+
+			return connection.closePipeline();
+		});
+	}
+
+
+	/**
+	 * Gets the name of the Redis set holding the entry ids of an indexed property value.
+	 * @param property The name of the indexed property.
+	 * @param value The value of the property.
+	 * @return The name of the Redis set.
+	 */
+	public static String indexKey(String property, String value)
+	{
+		return KEY_PREFIX + property + ":" + value;
+	}
+
+	/**
+	 * Gets the name of the Redis set holding the ids of a cache's entries whose values share a fingerprint.  The fingerprint
+	 * only narrows the entries to compare, so values with colliding fingerprints share a set.
+	 * @param cacheName The name of the cache.
+	 * @param value The encoded value.
+	 * @return The name of the Redis set.
+	 */
+	public static String valueIndexKey(String cacheName, byte[] value)
+	{
+		return indexKey("valueFingerprint", cacheName + ":" + DigestUtils.md5DigestAsHex(value));
+	}
+
+	/**
+	 * Gets the name of the Redis set holding the retired node indexes of a cache that still hold entries.
+	 * @param cacheName The name of the cache.
+	 * @return The name of the Redis set.
+	 */
+	public static String retiredIndexesKey(String cacheName)
+	{
+		return RedisCacheEntry.KEYSPACE + "-retired:" + cacheName;
+	}
+
+	/**
+	 * Indicates if an exception was caused by a script not held in the Redis script cache.
+	 * @param e The exception.
+	 * @return True if the exception was caused by a script not held in the Redis script cache.
+	 */
+	public static boolean isNoScriptError(Throwable e)
+	{
+		for (Throwable cause = e; cause != null; cause = cause.getCause())
+		{
+			if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT"))
+				return true;
+		}
+
+		return false;
+	}
+
+	protected List<RedisScript<?>> getScripts()
+	{
+		return Arrays.asList(PUT_ENTRY, GET_ENTRIES, GET_LIVE_VALUES, CONTAINS_KEY, HASH_PUT, HASH_GET, HASH_REMOVE, SET_PUT, SET_GET, SET_REMOVE, SET_PURGE, SET_RECLAIM, PURGE_NODE, COMPLETE_PURGE, RETIRE_NODE, RECLAIM_NODE, CONTAINS_VALUE,
+				TRACK_EVICTION, SWEEP_EXPIRED);
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	protected static <T> RedisScript<T> createScript(String name, Class<T> resultType)
+	{
+		final DefaultRedisScript<T> script = new DefaultRedisScript<>();
+
+		script.setLocation(new ClassPathResource(SCRIPT_LOCATION + name));
+		script.setResultType(resultType);
+
+		return script;
+	}
+}
@@ -0,0 +1,216 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * Storage engine that persists the encoded entries of a single cache in Redis.  Every cluster node writes its own
+ * entries for a key, and reads return the entries of all nodes.  Implementations decide how entries are laid out in Redis.
+ * Keys are the cache specific entry keys (without the cache name) and values are the already encoded entry values.
+ * @since 1.0
+ */
+public abstract class RedisCacheStore
+{
+	protected String name;
+
+	protected final NodeID nodeId;
+
+	protected long maxLifetime;
+
+	protected int bulkChunkSize;
+
+	/**
+	 * Constructor
+	 * @param name The name of the cache.
+	 * @param nodeId The id of the local cluster node.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 * @param bulkChunkSize The maximum number of entries sent to Redis in a single pipeline or script by bulk operations.
+	 */
+	public RedisCacheStore(String name, NodeID nodeId, long maxLifetime, int bulkChunkSize)
+	{
+		this.name = name;
+		this.nodeId = nodeId;
+		this.maxLifetime = maxLifetime;
+		this.bulkChunkSize = bulkChunkSize;
+	}
+
+	/**
+	 * Sets the name of the cache.  Entries written under the previous name are not moved.
+	 * @param name The name of the cache.
+	 */
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Sets the time in milliseconds entries written from now on remain in the cache.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 */
+	public void setMaxLifetime(long maxLifetime)
+	{
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * Writes the local node's entry for a key.
+	 * @param key The key of the entry.
+	 * @param value The encoded value or null.
+	 * @param singleton Indicates if the entries of all other nodes for the key should be removed.
+	 */
+	public abstract void put(String key, byte[] value, boolean singleton);
+
+	/**
+	 * Writes the local node's entries for multiple keys.
+	 * @param values The encoded values keyed by entry key.
+	 * @param singleton Indicates if the entries of all other nodes for the keys should be removed.
+	 */
+	public abstract void putAll(Map<String, byte[]> values, boolean singleton);
+
+	/**
+	 * Gets the entries of all nodes for a key.
+	 * @param key The key of the entry.
+	 * @return The encoded value of each node's entry.  The list is empty if no node holds an entry for the key.
+	 */
+	public abstract List<byte[]> get(String key);
+
+	/**
+	 * Gets the entries of all nodes for multiple keys.
+	 * @param keys The keys of the entries.
+	 * @return The encoded values of each key in the order of the provided keys.  See {@link #get(String)}.
+	 */
+	public abstract List<List<byte[]>> getAll(List<String> keys);
+
+	/**
+	 * Removes the local node's entry for a key.
+	 * @param key The key of the entry.
+	 * @return The encoded value of the removed entry or null if the local node held no entry or the entry held a null value.
+	 */
+	public abstract byte[] remove(String key);
+
+	/**
+	 * Removes the local node's entries for multiple keys.  The entries are removed one at a time unless the storage engine
+	 * can remove them in bulk.
+	 * @param keys The keys of the entries.
+	 */
+	public void removeAll(Collection<String> keys)
+	{
+		keys.forEach(this::remove);
+	}
+
+	/**
+	 * Adds a member to the collection value of the local node's entry for a key without rewriting the other members.  Only
+	 * storage engines that store collection values as native collections support this.
+	 * @param key The key of the entry.
+	 * @param member The encoded member.
+	 * @param singleton Indicates if the entries of all other nodes for the key should be removed.
+	 * @throws UnsupportedOperationException If the storage engine does not store collection values as native collections.
+	 */
+	public void addMember(String key, byte[] member, boolean singleton)
+	{
+		throw new UnsupportedOperationException("Cache " + name + " does not store values as native collections");
+	}
+
+	/**
+	 * Removes a member from the collection value of the local node's entry for a key without rewriting the other members.
+	 * See {@link #addMember(String, byte[], boolean)}.
+	 * @param key The key of the entry.
+	 * @param member The encoded member.
+	 * @throws UnsupportedOperationException If the storage engine does not store collection values as native collections.
+	 */
+	public void removeMember(String key, byte[] member)
+	{
+		throw new UnsupportedOperationException("Cache " + name + " does not store values as native collections");
+	}
+
+	/**
+	 * Gets the arguments scripts use to check if the local node still holds an unexpired entry for a key without a round trip
+	 * per key.  See track_eviction.lua for the supported checks.
+	 * @return The type of the check followed by three parameters of the check.  Unused parameters are empty.
+	 */
+	public abstract byte[][] getLivenessCheck();
+
+	/**
+	 * Gets the values of all nodes' entries.
+	 * @return The encoded values of all nodes' entries.
+	 */
+	public abstract List<byte[]> values();
+
+	/**
+	 * Gets the local node's entries.
+	 * @return The encoded values of the local node's entries keyed by entry key.
+	 */
+	public abstract Map<String, byte[]> entries();
+
+	/**
+	 * Gets the keys of the local node's entries.
+	 * @return The keys of the local node's entries.
+	 */
+	public abstract Set<String> keys();
+
+	/**
+	 * Lazily iterates the values of all nodes' entries.  Entries are scanned with a cursor and read in batches of the bulk chunk
+	 * size, so iterating does not hold all values in memory or block Redis.  Entries written or removed while iterating may or
+	 * may not be returned.
+	 * @return An iterator of the encoded values.  The iterator must be closed if it is not exhausted.
+	 */
+	public abstract CloseableIterator<byte[]> scanValues();
+
+	/**
+	 * Lazily iterates the local node's entries.  See {@link #scanValues()}.
+	 * @return An iterator of the encoded values keyed by entry key.  The iterator must be closed if it is not exhausted.
+	 */
+	public abstract CloseableIterator<Map.Entry<String, byte[]>> scanEntries();
+
+	/**
+	 * Lazily iterates the keys of the local node's entries.  See {@link #scanValues()}.
+	 * @return An iterator of the keys.  The iterator must be closed if it is not exhausted.
+	 */
+	public abstract CloseableIterator<String> scanKeys();
+
+	/**
+	 * Gets the number of the local node's entries.
+	 * @return The number of the local node's entries.
+	 */
+	public abstract long size();
+
+	/**
+	 * Indicates if the local node holds no entries.
+	 * @return True if the local node holds no entries.
+	 */
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Indicates if any node holds an entry for a key.
+	 * @param key The key of the entry.
+	 * @return True if any node holds an entry for the key.
+	 */
+	public abstract boolean containsKey(String key);
+
+	/**
+	 * Indicates if any node holds an entry with a value.
+	 * @param value The encoded value.
+	 * @return True if any node holds an entry with the value.
+	 */
+	public abstract boolean containsValue(byte[] value);
+
+	/**
+	 * Removes all entries of a node.
+	 * @param node The node whose entries are removed.
+	 */
+	public abstract void purge(NodeID node);
+
+	/**
+	 * Removes all entries of the local node without blocking on the number of entries.  The entries must stop being returned
+	 * by reads immediately, but their memory may be reclaimed later.
+	 */
+	public abstract void clear();
+}
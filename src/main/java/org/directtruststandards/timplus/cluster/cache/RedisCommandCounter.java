@@ -0,0 +1,198 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Counts the Redis commands and round trips issued by the calling thread while a measurement is active.  Counting is done by
+ * wrapping the connection factory used by the cache template so that every command, including the ones issued by the
+ * Spring Data repository, is seen regardless of which code path issued it.
+ * <p>
+ * Commands issued outside of a pipeline each count as a round trip.  Commands issued inside a pipeline count as a single
+ * round trip when the pipeline is closed.
+ * @since 1.0
+ */
+public class RedisCommandCounter
+{
+	/*
+	 * Connection methods that manage the connection instead of sending a command to Redis.
+	 */
+	protected static final Set<String> NON_COMMAND_METHODS = new HashSet<>(Arrays.asList("close", "isClosed", "getNativeConnection",
+			"isQueueing", "isPipelined", "openPipeline", "closePipeline", "getSentinelConnection", "isSubscribed", "getSubscription",
+			"equals", "hashCode", "toString"));
+
+	protected static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * The commands and round trips counted during a single measurement.
+	 */
+	public static class Counts
+	{
+		protected long commands;
+
+		protected long roundTrips;
+
+		protected Counts previous;
+
+		/**
+		 * Gets the number of counted commands.
+		 * @return The number of counted commands.
+		 */
+		public long getCommands()
+		{
+			return commands;
+		}
+
+		/**
+		 * Gets the number of counted round trips.
+		 * @return The number of counted round trips.
+		 */
+		public long getRoundTrips()
+		{
+			return roundTrips;
+		}
+	}
+
+	/**
+	 * Starts counting commands issued by the calling thread.  Measurements may be nested, in which case commands are only
+	 * counted by the innermost measurement.
+	 * @return The counts of the new measurement.  The counts must be passed to {@link #end(Counts)}.
+	 */
+	public static Counts begin()
+	{
+		final Counts retVal = new Counts();
+		retVal.previous = CURRENT.get();
+
+		CURRENT.set(retVal);
+
+		return retVal;
+	}
+
+	/**
+	 * Stops counting commands for a measurement and resumes any enclosing measurement.
+	 * @param counts The counts returned by {@link #begin()}.
+	 */
+	public static void end(Counts counts)
+	{
+		if (counts.previous == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(counts.previous);
+	}
+
+	/**
+	 * Wraps a connection factory so that the commands sent over its connections are counted.
+	 * @param connectionFactory The connection factory to wrap.
+	 * @return A connection factory that counts the commands sent over its connections.
+	 */
+	public static RedisConnectionFactory wrap(RedisConnectionFactory connectionFactory)
+	{
+		return (RedisConnectionFactory)Proxy.newProxyInstance(RedisCommandCounter.class.getClassLoader(),
+				new Class<?>[] {RedisConnectionFactory.class}, (proxy, method, args) ->
+		{
+			final Object retVal = invoke(connectionFactory, method, args);
+
+			if (retVal instanceof RedisConnection && "getConnection".equals(method.getName()))
+				return wrapTarget(retVal, new ConnectionHandler((RedisConnection)retVal, retVal));
+
+			return retVal;
+		});
+	}
+
+	protected static Object wrapTarget(Object target, InvocationHandler handler)
+	{
+		return Proxy.newProxyInstance(RedisCommandCounter.class.getClassLoader(),
+				ClassUtils.getAllInterfacesForClass(target.getClass(), RedisCommandCounter.class.getClassLoader()), handler);
+	}
+
+	protected static Object invoke(Object target, Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getTargetException();
+		}
+	}
+
+	protected static boolean isCommandsInterface(Class<?> type)
+	{
+		return type.isInterface() && type.getSimpleName().endsWith("Commands");
+	}
+
+	/**
+	 * Counts the commands of a connection or of one of the command interfaces obtained from the connection.
+	 */
+	protected static class ConnectionHandler implements InvocationHandler
+	{
+		protected final RedisConnection connection;
+
+		protected final Object target;
+
+		protected final ConnectionHandler root;
+
+		protected long pipelinedCommands;
+
+		protected ConnectionHandler(RedisConnection connection, Object target)
+		{
+			this.connection = connection;
+			this.target = target;
+			this.root = this;
+		}
+
+		protected ConnectionHandler(ConnectionHandler parent, Object target)
+		{
+			this.connection = parent.connection;
+			this.target = target;
+			this.root = parent.root;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			final String name = method.getName();
+
+			if ("closePipeline".equals(name))
+			{
+				final Counts counts = CURRENT.get();
+				if (counts != null && root.pipelinedCommands > 0)
+					++counts.roundTrips;
+
+				root.pipelinedCommands = 0;
+			}
+			else if (!NON_COMMAND_METHODS.contains(name) && !isCommandsInterface(method.getReturnType()))
+			{
+				final Counts counts = CURRENT.get();
+				if (counts != null)
+				{
+					++counts.commands;
+
+					if (connection.isPipelined())
+						++root.pipelinedCommands;
+					else
+						++counts.roundTrips;
+				}
+			}
+
+			final Object retVal = RedisCommandCounter.invoke(target, method, args);
+
+			// command interfaces such as keyCommands() send their commands directly... count those as well
+			if (retVal != null && isCommandsInterface(method.getReturnType()))
+				return Proxy.newProxyInstance(RedisCommandCounter.class.getClassLoader(), new Class<?>[] {method.getReturnType()},
+						new ConnectionHandler(this, retVal));
+
+			return retVal;
+		}
+	}
+}
@@ -22,6 +22,7 @@ import org.jivesoftware.util.cache.ClusteredCacheFactory;
 import org.jivesoftware.util.cache.DefaultExternalizableUtilStrategy;
 import org.jivesoftware.util.cache.ExternalizableUtil;
 import org.jivesoftware.util.cache.RedisClusteredCache;
+import org.xmpp.packet.JID;
 
 /**
  * Redis specific implementation of a DelegatedClusteredCacheFactory interface.  
@@ -35,6 +36,28 @@ public class RedisDelegatedClusterCacheFactory implements DelegatedClusteredCach
 		ExternalizableUtil.getInstance().setStrategy(new DefaultExternalizableUtilStrategy());
 	}
 	
+	/**
+	 * Binds the codecs of the Openfire value types that have a more compact or faster form than the Jackson fallback.
+	 * @param registry The registry to bind the codecs to.
+	 */
+	public static void registerValueCodecs(CacheValueCodecRegistry registry)
+	{
+		registry.register(NodeID.class, NodeIdCacheValueCodec::new);
+		registry.register(ClientRoute.class, ClientRouteCacheValueCodec::new);
+		registry.register(Roster.class, () -> new ExternalizableCacheValueCodec(Roster.class));
+	}
+	
+	/**
+	 * Binds the key codecs of the Openfire key types whose string form is not a compact and stable entry key.
+	 * @param registry The registry to bind the codecs to.
+	 */
+	public static void registerKeyCodecs(CacheKeyCodecRegistry registry)
+	{
+		registry.register(DomainPair.class, DomainPairCacheKeyCodec::new);
+		registry.register(NodeID.class, NodeIdCacheKeyCodec::new);
+		registry.register(JID.class, JidCacheKeyCodec::new);
+	}
+	
 	/**
 	 * Empty constructor
 	 */
@@ -113,6 +136,16 @@ public class RedisDelegatedClusterCacheFactory implements DelegatedClusteredCach
 		return retVal;
 	}
 	
+	/**
+	 * Releases the resources a cache created by this factory holds in the local JVM.
+	 * @param cache The cache to destroy.
+	 */
+	public void destroyCache(Cache<?, ?> cache)
+	{
+		if (cache instanceof RedisClusteredCache)
+			((RedisClusteredCache<?, ?>)cache).destroy();
+	}
+	
 	public static class StringClientRouteCache<K extends String, V extends ClientRoute> extends RedisClusteredCache<K,V>
 	{
 		public StringClientRouteCache(String name, long maxSize, long maxLifetime, NodeID nodeId, boolean nodePurgable) {
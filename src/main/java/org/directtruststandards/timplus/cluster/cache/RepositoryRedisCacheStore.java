@@ -0,0 +1,480 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * Storage engine that persists every entry as a {@link RedisCacheEntry} through the Spring Data {@link RedisCacheRepository}.
+ * Each entry is its own Redis hash with secondary index sets on the clustered cache key, cache name, and node cache name.
+ * @since 1.0
+ */
+public class RepositoryRedisCacheStore extends RedisCacheStore
+{
+	protected static final int PAGE_SIZE = 500;
+
+	protected final RedisCacheRepository remotelyCached;
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final RetiredEntryReclaimer reclaimer;
+
+	protected final boolean valueIndexed;
+
+	protected String nodeCacheName;
+
+	protected String nodeIndexKey;
+
+	protected byte[] nodeIndexKeyBytes;
+
+	/**
+	 * Constructor
+	 * @param remotelyCached The repository used to read and write entries.
+	 * @param redisTemplate The template used to execute scripts.
+	 * @param scripts The scripts used for atomic and bulk operations.
+	 * @param reclaimer Removes the entries retired by {@link #clear()} in the background.
+	 * @param name The name of the cache.
+	 * @param nodeId The id of the local cluster node.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 * @param bulkChunkSize The maximum number of entries sent to Redis in a single pipeline or script by bulk operations.
+	 * @param valueIndexed Indicates if entries are indexed by a fingerprint of their value to answer {@link #containsValue(byte[])}.
+	 */
+	public RepositoryRedisCacheStore(RedisCacheRepository remotelyCached, RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts,
+			RetiredEntryReclaimer reclaimer, String name, NodeID nodeId, long maxLifetime, int bulkChunkSize, boolean valueIndexed)
+	{
+		super(name, nodeId, maxLifetime, bulkChunkSize);
+
+		this.remotelyCached = remotelyCached;
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.reclaimer = reclaimer;
+		this.valueIndexed = valueIndexed;
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setName(String name)
+	{
+		super.setName(name);
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void put(String key, byte[] value, boolean singleton)
+	{
+		final RedisCacheEntry entry = createRedisCacheEntry(key, value);
+
+		/*
+		 * Write the entry and its indexes in one atomic round trip.  Singleton caches also clobber all existing instances of
+		 * this key for this cache.  Atomic writes also keep a rewritten entry from being reclaimed along with a retired one.
+		 */
+		redisTemplate.execute((RedisCallback<Long>)connection -> scripts.putEntry(connection, entry, singleton, valueIndexed));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putAll(Map<String, byte[]> values, boolean singleton)
+	{
+		final Collection<RedisCacheEntry> entries = new ArrayList<>(values.size());
+		values.forEach((key, value) -> entries.add(createRedisCacheEntry(key, value)));
+
+		scripts.putEntries(entries, singleton, valueIndexed, bulkChunkSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> get(String key)
+	{
+		// the script skips retired entries
+		return scripts.getEntries(Collections.singletonList(name + key), bulkChunkSize).get(0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<List<byte[]>> getAll(List<String> keys)
+	{
+		final List<String> clusteredCacheKeys = new ArrayList<>(keys.size());
+		keys.forEach(key -> clusteredCacheKeys.add(name + key));
+
+		return scripts.getEntries(clusteredCacheKeys, bulkChunkSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] remove(String key)
+	{
+		final String id = nodeCacheName + key;
+
+		final Optional<RedisCacheEntry> retVal = remotelyCached.findById(id);
+
+		if (!retVal.isPresent())
+			return null;
+
+		// a retired entry only lingers until it is reclaimed
+		final boolean live = isLive(Collections.singletonList(retVal.get())).get(0);
+
+		remotelyCached.deleteById(id);
+
+		return live ? retVal.get().getEncodedValue() : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> values()
+	{
+		final List<byte[]> retVal = new LinkedList<>();
+
+		try (CloseableIterator<byte[]> values = scanValues())
+		{
+			values.forEachRemaining(retVal::add);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, byte[]> entries()
+	{
+		final Map<String, byte[]> retVal = new HashMap<>();
+
+		// the node index only holds the live entries of the node
+		forEachPage(createNodeProbe(nodeId), page -> page.forEach(val -> retVal.put(val.getClusteredCacheKey().substring(name.length()), val.getEncodedValue())));
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<String> keys()
+	{
+		final Set<String> retVal = new HashSet<>();
+
+		forEachPage(createNodeProbe(nodeId), page -> page.forEach(val -> retVal.add(val.getClusteredCacheKey().substring(name.length()))));
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Scans the cache name index, which also holds the ids of expired and retired entries until they are removed.  The script
+	 * that reads each batch skips those entries.
+	 */
+	@Override
+	public CloseableIterator<byte[]> scanValues()
+	{
+		return scanIndex(RedisCacheScripts.indexKey("cacheName", name), scripts::getLiveValues);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<Map.Entry<String, byte[]>> scanEntries()
+	{
+		final int keyStart = nodeCacheName.length();
+
+		// the node index only holds the live entries of the node
+		return scanIndex(nodeIndexKey, ids ->
+		{
+			final List<List<byte[]>> fields = readFields(ids, "key", "data", "value");
+
+			final List<Map.Entry<String, byte[]>> retVal = new ArrayList<>(fields.size());
+			for (int i = 0; i < fields.size(); ++i)
+			{
+				final List<byte[]> val = fields.get(i);
+				if (val.get(0) == null)
+					continue;
+
+				final byte[] encoded = (val.get(1) != null) ? val.get(1) : val.get(2);
+				retVal.add(new AbstractMap.SimpleImmutableEntry<>(toString(ids.get(i)).substring(keyStart), encoded));
+			}
+
+			return retVal;
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<String> scanKeys()
+	{
+		final int keyStart = nodeCacheName.length();
+
+		return scanIndex(nodeIndexKey, ids ->
+		{
+			final List<List<byte[]>> fields = readFields(ids, "key");
+
+			final List<String> retVal = new ArrayList<>(fields.size());
+			for (int i = 0; i < fields.size(); ++i)
+			{
+				if (fields.get(i).get(0) != null)
+					retVal.add(toString(ids.get(i)).substring(keyStart));
+			}
+
+			return retVal;
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Reads the cardinality of the node index in a single command instead of resolving the index through a query.  The index is
+	 * maintained by the write paths, so the count includes expired entries of the local node until they are removed from the
+	 * index, the same as a query by example count.
+	 */
+	@Override
+	public long size()
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sCard(nodeIndexKeyBytes));
+
+		return (retVal == null) ? 0 : retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsKey(String key)
+	{
+		// the script skips retired entries
+		return scripts.containsKey(name + key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Caches with an indexed value only compare the entries with the same value fingerprint in a single script.  Other caches
+	 * scan the values of the cache and stop at the first match.
+	 */
+	@Override
+	public boolean containsValue(byte[] value)
+	{
+		if (valueIndexed && value != null)
+			return scripts.containsValue(name, value);
+
+		try (CloseableIterator<byte[]> values = scanValues())
+		{
+			while (values.hasNext())
+			{
+				if (Arrays.equals(values.next(), value))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void purge(NodeID node)
+	{
+		/*
+		 * The node cache name index holds the ids of all of the node's entries.  Remove them server side in batches
+		 * instead of paging through the repository and deleting entry by entry.
+		 */
+		scripts.purgeNode(name + node.toString(), bulkChunkSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The node's entries are retired in constant time by renaming the node's index.  Retired entries are skipped by reads
+	 * immediately and removed in the background by the {@link RetiredEntryReclaimer}.
+	 */
+	@Override
+	public void clear()
+	{
+		if (scripts.retireNode(name, nodeCacheName))
+			reclaimer.reclaim(name, bulkChunkSize);
+	}
+
+	protected RedisCacheEntry createRedisCacheEntry(String key, byte[] value)
+	{
+		return new RedisCacheEntry(nodeCacheName + key, name + key, name, nodeCacheName, value, maxLifetime);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * An entry is live while its hash exists and its id is in the node cache name index.
+	 */
+	@Override
+	public byte[][] getLivenessCheck()
+	{
+		return new byte[][] { { 'r' }, nodeIndexKeyBytes, toBytes(nodeCacheName), toBytes(RedisCacheEntry.KEYSPACE + ":") };
+	}
+
+	/**
+	 * Builds the names derived from the cache name and the local node id once instead of on every operation.
+	 */
+	protected void initKeys()
+	{
+		nodeCacheName = name + nodeId.toString();
+		nodeIndexKey = RedisCacheScripts.indexKey("nodeCacheName", nodeCacheName);
+		nodeIndexKeyBytes = toBytes(nodeIndexKey);
+	}
+
+	protected RedisCacheEntry createNodeProbe(NodeID node)
+	{
+		return new RedisCacheEntry((String)null, (String)null, (String)null, name + node.toString(), (String)null, maxLifetime);
+	}
+
+	/**
+	 * Lazily iterates the entry ids of an index set with an SSCAN cursor.
+	 * @param indexKey The key of the index set.
+	 * @param loader Reads a batch of entry ids and returns the results of the existing entries.
+	 */
+	protected <T> CloseableIterator<T> scanIndex(String indexKey, Function<List<byte[]>, List<T>> loader)
+	{
+		final byte[] key = toBytes(indexKey);
+		final ScanOptions options = ScanOptions.scanOptions().count(bulkChunkSize).build();
+
+		final Supplier<Cursor<byte[]>> source = () -> redisTemplate.executeWithStickyConnection(
+				(RedisCallback<Cursor<byte[]>>)connection -> connection.setCommands().sScan(key, options));
+
+		return new StoreCursor<>(Collections.singletonList(source), bulkChunkSize, loader);
+	}
+
+	/**
+	 * Reads fields of multiple entry hashes in a single pipeline.
+	 * @param ids The ids of the entries.
+	 * @param fields The names of the fields to read.
+	 * @return The field values of each entry in the order of the provided ids.  Missing fields and the fields of missing
+	 * entries are null.
+	 */
+	protected List<List<byte[]>> readFields(List<byte[]> ids, String... fields)
+	{
+		final byte[] prefix = toBytes(RedisCacheEntry.KEYSPACE + ":");
+
+		final byte[][] fieldNames = new byte[fields.length][];
+		for (int i = 0; i < fields.length; ++i)
+			fieldNames[i] = toBytes(fields[i]);
+
+		final List<Object> results = redisTemplate.execute((RedisCallback<List<Object>>)connection ->
+		{
+			connection.openPipeline();
+
+			ids.forEach(id ->
+			{
+				final byte[] entryKey = Arrays.copyOf(prefix, prefix.length + id.length);
+				System.arraycopy(id, 0, entryKey, prefix.length, id.length);
+
+				connection.hashCommands().hMGet(entryKey, fieldNames);
+			});
+
+			return connection.closePipeline();
+		});
+
+		final List<List<byte[]>> retVal = new ArrayList<>(results.size());
+		results.forEach(result ->
+		{
+			final List<byte[]> values = new ArrayList<>(fields.length);
+			((List<?>)result).forEach(value -> values.add((byte[])value));
+
+			retVal.add(values);
+		});
+
+		return retVal;
+	}
+
+	protected static String toString(byte[] value)
+	{
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Indicates which entries are live.  Entries are live while they are members of their node's index.
+	 * @param entries The entries to check.
+	 * @return True for each live entry in the order of the provided entries.
+	 */
+	protected List<Boolean> isLive(List<RedisCacheEntry> entries)
+	{
+		final List<Object> results = redisTemplate.execute((RedisCallback<List<Object>>)connection ->
+		{
+			connection.openPipeline();
+
+			entries.forEach(entry -> connection.setCommands().sIsMember(toBytes(RedisCacheScripts.indexKey("nodeCacheName", entry.getNodeCacheName())),
+					toBytes(entry.getKey())));
+
+			return connection.closePipeline();
+		});
+
+		final List<Boolean> retVal = new ArrayList<>(entries.size());
+		results.forEach(result -> retVal.add(Boolean.TRUE.equals(result)));
+
+		return retVal;
+	}
+
+	protected void forEachPage(RedisCacheEntry probe, Consumer<List<RedisCacheEntry>> consumer)
+	{
+		final Pageable pageParam = PageRequest.of(0, PAGE_SIZE);
+		Page<RedisCacheEntry> page = null;
+		do
+		{
+			if (page == null)
+				page = remotelyCached.findAll(Example.of(probe), pageParam);
+			else
+				page = remotelyCached.findAll(Example.of(probe), page.nextPageable());
+
+			consumer.accept(page.toList());
+		} while(page.hasNext());
+	}
+}
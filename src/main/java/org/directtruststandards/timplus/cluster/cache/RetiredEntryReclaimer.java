@@ -0,0 +1,166 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Removes entries retired by a cache clear in the background.  A clear retires the local node's entries in constant time
+ * (see {@link RedisCacheScripts#retireNode(String, String)} and {@link SetRedisCacheStore#clear()}), so the entry hashes or
+ * member sets and their index memberships are left behind until they are reclaimed here.  Retired indexes are reclaimed one batch per round trip so that Redis keeps serving other
+ * clients between batches.
+ * <p>
+ * The retired indexes of a cache are recorded in Redis, so any node can finish reclaiming indexes left behind by a node
+ * that stopped before it was done.  Entries with a max lifetime also expire on their own.
+ * @since 1.0
+ */
+public class RetiredEntryReclaimer implements DisposableBean
+{
+	private static final Logger Log = LoggerFactory.getLogger(RetiredEntryReclaimer.class);
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	protected final ExecutorService executor;
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to read the retired indexes.
+	 * @param scripts The scripts used to remove retired entries.
+	 */
+	public RetiredEntryReclaimer(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts)
+	{
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.executor = Executors.newSingleThreadExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "timplus-cache-reclaimer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Schedules the removal of the retired entries of a cache.  Requests for a cache that is already scheduled are merged.
+	 * @param cacheName The name of the cache.
+	 * @param chunkSize The maximum number of entries removed per round trip.
+	 */
+	public void reclaim(String cacheName, int chunkSize)
+	{
+		if (!pending.add(cacheName))
+			return;
+
+		executor.execute(() ->
+		{
+			pending.remove(cacheName);
+
+			try
+			{
+				reclaimNow(cacheName, chunkSize);
+			}
+			catch (Exception e)
+			{
+				Log.warn("Failed to reclaim retired entries of cache {}.  Entries are reclaimed on the next clear or by expiration.", cacheName, e);
+			}
+		});
+	}
+
+	/**
+	 * Removes the retired entries of a cache on the calling thread.
+	 * @param cacheName The name of the cache.
+	 * @param chunkSize The maximum number of entries removed per round trip.
+	 */
+	public void reclaimNow(String cacheName, int chunkSize)
+	{
+		reclaimKeySets(cacheName, chunkSize);
+
+		final byte[] retiredIndexesKey = toBytes(RedisCacheScripts.retiredIndexesKey(cacheName));
+
+		final Set<byte[]> retiredIndexes = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+			connection.setCommands().sMembers(retiredIndexesKey));
+
+		if (retiredIndexes == null)
+			return;
+
+		for (byte[] retiredIndex : retiredIndexes)
+		{
+			final String retiredIndexKey = new String(retiredIndex, StandardCharsets.UTF_8);
+
+			long remaining;
+			do
+			{
+				remaining = scripts.reclaimRetired(retiredIndexKey, chunkSize);
+			} while (remaining > 0);
+
+			redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sRem(retiredIndexesKey, retiredIndex));
+		}
+	}
+
+	/**
+	 * Removes the retired entries of a cache stored by {@link SetRedisCacheStore}.  Retired key sets drop themselves from the
+	 * cache's set of retired key sets once they are empty.
+	 */
+	protected void reclaimKeySets(String cacheName, int chunkSize)
+	{
+		final Set<byte[]> retiredKeySets = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+			connection.setCommands().sMembers(toBytes(SetRedisCacheStore.getRetiredKeySetsKey(cacheName))));
+
+		if (retiredKeySets == null)
+			return;
+
+		for (byte[] retiredKeySet : retiredKeySets)
+		{
+			final String retiredKey = new String(retiredKeySet, StandardCharsets.UTF_8);
+
+			long remaining;
+			do
+			{
+				remaining = SetRedisCacheStore.reclaimRetired(redisTemplate, scripts, cacheName, retiredKey, chunkSize);
+			} while (remaining > 0);
+		}
+	}
+
+	/**
+	 * Indicates if a cache holds retired entries that are not reclaimed yet.  Reads do not need this check, because the scripts
+	 * that read entries skip retired entries.
+	 * @param cacheName The name of the cache.
+	 * @return True if the cache holds retired entries.
+	 */
+	public boolean hasRetiredEntries(String cacheName)
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection ->
+			connection.setCommands().sCard(toBytes(RedisCacheScripts.retiredIndexesKey(cacheName))));
+
+		final Long retiredKeySets = redisTemplate.execute((RedisCallback<Long>)connection ->
+			connection.setCommands().sCard(toBytes(SetRedisCacheStore.getRetiredKeySetsKey(cacheName))));
+
+		return (retVal != null && retVal > 0) || (retiredKeySets != null && retiredKeySets > 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() throws Exception
+	{
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
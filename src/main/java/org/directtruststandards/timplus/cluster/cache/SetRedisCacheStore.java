@@ -0,0 +1,662 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * Storage engine for caches with collection values that keeps each node's members of a key as a native Redis set.  Members
+ * can be added to and removed from a node's entry without reading or rewriting the other members, and a single script reads
+ * the members of all nodes for a key.  Values pass through the store framed by the {@link CollectionCacheValueCodec}.  Each node's
+ * members are returned as a separate value, so reads merge the members of all nodes the same way as the other engines.
+ * <p>
+ * Keys are laid out as follows, where the cache name is a Redis Cluster hash tag:
+ * <br>
+ * timpluscacheset:{CacheName}:holders:EntryKey - Sorted set of the ids of the nodes holding an entry for a key scored by the
+ * time the node's entry expires
+ * <br>
+ * timpluscacheset:{CacheName}:members:NodeID:EntryKey - Set of a node's members of a key
+ * <br>
+ * timpluscacheset:{CacheName}:node:NodeID - Set of the keys a node holds entries for
+ * <br>
+ * timpluscacheset:{CacheName}:nodes - Set of the ids of the nodes that hold entries of the cache
+ * <br>
+ * timpluscacheset:{CacheName}:retired:NodeID:Id - Key set of a node retired by a clear
+ * <br>
+ * timpluscacheset:{CacheName}:retired - Set of the retired key sets of the cache that still hold entries
+ * <p>
+ * A node's entry is live while the node is an unexpired holder of the key and the key is a member of the node's key set.  The
+ * entry expires once the cache max lifetime has passed since the node last wrote the entry.  Node ids must not contain a ':'
+ * character.
+ * @since 1.0
+ */
+public class SetRedisCacheStore extends RedisCacheStore
+{
+	public static final String KEYSPACE = "timpluscacheset";
+
+	protected static final byte[] REPLACE = { 'r' };
+
+	protected static final byte[] ADD = { 'a' };
+
+	protected static final byte[] REMOVE = { 'd' };
+
+	protected static final byte[] ALL_NODES = new byte[0];
+
+	protected final RedisTemplate<?, ?> redisTemplate;
+
+	protected final RedisCacheScripts scripts;
+
+	protected final RetiredEntryReclaimer reclaimer;
+
+	protected final String localNodeIdString;
+
+	protected final byte[] localNodeId;
+
+	protected byte[] holdersKeyPrefix;
+
+	protected byte[] membersKeyPrefix;
+
+	protected byte[] nodeKeyPrefix;
+
+	protected byte[] nodeRegistryKey;
+
+	protected byte[] localNodeKey;
+
+	protected byte[] trackingKeyPrefix;
+
+	/**
+	 * Constructor
+	 * @param redisTemplate The template used to access Redis.
+	 * @param scripts The scripts used for atomic and bulk operations.
+	 * @param reclaimer Removes the entries retired by clearing the cache in the background.
+	 * @param name The name of the cache.
+	 * @param nodeId The id of the local cluster node.
+	 * @param maxLifetime The time in milliseconds entries remain in the cache.  Values less than 1 indicate entries never expire.
+	 * @param bulkChunkSize The maximum number of keys read by a single script by bulk operations.
+	 */
+	public SetRedisCacheStore(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, RetiredEntryReclaimer reclaimer, String name,
+			NodeID nodeId, long maxLifetime, int bulkChunkSize)
+	{
+		super(name, nodeId, maxLifetime, bulkChunkSize);
+
+		this.redisTemplate = redisTemplate;
+		this.scripts = scripts;
+		this.reclaimer = reclaimer;
+
+		this.localNodeIdString = nodeId.toString();
+		this.localNodeId = toBytes(localNodeIdString);
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setName(String name)
+	{
+		super.setName(name);
+
+		initKeys();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The members of the local node's entry are replaced by the elements of the framed value.
+	 */
+	@Override
+	public void put(String key, byte[] value, boolean singleton)
+	{
+		final byte[][] keysAndArgs = createPutArgs(key, REPLACE, CollectionCacheValueCodec.split(value), singleton);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.SET_PUT, ReturnType.INTEGER,
+				4, keysAndArgs));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putAll(Map<String, byte[]> values, boolean singleton)
+	{
+		final List<byte[][]> writes = new ArrayList<>(values.size());
+		values.forEach((key, value) -> writes.add(createPutArgs(key, REPLACE, CollectionCacheValueCodec.split(value), singleton)));
+
+		// replacing the same members again is harmless, so the writes can safely be resent if the script was not loaded
+		scripts.executePipelined(connection -> writes.forEach(keysAndArgs ->
+				scripts.execute(connection, RedisCacheScripts.SET_PUT, ReturnType.INTEGER, 4, keysAndArgs)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addMember(String key, byte[] member, boolean singleton)
+	{
+		final byte[][] keysAndArgs = createPutArgs(key, ADD, Collections.singletonList(member), singleton);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.SET_PUT, ReturnType.INTEGER,
+				4, keysAndArgs));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeMember(String key, byte[] member)
+	{
+		final byte[][] keysAndArgs = createPutArgs(key, REMOVE, Collections.singletonList(member), false);
+
+		redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.SET_PUT, ReturnType.INTEGER,
+				4, keysAndArgs));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> get(String key)
+	{
+		final byte[][] keysAndArgs = createGetArgs(ALL_NODES, Collections.singletonList(key));
+
+		final List<?> result = redisTemplate.execute((RedisCallback<List<?>>)connection -> scripts.execute(connection,
+				RedisCacheScripts.SET_GET, ReturnType.MULTI, 0, keysAndArgs));
+
+		return toValues((List<?>)result.get(0));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<List<byte[]>> getAll(List<String> keys)
+	{
+		return read(ALL_NODES, keys);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] remove(String key)
+	{
+		final List<?> result = redisTemplate.execute((RedisCallback<List<?>>)connection -> scripts.execute(connection,
+				RedisCacheScripts.SET_REMOVE, ReturnType.MULTI, 3, toBytes(getHoldersKey(name, key)),
+				toBytes(getMembersKey(name, localNodeIdString, key)), localNodeKey, localNodeId, toBytes(key),
+				toBytes(String.valueOf(System.currentTimeMillis()))));
+
+		if ((Long)result.get(0) == 0)
+			return null;
+
+		return CollectionCacheValueCodec.join(toMembers((List<?>)result.get(1)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<byte[]> values()
+	{
+		final List<byte[]> retVal = new LinkedList<>();
+
+		try (CloseableIterator<byte[]> values = scanValues())
+		{
+			values.forEachRemaining(retVal::add);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, byte[]> entries()
+	{
+		final Set<byte[]> encodedKeys = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+				connection.setCommands().sMembers(localNodeKey));
+
+		final List<String> keys = new ArrayList<>();
+		if (encodedKeys != null)
+			encodedKeys.forEach(key -> keys.add(toString(key)));
+
+		final List<List<byte[]>> values = read(localNodeId, keys);
+
+		final Map<String, byte[]> retVal = new HashMap<>();
+		for (int i = 0; i < keys.size(); ++i)
+		{
+			if (!values.get(i).isEmpty())
+				retVal.put(keys.get(i), values.get(i).get(0));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<String> keys()
+	{
+		return entries().keySet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<byte[]> scanValues()
+	{
+		final Set<byte[]> nodes = redisTemplate.execute((RedisCallback<Set<byte[]>>)connection ->
+				connection.setCommands().sMembers(nodeRegistryKey));
+
+		final List<String> nodeIds = new ArrayList<>();
+		if (nodes != null)
+			nodes.forEach(node -> nodeIds.add(toString(node)));
+
+		return scanNodes(nodeIds, entry -> entry.getValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<Entry<String, byte[]>> scanEntries()
+	{
+		return scanNodes(Collections.singletonList(localNodeIdString), entry -> entry);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CloseableIterator<String> scanKeys()
+	{
+		return scanNodes(Collections.singletonList(localNodeIdString), entry -> entry.getKey());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The count includes expired entries of the local node until the node's key set expires.
+	 */
+	@Override
+	public long size()
+	{
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sCard(localNodeKey));
+
+		return (retVal == null) ? 0 : retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsKey(String key)
+	{
+		return !get(key).isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Sets do not keep the order of their members, so values are compared as sets of members.
+	 */
+	@Override
+	public boolean containsValue(byte[] value)
+	{
+		final Set<ByteBuffer> members = toMemberSet(value);
+
+		try (CloseableIterator<byte[]> values = scanValues())
+		{
+			while (values.hasNext())
+			{
+				if (members.equals(toMemberSet(values.next())))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void purge(NodeID node)
+	{
+		purgeNode(redisTemplate, scripts, name, node, bulkChunkSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The local node's key set is retired in constant time by renaming it.  Retired entries are skipped by reads immediately
+	 * and removed in the background by the {@link RetiredEntryReclaimer}.
+	 */
+	@Override
+	public void clear()
+	{
+		final byte[] retiredKey = toBytes(getRetiredKeyPrefix(name) + localNodeIdString + ":" + UUID.randomUUID().toString());
+
+		final Long retired = redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.RETIRE_NODE,
+				ReturnType.INTEGER, 3, localNodeKey, retiredKey, toBytes(getRetiredKeySetsKey(name))));
+
+		if (retired != null && retired > 0)
+			reclaimer.reclaim(name, bulkChunkSize);
+	}
+
+	/**
+	 * Removes all entries of a node from a cache in batches.
+	 * @param redisTemplate The template used to access Redis.
+	 * @param scripts The scripts used to remove the entries.
+	 * @param cacheName The name of the cache.
+	 * @param node The node whose entries are removed.
+	 * @param batchSize The maximum number of entries removed by a single script.
+	 */
+	public static void purgeNode(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, String cacheName, NodeID node, int batchSize)
+	{
+		final byte[][] keysAndArgs = { toBytes(getNodeKey(cacheName, node.toString())), toBytes(getNodeRegistryKey(cacheName)),
+				toBytes(getHoldersKeyPrefix(cacheName)), toBytes(getMembersKeyPrefix(cacheName)), toBytes(node.toString()),
+				toBytes(String.valueOf(Math.max(batchSize, 1))) };
+
+		Long remaining;
+		do
+		{
+			remaining = redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.SET_PURGE,
+					ReturnType.INTEGER, 2, keysAndArgs));
+		} while (remaining != null && remaining > 0);
+	}
+
+	/**
+	 * Removes a batch of the entries of a retired key set of a node.  The retired key set is dropped from the cache's set of
+	 * retired key sets once it is empty.
+	 * @param redisTemplate The template used to access Redis.
+	 * @param scripts The scripts used to remove the entries.
+	 * @param cacheName The name of the cache.
+	 * @param retiredKey The retired key set.
+	 * @param chunkSize The maximum number of entries removed.
+	 * @return The number of entries that remain in the retired key set.
+	 */
+	public static long reclaimRetired(RedisTemplate<?, ?> redisTemplate, RedisCacheScripts scripts, String cacheName, String retiredKey,
+			int chunkSize)
+	{
+		final String retiredNode = retiredKey.substring(getRetiredKeyPrefix(cacheName).length());
+		final String node = retiredNode.substring(0, retiredNode.indexOf(':'));
+
+		final byte[][] keysAndArgs = { toBytes(retiredKey), toBytes(getNodeKey(cacheName, node)), toBytes(getRetiredKeySetsKey(cacheName)),
+				toBytes(getHoldersKeyPrefix(cacheName)), toBytes(getMembersKeyPrefix(cacheName)), toBytes(node),
+				toBytes(CacheEvictionTracker.getTrackingKeyPrefix(cacheName) + node), toBytes(String.valueOf(Math.max(chunkSize, 1))) };
+
+		final Long retVal = redisTemplate.execute((RedisCallback<Long>)connection -> scripts.execute(connection, RedisCacheScripts.SET_RECLAIM,
+				ReturnType.INTEGER, 3, keysAndArgs));
+
+		return (retVal == null) ? 0 : retVal;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * An entry is live while the local node is an unexpired holder of its key and the key is a member of the local node's key set.
+	 */
+	@Override
+	public byte[][] getLivenessCheck()
+	{
+		return new byte[][] { { 's' }, holdersKeyPrefix, localNodeId, localNodeKey };
+	}
+
+	/**
+	 * Gets the name of the sorted set of the nodes holding an entry for a key.
+	 * @param cacheName The name of the cache.
+	 * @param key The key of the entry.
+	 * @return The name of the sorted set of the nodes holding an entry for the key.
+	 */
+	public static String getHoldersKey(String cacheName, String key)
+	{
+		return getHoldersKeyPrefix(cacheName) + key;
+	}
+
+	/**
+	 * Gets the name of the set of a node's members of a key.
+	 * @param cacheName The name of the cache.
+	 * @param node The id of the node.
+	 * @param key The key of the entry.
+	 * @return The name of the set of the node's members of the key.
+	 */
+	public static String getMembersKey(String cacheName, String node, String key)
+	{
+		return getMembersKeyPrefix(cacheName) + node + ":" + key;
+	}
+
+	/**
+	 * Gets the name of the set of the keys a node holds entries for.
+	 * @param cacheName The name of the cache.
+	 * @param node The id of the node.
+	 * @return The name of the set of the keys the node holds entries for.
+	 */
+	public static String getNodeKey(String cacheName, String node)
+	{
+		return getNodeKeyPrefix(cacheName) + node;
+	}
+
+	/**
+	 * Gets the name of the set of nodes holding entries of a cache.
+	 * @param cacheName The name of the cache.
+	 * @return The name of the set of nodes holding entries of the cache.
+	 */
+	public static String getNodeRegistryKey(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:nodes";
+	}
+
+	/**
+	 * Gets the name of the set of the retired key sets of a cache that still hold entries.
+	 * @param cacheName The name of the cache.
+	 * @return The name of the set of the retired key sets of the cache.
+	 */
+	public static String getRetiredKeySetsKey(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:retired";
+	}
+
+	protected static String getHoldersKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:holders:";
+	}
+
+	protected static String getMembersKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:members:";
+	}
+
+	protected static String getNodeKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:node:";
+	}
+
+	protected static String getRetiredKeyPrefix(String cacheName)
+	{
+		return KEYSPACE + ":{" + cacheName + "}:retired:";
+	}
+
+	protected void initKeys()
+	{
+		holdersKeyPrefix = toBytes(getHoldersKeyPrefix(name));
+		membersKeyPrefix = toBytes(getMembersKeyPrefix(name));
+		nodeKeyPrefix = toBytes(getNodeKeyPrefix(name));
+		nodeRegistryKey = toBytes(getNodeRegistryKey(name));
+		localNodeKey = toBytes(getNodeKey(name, localNodeIdString));
+		trackingKeyPrefix = toBytes(CacheEvictionTracker.getTrackingKeyPrefix(name));
+	}
+
+	/**
+	 * Creates the keys and arguments of the set put script.
+	 */
+	protected byte[][] createPutArgs(String key, byte[] mode, List<byte[]> members, boolean singleton)
+	{
+		final byte[][] retVal = new byte[13 + members.size()][];
+
+		retVal[0] = toBytes(getHoldersKey(name, key));
+		retVal[1] = toBytes(getMembersKey(name, localNodeIdString, key));
+		retVal[2] = localNodeKey;
+		retVal[3] = nodeRegistryKey;
+		retVal[4] = localNodeId;
+		retVal[5] = toBytes(key);
+		retVal[6] = toBytes(String.valueOf(maxLifetime));
+		retVal[7] = toBytes(singleton ? "1" : "0");
+		retVal[8] = membersKeyPrefix;
+		retVal[9] = nodeKeyPrefix;
+		retVal[10] = mode;
+		retVal[11] = toBytes(String.valueOf(System.currentTimeMillis()));
+		retVal[12] = trackingKeyPrefix;
+
+		for (int i = 0; i < members.size(); ++i)
+			retVal[13 + i] = members.get(i);
+
+		return retVal;
+	}
+
+	/**
+	 * Creates the arguments of the set get script.
+	 */
+	protected byte[][] createGetArgs(byte[] node, List<String> keys)
+	{
+		final byte[][] retVal = new byte[5 + keys.size()][];
+
+		retVal[0] = holdersKeyPrefix;
+		retVal[1] = membersKeyPrefix;
+		retVal[2] = toBytes(String.valueOf(System.currentTimeMillis()));
+		retVal[3] = node;
+		retVal[4] = nodeKeyPrefix;
+
+		for (int i = 0; i < keys.size(); ++i)
+			retVal[5 + i] = toBytes(keys.get(i));
+
+		return retVal;
+	}
+
+	/**
+	 * Reads the members of the entries of one or all nodes for multiple keys in chunks of the bulk chunk size sent in a single pipeline.
+	 */
+	protected List<List<byte[]>> read(byte[] node, List<String> keys)
+	{
+		final List<List<byte[]>> retVal = new ArrayList<>(keys.size());
+
+		if (keys.isEmpty())
+			return retVal;
+
+		final int size = Math.max(bulkChunkSize, 1);
+
+		final List<Object> results = scripts.executePipelined(connection ->
+		{
+			for (int start = 0; start < keys.size(); start += size)
+				scripts.execute(connection, RedisCacheScripts.SET_GET, ReturnType.MULTI, 0,
+						createGetArgs(node, keys.subList(start, Math.min(start + size, keys.size()))));
+		});
+
+		for (Object chunkResult : results)
+		{
+			for (Object keyResult : (List<?>)chunkResult)
+				retVal.add(toValues((List<?>)keyResult));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Lazily iterates the entries of nodes one SSCAN cursor of a node's key set at a time.
+	 */
+	protected <T> CloseableIterator<T> scanNodes(List<String> nodeIds, Function<Entry<String, byte[]>, T> mapper)
+	{
+		final ScanOptions options = ScanOptions.scanOptions().count(bulkChunkSize).build();
+
+		final List<Supplier<Cursor<Entry<String, String>>>> sources = new ArrayList<>(nodeIds.size());
+		nodeIds.forEach(node ->
+		{
+			final byte[] nodeKey = toBytes(getNodeKey(name, node));
+
+			sources.add(() -> new ConvertingCursor<byte[], Entry<String, String>>(redisTemplate.executeWithStickyConnection(
+					(RedisCallback<Cursor<byte[]>>)connection -> connection.setCommands().sScan(nodeKey, options)),
+					key -> new AbstractMap.SimpleImmutableEntry<>(node, toString(key))));
+		});
+
+		// a batch never spans cursors, so all keys of a batch belong to the same node
+		return new StoreCursor<>(sources, bulkChunkSize, batch ->
+		{
+			final List<String> keys = new ArrayList<>(batch.size());
+			batch.forEach(entry -> keys.add(entry.getValue()));
+
+			final List<List<byte[]>> values = read(toBytes(batch.get(0).getKey()), keys);
+
+			final List<T> retVal = new ArrayList<>(batch.size());
+			for (int i = 0; i < keys.size(); ++i)
+			{
+				if (!values.get(i).isEmpty())
+					retVal.add(mapper.apply(new AbstractMap.SimpleImmutableEntry<>(keys.get(i), values.get(i).get(0))));
+			}
+
+			return retVal;
+		});
+	}
+
+	/**
+	 * Frames the members of each node's entry of a key returned by the set get script.
+	 */
+	protected static List<byte[]> toValues(List<?> nodeMembers)
+	{
+		final List<byte[]> retVal = new ArrayList<>(nodeMembers.size());
+		for (Object members : nodeMembers)
+			retVal.add(CollectionCacheValueCodec.join(toMembers((List<?>)members)));
+
+		return retVal;
+	}
+
+	protected static List<byte[]> toMembers(List<?> encoded)
+	{
+		final List<byte[]> retVal = new ArrayList<>(encoded.size());
+		for (Object member : encoded)
+			retVal.add((byte[])member);
+
+		return retVal;
+	}
+
+	protected static Set<ByteBuffer> toMemberSet(byte[] value)
+	{
+		final Set<ByteBuffer> retVal = new HashSet<>();
+		CollectionCacheValueCodec.split(value).forEach(member -> retVal.add(ByteBuffer.wrap(member)));
+
+		return retVal;
+	}
+
+	protected static byte[] toBytes(String value)
+	{
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	protected static String toString(byte[] value)
+	{
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,126 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.util.CloseableIterator;
+
+/**
+ * Lazily iterates the results of one or more Redis SCAN cursors.  Scanned elements are collected into batches and each batch
+ * is turned into results by a loader, typically a single pipeline that reads the entries of the scanned ids.  Cursors are
+ * opened only when the previous cursor is exhausted, so at most one batch of results is held in memory.
+ * <p>
+ * The iterator closes itself once all cursors are exhausted.  Callers that stop early must close the iterator to release
+ * the connection held by the open cursor.
+ * @param <S> The type of the scanned elements.
+ * @param <T> The type of the results.
+ * @since 1.0
+ */
+public class StoreCursor<S, T> implements CloseableIterator<T>
+{
+	protected final Iterator<Supplier<Cursor<S>>> sources;
+
+	protected final int batchSize;
+
+	protected final Function<List<S>, List<T>> loader;
+
+	protected Cursor<S> cursor;
+
+	protected Iterator<T> batch;
+
+	protected boolean closed;
+
+	/**
+	 * Constructor
+	 * @param sources Opens the cursors to iterate in order.
+	 * @param batchSize The maximum number of scanned elements passed to the loader at once.
+	 * @param loader Turns a batch of scanned elements into results.  Elements without a result, such as ids of expired entries,
+	 * are simply left out.
+	 */
+	public StoreCursor(List<Supplier<Cursor<S>>> sources, int batchSize, Function<List<S>, List<T>> loader)
+	{
+		this.sources = sources.iterator();
+		this.batchSize = Math.max(batchSize, 1);
+		this.loader = loader;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		while (!closed && (batch == null || !batch.hasNext()))
+			batch = nextBatch();
+
+		return !closed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		return batch.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		batch = null;
+
+		closeCursor();
+	}
+
+	protected Iterator<T> nextBatch()
+	{
+		while (cursor == null || !cursor.hasNext())
+		{
+			closeCursor();
+
+			if (!sources.hasNext())
+			{
+				close();
+				return null;
+			}
+
+			cursor = sources.next().get();
+		}
+
+		final List<S> scanned = new ArrayList<>(batchSize);
+		while (scanned.size() < batchSize && cursor.hasNext())
+			scanned.add(cursor.next());
+
+		return loader.apply(scanned).iterator();
+	}
+
+	protected void closeCursor()
+	{
+		if (cursor == null)
+			return;
+
+		try
+		{
+			cursor.close();
+		}
+		catch (Exception e)
+		{
+			// nothing to do... the connection is released either way
+		}
+
+		cursor = null;
+	}
+}
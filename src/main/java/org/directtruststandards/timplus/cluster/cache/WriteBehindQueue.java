@@ -0,0 +1,171 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of the local node's pending writes to a cache in write behind mode.  Writes return as soon as they are queued,
+ * and writes to a key that is already queued replace the queued value, so a key written many times between flushes costs a
+ * single Redis write.  The queued writes are flushed as a single pipelined batch once the queue holds the batch size, on the
+ * flush interval of the {@link CacheWriteBehindFlusher}, and whenever the cache needs to read its own writes.
+ * <p>
+ * Flushes run one at a time and each flush takes all queued writes, so the writes of a key reach Redis in the order they
+ * were made.  When the queue is full, the writing thread flushes the queue itself before queueing its write, which slows
+ * writers down to the rate Redis accepts the writes.  A failed batch is queued again behind any newer writes of its keys.
+ * @since 1.0
+ */
+public class WriteBehindQueue
+{
+	protected final String cacheName;
+
+	protected final int batchSize;
+
+	protected final int capacity;
+
+	protected final Consumer<Map<String, byte[]>> writer;
+
+	protected final CacheWriteBehindFlusher flusher;
+
+	protected final Object lock = new Object();
+
+	protected final Object flushLock = new Object();
+
+	protected final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	protected Map<String, byte[]> pending = new LinkedHashMap<>();
+
+	protected volatile Map<String, byte[]> inFlight = Collections.emptyMap();
+
+	/**
+	 * Constructor
+	 * @param cacheName The name of the cache.
+	 * @param batchSize The number of queued writes that triggers a flush.
+	 * @param capacity The maximum number of queued writes.
+	 * @param writer Writes a batch of encoded values keyed by entry key to Redis.
+	 * @param flusher The flusher that runs triggered and periodic flushes.
+	 */
+	public WriteBehindQueue(String cacheName, int batchSize, int capacity, Consumer<Map<String, byte[]>> writer, CacheWriteBehindFlusher flusher)
+	{
+		this.cacheName = cacheName;
+		this.capacity = Math.max(capacity, 1);
+		this.batchSize = Math.min(Math.max(batchSize, 1), this.capacity);
+		this.writer = writer;
+		this.flusher = flusher;
+	}
+
+	/**
+	 * Queues a write of the local node's entry for a key.  Blocks while the caller flushes the queue if the queue is full.
+	 * @param key The key of the entry.
+	 * @param value The encoded value or null.
+	 */
+	public void put(String key, byte[] value)
+	{
+		while (true)
+		{
+			int size = -1;
+			synchronized (lock)
+			{
+				if (pending.size() < capacity || pending.containsKey(key))
+				{
+					pending.put(key, value);
+					size = pending.size();
+				}
+			}
+
+			if (size < 0)
+			{
+				flush();
+				continue;
+			}
+
+			if (size >= batchSize && flushRequested.compareAndSet(false, true))
+				flusher.requestFlush(this);
+
+			return;
+		}
+	}
+
+	/**
+	 * Indicates if a write of a key is queued or being flushed.
+	 * @param key The key of the entry.
+	 * @return True if a write of the key has not reached Redis yet.
+	 */
+	public boolean isPending(String key)
+	{
+		if (inFlight.containsKey(key))
+			return true;
+
+		synchronized (lock)
+		{
+			return pending.containsKey(key);
+		}
+	}
+
+	/**
+	 * Gets the number of queued writes.
+	 * @return The number of queued writes.  Writes being flushed are not included.
+	 */
+	public int size()
+	{
+		synchronized (lock)
+		{
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Writes all queued writes to Redis on the calling thread.  Waits for a flush running on another thread to complete first.
+	 * @throws RuntimeException Thrown if the batch could not be written.  The batch is queued again.
+	 */
+	public void flush()
+	{
+		synchronized (flushLock)
+		{
+			flushRequested.set(false);
+
+			final Map<String, byte[]> batch;
+			synchronized (lock)
+			{
+				if (pending.isEmpty())
+					return;
+
+				batch = pending;
+				pending = new LinkedHashMap<>();
+				inFlight = batch;
+			}
+
+			try
+			{
+				writer.accept(batch);
+			}
+			catch (RuntimeException e)
+			{
+				synchronized (lock)
+				{
+					// writes queued while the batch was in flight are newer and win
+					batch.putAll(pending);
+					pending = batch;
+				}
+
+				throw e;
+			}
+			finally
+			{
+				inFlight = Collections.emptyMap();
+			}
+		}
+	}
+
+	/**
+	 * Flushes the queue if a write of a key has not reached Redis yet.
+	 * @param key The key of the entry.
+	 */
+	public void flushIfPending(String key)
+	{
+		if (isPending(key))
+			flush();
+	}
+}
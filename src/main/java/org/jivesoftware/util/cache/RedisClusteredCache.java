@@ -2,11 +2,6 @@ package org.jivesoftware.util.cache;
 
 import static org.junit.Assume.assumeFalse;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.Externalizable;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.AbstractMap;
@@ -14,38 +9,73 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.commons.codec.binary.Base64;
+import org.directtruststandards.timplus.cluster.cache.CacheAsyncExecutor;
+import org.directtruststandards.timplus.cluster.cache.CacheEvictionTracker;
+import org.directtruststandards.timplus.cluster.cache.CacheEvictor;
+import org.directtruststandards.timplus.cluster.cache.CacheKeyCodec;
+import org.directtruststandards.timplus.cluster.cache.CacheKeyCodecRegistry;
+import org.directtruststandards.timplus.cluster.cache.CacheMetrics;
+import org.directtruststandards.timplus.cluster.cache.CacheOperation;
+import org.directtruststandards.timplus.cluster.cache.CacheStatistics;
+import org.directtruststandards.timplus.cluster.cache.CacheValueCodec;
+import org.directtruststandards.timplus.cluster.cache.CacheValueCodecRegistry;
+import org.directtruststandards.timplus.cluster.cache.CacheWriteBehindFlusher;
 import org.directtruststandards.timplus.cluster.cache.CachingConfiguration;
-import org.directtruststandards.timplus.cluster.cache.RedisCacheEntry;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.CacheSettings;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.EvictionPolicy;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.NearCacheInvalidation;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.StorageEngine;
+import org.directtruststandards.timplus.cluster.cache.CollectionCacheValueCodec;
+import org.directtruststandards.timplus.cluster.cache.HashRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.NearCache;
+import org.directtruststandards.timplus.cluster.cache.NearCacheClientTracking;
+import org.directtruststandards.timplus.cluster.cache.NearCacheInvalidationBus;
+import org.directtruststandards.timplus.cluster.cache.NodePurgeCoordinator;
 import org.directtruststandards.timplus.cluster.cache.RedisCacheRepository;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheScripts;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.RepositoryRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.RetiredEntryReclaimer;
+import org.directtruststandards.timplus.cluster.cache.SetRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.WriteBehindQueue;
 import org.jivesoftware.openfire.cluster.NodeID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.redis.core.ReactiveListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveSetOperations;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.util.CloseableIterator;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * A Redis back clustered cache.  Entries added by the local node cluster member are added
- * to a local cache and to Redis.  Lookups attempt to use the local cache first and fall back
- * to redis in case of a local cache miss.
+ * A Redis back clustered cache.  Entries added by the local node cluster member are written
+ * to Redis.  If a near cache is enabled for the cache, lookups attempt to use the bounded in-process 
+ * near cache first and fall back to redis in case of a near cache miss.  Writes invalidate the affected 
+ * near cache entries on all cluster nodes using the {@link NearCacheInvalidationBus}, or alternatively
+ * rely on Redis server assisted client tracking to push invalidations (see {@link NearCacheClientTracking}).
  * @author Greg Meyer
  * @since 1.0
  *
@@ -68,16 +98,54 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
     
     protected RedisCacheRepository remotelyCached;
     
+    protected RedisTemplate<?, ?> redisTemplate;
+    
+    protected RedisCacheScripts scripts;
+    
+    protected RedisCacheStore store;
+    
     protected String nodeCacheName;
     
     protected ObjectMapper objectMapper;
     
     protected Class<K> keyType; 
     
+    protected TypeReference<?> keyTypeReference;
+    
+    protected CacheKeyCodec keyCodec;
+    
     protected Type valueType; 
     
+    protected TypeReference<?> valueTypeReference;
+    
+    protected CacheValueCodec valueCodec;
+    
     protected boolean nodePurgable;
     
+    protected CacheSettings settings;
+    
+    protected NearCache<V> nearCache;
+    
+    protected NearCacheInvalidationBus invalidationBus;
+    
+    protected NearCacheClientTracking clientTracking;
+    
+    protected final CacheStatistics statistics = new CacheStatistics();
+    
+    protected CacheMetrics metrics;
+    
+    protected NodePurgeCoordinator purgeCoordinator;
+    
+    protected NodePurgeCoordinator.Registration purgeRegistration;
+    
+    protected CacheEvictionTracker evictionTracker;
+    
+    protected CacheAsyncExecutor asyncExecutor;
+    
+    protected final ConcurrentMap<String, CompletableFuture<?>> pendingWrites = new ConcurrentHashMap<>();
+    
+    protected WriteBehindQueue writeBehind;
+    
     public RedisClusteredCache(final String name, final long maxSize, final long maxLifetime, final NodeID nodeId, boolean nodePurgable)
     {
     	this.name = name;
@@ -93,14 +161,89 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 
 		remotelyCached = ctx.getBean(RedisCacheRepository.class);
 		
+		redisTemplate = ctx.getBean("redisTemplate", RedisTemplate.class);
+		
+		scripts = ctx.getBean(RedisCacheScripts.class);
+		
 		objectMapper = ctx.getBean(ObjectMapper.class);		
 		
-		nodeCacheName = name + nodeId.toString();
-
+		settings = ctx.getBean(ClusterCacheProperties.class).getCacheSettings(name);
+		
 		// Needed to get full type information for performing deserialization of generics
         final Type superClass = getClass().getGenericSuperclass();
         
         valueType =  ((ParameterizedType) superClass).getActualTypeArguments()[1];
+        
+        valueTypeReference = forType(valueType);
+        
+        keyTypeReference = forType(((ParameterizedType) superClass).getActualTypeArguments()[0]);
+        
+		if (settings.getStorageEngine() == StorageEngine.SET && !isCollectionValued())
+		{
+			Log.warn("The set storage engine requires collection values.  Cache {} falls back to the repository storage engine.", name);
+			settings.setStorageEngine(StorageEngine.REPOSITORY);
+		}
+		
+		if (settings.getStorageEngine() == StorageEngine.HASH)
+			store = new HashRedisCacheStore(redisTemplate, scripts, name, nodeId, maxLifetime, settings.getBulkChunkSize());
+		else if (settings.getStorageEngine() == StorageEngine.SET)
+			store = new SetRedisCacheStore(redisTemplate, scripts, ctx.getBean(RetiredEntryReclaimer.class), name, nodeId, maxLifetime, 
+					settings.getBulkChunkSize());
+		else
+			store = new RepositoryRedisCacheStore(remotelyCached, redisTemplate, scripts, ctx.getBean(RetiredEntryReclaimer.class), name, nodeId, 
+					maxLifetime, settings.getBulkChunkSize(), settings.getValueIndexEnabled());
+		
+		if (settings.getNearCacheEnabled())
+		{
+			nearCache = new NearCache<>(getNearCacheMaxEntries(), getNearCacheMaxLifetime());
+			
+			invalidationBus = ctx.getBean(NearCacheInvalidationBus.class);
+			invalidationBus.register(name, nearCache);
+			
+			if (settings.getNearCacheInvalidation() == NearCacheInvalidation.TRACKING && settings.getStorageEngine() != StorageEngine.REPOSITORY)
+			{
+				// tracking maps modified entity index keys back to entry keys... node hashes can't be mapped to a single entry
+				Log.warn("Near cache client tracking requires the repository storage engine.  Cache {} falls back to pub/sub invalidation.", name);
+			}
+			else if (settings.getNearCacheInvalidation() == NearCacheInvalidation.TRACKING)
+			{
+				clientTracking = ctx.getBean(NearCacheClientTracking.class);
+				
+				// fall back to pub/sub invalidation if Redis can't track keys for us
+				if (!clientTracking.track(name))
+					clientTracking = null;
+			}
+		}
+		
+		nodeCacheName = name + nodeId.toString();
+
+        valueCodec = createValueCodec();
+        
+        keyCodec = createKeyCodec();
+        
+        metrics = new CacheMetrics(settings.getMetricsEnabled());
+        metrics.register(name, statistics);
+        
+        asyncExecutor = ctx.getBean(CacheAsyncExecutor.class);
+        
+        if (settings.getWriteBehindEnabled())
+        {
+        	final CacheWriteBehindFlusher flusher = ctx.getBean(CacheWriteBehindFlusher.class);
+        	
+        	writeBehind = new WriteBehindQueue(name, settings.getWriteBehindBatchSize(), settings.getWriteBehindQueueCapacity(), this::writeBatch, flusher);
+        	flusher.register(writeBehind);
+        }
+        
+        purgeCoordinator = ctx.getBean(NodePurgeCoordinator.class);
+        registerForCoordinatedPurge();
+        
+        // accesses are recorded in memory and sent along with evictions by a background pass
+        if (settings.getEvictionPolicy() != EvictionPolicy.NONE)
+        {
+        	evictionTracker = new CacheEvictionTracker(redisTemplate, scripts, settings.getEvictionPolicy(), name, nodeId, maxCacheSize, 
+        			maxLifetime, settings.getBulkChunkSize(), this::evict, store::getLivenessCheck);
+        	ctx.getBean(CacheEvictor.class).register(evictionTracker);
+        }
     }
     
     /**
@@ -113,6 +256,26 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
     	return false;
     }
     
+    /**
+     * Gets the maximum number of entries held in the near cache.  This is the configured near cache max
+     * entries further bounded by the cache max size if the cache max size is positive.
+     * @return The maximum number of entries held in the near cache.
+     */
+    protected long getNearCacheMaxEntries()
+    {
+    	return (maxCacheSize > 0) ? Math.min(maxCacheSize, settings.getNearCacheMaxEntries()) : settings.getNearCacheMaxEntries();
+    }
+    
+    /**
+     * Gets the maximum time in milliseconds an entry is held in the near cache.  This is the configured near cache max
+     * lifetime further bounded by the cache max lifetime if the cache max lifetime is positive.
+     * @return The maximum time in milliseconds an entry is held in the near cache.
+     */
+    protected long getNearCacheMaxLifetime()
+    {
+    	return (maxLifetime > 0) ? Math.min(maxLifetime, settings.getNearCacheMaxLifetime()) : settings.getNearCacheMaxLifetime();
+    }
+    
 	@Override
 	public String getName() 
 	{
@@ -122,10 +285,28 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 	@Override
 	public void setName(String name) 
 	{
+		if (nearCache != null)
+		{
+			invalidationBus.unregister(this.name, nearCache);
+			invalidationBus.register(name, nearCache);
+			nearCache.invalidateAll();
+			
+			if (clientTracking != null)
+				clientTracking.track(name);
+		}
+		
 		this.name = name;
 		
 		this.nodeCacheName = name + nodeId.toString();
 		
+		store.setName(name);
+		
+		if (evictionTracker != null)
+			evictionTracker.setCacheName(name);
+		
+		metrics.register(name, statistics);
+		
+		registerForCoordinatedPurge();
 	}
 
 	@Override
@@ -139,6 +320,12 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 	public void setMaxCacheSize(int maxSize) 
 	{
 		this.maxCacheSize = maxSize;
+		
+		if (evictionTracker != null)
+			evictionTracker.setMaxEntries(maxSize);
+		
+		if (nearCache != null)
+			nearCache.setBounds(getNearCacheMaxEntries(), getNearCacheMaxLifetime());
 	}
 
 	@Override
@@ -151,153 +338,402 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 	public void setMaxLifetime(long maxLifetime) 
 	{
 		this.maxLifetime = maxLifetime;
+		
+		store.setMaxLifetime(maxLifetime);
+		
+		if (evictionTracker != null)
+			evictionTracker.setMaxLifetime(maxLifetime);
+		
+		if (nearCache != null)
+			nearCache.setBounds(getNearCacheMaxEntries(), getNearCacheMaxLifetime());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The size is estimated from the number of the local node's entries and the average size of the encoded values 
+	 * observed by this cache.
+	 */
 	@Override
 	public int getCacheSize() 
 	{
-		return -1;
+		return (int)Math.min(Integer.MAX_VALUE, statistics.estimateFootprint(store.size()));
 	}
 
 	@Override
 	public long getCacheHits() 
 	{
-		return 0;
+		return statistics.getHits();
 	}
 
 	@Override
 	public long getCacheMisses() 
 	{
-		return 0;
+		return statistics.getMisses();
+	}
+	
+	/**
+	 * Gets the usage counters of this cache.
+	 * @return The usage counters of this cache.
+	 */
+	public CacheStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	/**
+	 * Gets the per operation latency and Redis usage metrics of this cache.
+	 * @return The metrics of this cache.
+	 */
+	public CacheMetrics getMetrics()
+	{
+		return metrics;
+	}
+	
+	/**
+	 * Releases the resources this cache instance holds in the local JVM.  The entries of the cache in Redis are not touched.
+	 * Called when the cache is destroyed.
+	 */
+	public void destroy()
+	{
+		metrics.unregister();
 	}
 
 	@Override
 	public Collection<V> values() 
 	{
-		final Collection<V> retVal = new LinkedList<>();
-		
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, name, (String)null, (String)null, maxLifetime);
+		flushPendingWrites();
 		
-		final Pageable pageParam = PageRequest.of(0, 500);
-		Page<RedisCacheEntry> page = null;
-		do
-		{			
-			if (page == null)
-				page = remotelyCached.findAll(Example.of(probe), pageParam);
-			else
-				page = remotelyCached.findAll(Example.of(probe), page.nextPageable());
-				
-			page.toList().forEach(val -> retVal.add(deserializedRedisCacheEntryValue(val.getValue())));
-		} while(page.hasNext());		
-		
-		return Collections.unmodifiableCollection(retVal);
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.VALUES))
+		{
+			final Collection<V> retVal = new LinkedList<>();
+			
+			store.values().forEach(val -> retVal.add(deserializedRedisCacheEntryValue(val)));
+			
+			return Collections.unmodifiableCollection(retVal);
+		}
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public Set<Entry<K, V>> entrySet() 
 	{
-		final Set<Entry<K, V>> retVal = new HashSet<>();
-
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, (String)null, name + nodeId.toString(), (String)null, maxLifetime);
+		flushPendingWrites();
 		
-		final Pageable pageParam = PageRequest.of(0, 500);
-		Page<RedisCacheEntry> page = null;
-		do
-		{			
-			if (page == null)
-				page = remotelyCached.findAll(Example.of(probe), pageParam);
-			else
-				page = remotelyCached.findAll(Example.of(probe), page.nextPageable());
-				
-			page.toList().forEach(val -> retVal.add(new AbstractMap.SimpleEntry(val.getClusteredCacheKey().substring(name.length()), 
-					deserializedRedisCacheEntryValue(val.getValue()))));
-		} while(page.hasNext());	
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.ENTRY_SET))
+		{
+			final Set<Entry<K, V>> retVal = new HashSet<>();
 	
-		return Collections.unmodifiableSet(retVal);
+			store.entries().forEach((key, val) -> retVal.add(new AbstractMap.SimpleEntry(decodeKey(key), deserializedRedisCacheEntryValue(val))));
+		
+			return Collections.unmodifiableSet(retVal);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Set<K> keySet() 
 	{
-		final Set<K> retVal = new HashSet<>();
+		flushPendingWrites();
 		
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, (String)null, name + nodeId.toString(), (String)null, maxLifetime);
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.KEY_SET))
+		{
+			final Set<K> retVal = new HashSet<>();
+			
+			store.keys().forEach(key -> retVal.add(decodeKey(key)));
+			
+			return Collections.unmodifiableSet(retVal);
+		}
+	}
+
+	/**
+	 * Lazily streams the values of all cluster nodes' entries.  Unlike {@link #values()}, entries are scanned with a cursor, read
+	 * from Redis in batches, and deserialized as the stream is consumed, so large caches can be walked without holding all
+	 * values in memory.  Entries written or removed while the stream is consumed may or may not be returned.
+	 * <p>
+	 * The stream holds a Redis connection until it is consumed completely or closed, so streams that may not be consumed
+	 * completely should be used in a try-with-resources block.
+	 * @return A stream of the values.
+	 */
+	public Stream<V> valueStream()
+	{
+		flushPendingWrites();
 		
-		final Pageable pageParam = PageRequest.of(0, 500);
-		Page<RedisCacheEntry> page = null;
-		do
-		{			
-			if (page == null)
-				page = remotelyCached.findAll(Example.of(probe), pageParam);
-			else
-				page = remotelyCached.findAll(Example.of(probe), page.nextPageable());
-				
-			page.toList().forEach(val -> retVal.add((K)val.getClusteredCacheKey().substring(name.length())));
-		} while(page.hasNext());		
+		return stream(store.scanValues(), this::deserializedRedisCacheEntryValue);
+	}
+
+	/**
+	 * Lazily streams the local node's entries.  See {@link #valueStream()}.
+	 * @return A stream of the entries.
+	 */
+	public Stream<Entry<K, V>> entryStream()
+	{
+		flushPendingWrites();
+		
+		return stream(store.scanEntries(), entry -> new AbstractMap.SimpleImmutableEntry<>(decodeKey(entry.getKey()), deserializedRedisCacheEntryValue(entry.getValue())));
+	}
+
+	/**
+	 * Lazily streams the keys of the local node's entries.  See {@link #valueStream()}.
+	 * @return A stream of the keys.
+	 */
+	public Stream<K> keyStream()
+	{
+		flushPendingWrites();
 		
-		return Collections.unmodifiableSet(retVal);
+		return stream(store.scanKeys(), this::decodeKey);
+	}
+
+	/**
+	 * Wraps a store iterator in a sequential stream that closes the iterator when the stream is closed.
+	 */
+	protected <S, T> Stream<T> stream(CloseableIterator<S> iterator, Function<S, T> mapper)
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+				.onClose(iterator::close).map(mapper);
 	}
 
 	@Override
 	public int size() 
 	{
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, (String)null, name + nodeId.toString(), (String)null, maxLifetime);
-		return (int)remotelyCached.count(Example.of(probe));
+		flushPendingWrites();
+		
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.SIZE))
+		{
+			return (int)store.size();
+		}
 	}
 
 	@Override
 	public boolean isEmpty() 
 	{
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, (String)null, name + nodeId.toString(), (String)null, maxLifetime);
+		flushPendingWrites();
 		
-		return remotelyCached.count(Example.of(probe)) == 0;
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.SIZE))
+		{
+			return store.isEmpty();
+		}
 	}
 
 	@Override
 	public boolean containsKey(Object key) 
 	{
-		final RedisCacheEntry probe = new RedisCacheEntry((String)null, name + key, (String)null, (String)null, (String)null, maxLifetime);
+		final String storeKey = encodeKey(key);
 		
-		return remotelyCached.count(Example.of(probe)) != 0;
+		awaitPendingWrite(storeKey);
+		
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.CONTAINS_KEY))
+		{
+			return store.containsKey(storeKey);
+		}
 	}
 
 	@Override
 	public boolean containsValue(Object value) 
 	{
-		RedisCacheEntry probe = null;
-		try
-		{
-			final String mappedValue = objectMapper.writeValueAsString(value);
+		flushPendingWrites();
 		
-			probe = new RedisCacheEntry((String)null, (String)null, name, (String)null, mappedValue, maxLifetime);
-		}
-		catch (Exception e)
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.CONTAINS_VALUE))
 		{
-			probe = new RedisCacheEntry((String)null, (String)null, name, (String)null, null, maxLifetime);
+			byte[] mappedValue = null;
+			try
+			{
+				mappedValue = valueCodec.encode(value);
+			}
+			catch (Exception e)
+			{
+				mappedValue = null;
+			}
+			
+			return store.containsValue(mappedValue);
 		}
-		
-		return (int)remotelyCached.count(Example.of(probe)) != 0;
 	}
 
-	@SuppressWarnings("rawtypes")
 	@Override
 	public V get(Object key) 
 	{
-		final Collection<RedisCacheEntry> entries = remotelyCached.findByClusteredCacheKey(name + key);
+		final String storeKey = encodeKey(key);
+		
+		awaitPendingWrite(storeKey);
 		
-		if (entries.size() == 0)
+		return getEntry(storeKey);
+	}
+	
+	/**
+	 * Gets the value of a key without blocking the calling thread.  The lookup runs after all asynchronous writes of the local
+	 * node to the key that were made before the call.  See {@link CacheAsyncExecutor}.
+	 * @param key The key of the entry.
+	 * @return A future completed with the value of the entry or null if no node holds an entry for the key.
+	 */
+	public CompletableFuture<V> getAsync(K key)
+	{
+		final String storeKey = encodeKey(key);
+		
+		return asyncExecutor.submit(name, storeKey, () -> getEntry(storeKey));
+	}
+	
+	/**
+	 * Gets the value of a key and records the read for eviction.
+	 * @param storeKey The encoded key of the entry.
+	 * @return The value of the entry or null if no node holds an entry for the key.
+	 */
+	protected V getEntry(String storeKey)
+	{
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.GET))
+		{
+			final V retVal = getLocalOrRemote(storeKey);
+			
+			if (evictionTracker != null && retVal != null)
+				evictionTracker.recordRead(storeKey);
+			
+			return retVal;
+		}
+	}
+	
+	/**
+	 * Gets the value of a key from the near cache if enabled and otherwise from Redis.
+	 * @param storeKey The encoded key of the entry.
+	 * @return The value of the entry or null if no node holds an entry for the key.
+	 */
+	protected V getLocalOrRemote(String storeKey)
+	{
+		if (nearCache == null)
+			return recordRemoteLookup(getRemote(storeKey));
+		
+		V retVal = nearCache.get(storeKey);
+		if (retVal != null)
+		{
+			statistics.recordLocalHit();
+			return retVal;
+		}
+		
+		final long epoch = nearCache.epoch();
+		
+		retVal = recordRemoteLookup(getRemote(storeKey));
+		
+		nearCache.put(storeKey, retVal, epoch);
+		
+		return retVal;
+	}
+	
+	/**
+	 * Gets the values of multiple keys.  Keys held in the near cache are served locally and all remaining keys are read 
+	 * from Redis in a single pipeline.  Values are merged across cluster nodes the same way as {@link #get(Object)}.
+	 * @param keys The keys to look up.
+	 * @return A map of each key that has a value to its value.  Keys without a value are not included.
+	 */
+	public Map<K, V> getAll(Collection<K> keys)
+	{
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.GET_ALL))
+		{
+			final Map<K, V> retVal = getAllLocalOrRemote(keys);
+			
+			if (evictionTracker != null)
+				retVal.keySet().forEach(key -> evictionTracker.recordRead(encodeKey(key)));
+			
+			return retVal;
+		}
+	}
+	
+	/**
+	 * Gets the values of multiple keys from the near cache if enabled and otherwise from Redis.
+	 * @param keys The keys to look up.
+	 * @return A map of each key that has a value to its value.
+	 */
+	protected Map<K, V> getAllLocalOrRemote(Collection<K> keys)
+	{
+		final Map<K, V> retVal = new LinkedHashMap<>();
+		
+		if (keys == null || keys.isEmpty())
+			return retVal;
+		
+		final List<K> remoteKeys = new ArrayList<>(keys.size());
+		final List<String> storeKeys = new ArrayList<>(keys.size());
+		for (K key : keys)
+		{
+			final String storeKey = encodeKey(key);
+			
+			awaitPendingWrite(storeKey);
+			
+			final V nearValue = (nearCache == null) ? null : nearCache.get(storeKey);
+			if (nearValue != null)
+			{
+				statistics.recordLocalHit();
+				retVal.put(key, nearValue);
+			}
+			else if (!retVal.containsKey(key))
+			{
+				remoteKeys.add(key);
+				storeKeys.add(storeKey);
+			}
+		}
+		
+		if (remoteKeys.isEmpty())
+			return retVal;
+		
+		final long epoch = (nearCache == null) ? 0 : nearCache.epoch();
+		
+		final List<List<byte[]>> values = store.getAll(storeKeys);
+		
+		for (int i = 0; i < remoteKeys.size(); ++i)
+		{
+			final V value = recordRemoteLookup(mergeRedisCacheEntryValues(values.get(i)));
+			if (value == null)
+				continue;
+			
+			retVal.put(remoteKeys.get(i), value);
+			
+			if (nearCache != null)
+				nearCache.put(storeKeys.get(i), value, epoch);
+		}
+		
+		return retVal;
+	}
+	
+	/**
+	 * Gets the value of a key directly from Redis bypassing the near cache.  Entries from all cluster nodes are merged 
+	 * if more than one node holds an entry for the key.
+	 * @param storeKey The encoded key of the entry.
+	 * @return The value of the entry or null if no node holds an entry for the key.
+	 */
+	protected V getRemote(String storeKey)
+	{
+		return mergeRedisCacheEntryValues(store.get(storeKey));
+	}
+	
+	/**
+	 * Records the result of a lookup served from Redis as a remote hit or a miss.
+	 * @param value The value found in Redis or null.
+	 * @return The provided value.
+	 */
+	protected V recordRemoteLookup(V value)
+	{
+		if (value != null)
+			statistics.recordRemoteHit();
+		else
+			statistics.recordMiss();
+		
+		return value;
+	}
+	
+	/**
+	 * Deserializes the values of a key's entries from one or more cluster nodes.  If more than one node holds an entry, 
+	 * the values are merged into a single list.
+	 * @param serialized The serialized values of each node's entry.
+	 * @return The value or null if no node holds an entry.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected V mergeRedisCacheEntryValues(List<byte[]> serialized)
+	{
+		if (serialized.size() == 0)
 			return null;
 		
-		if (entries.size() == 1)
-			return deserializedRedisCacheEntryValue(entries.iterator().next().getValue());
+		if (serialized.size() == 1)
+			return deserializedRedisCacheEntryValue(serialized.get(0));
 		
 		final List<Object> items = new ArrayList<>();
 				
-		for (RedisCacheEntry entry : entries)
+		for (byte[] value : serialized)
 		{
-			V val = deserializedRedisCacheEntryValue(entry.getValue());
+			V val = deserializedRedisCacheEntryValue(value);
 			if (val instanceof Collection)
 				items.addAll((Collection)val);
 			else
@@ -311,58 +747,231 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 	@Override
 	public V put(Object key, Object value) 
 	{
-		if (isSingletonCrossClusterCache())
+		final String storeKey = encodeKey(key);
+		
+		// serialize on the calling thread so later changes to the value don't leak into a background write
+		final byte[] serialized = serializeValue(value);
+		
+		if (writeBehind != null)
 		{
-			// clobber all existing instances of this key for this cache
-			remotelyCached.deleteAll(remotelyCached.findByClusteredCacheKey(name + key));
+			awaitAsyncWrite(storeKey);
+			
+			writeBehind.put(storeKey, serialized);
+		}
+		else if (settings.getAsyncWritesEnabled())
+			writeInBackground(storeKey, () -> putEntry(storeKey, serialized));
+		else
+		{
+			awaitPendingWrite(storeKey);
+			
+			putEntry(storeKey, serialized);
 		}
-		
-		remotelyCached.save(createSafeRedisCacheEntry(key, value));
 		
 		return (V)value;
 	}
+	
+	/**
+	 * Writes the local node's entry for a key without blocking the calling thread.  The write runs after all asynchronous writes
+	 * of the local node to the key that were made before the call.  See {@link CacheAsyncExecutor}.
+	 * @param key The key of the entry.
+	 * @param value The value of the entry.
+	 * @return A future completed with the value once the entry is written, or exceptionally if the write fails.
+	 */
+	public CompletableFuture<V> putAsync(K key, V value)
+	{
+		final String storeKey = encodeKey(key);
+		
+		final byte[] serialized = serializeValue(value);
+		
+		return submitWrite(storeKey, () -> 
+		{
+			putEntry(storeKey, serialized);
+			return value;
+		});
+	}
+	
+	/**
+	 * Writes the local node's entry for a key and invalidates the key in the near caches.
+	 * @param storeKey The encoded key of the entry.
+	 * @param serialized The encoded value.
+	 */
+	protected void putEntry(String storeKey, byte[] serialized)
+	{
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.PUT))
+		{
+			// singleton caches clobber all existing instances of this key for this cache
+			store.put(storeKey, serialized, isSingletonCrossClusterCache());
+		
+			statistics.recordPuts(1);
+			
+			if (evictionTracker != null)
+				evictionTracker.recordWrite(storeKey);
+		
+			invalidateNearCache(storeKey);
+		}
+	}
+
+	/**
+	 * Adds a member to the collection value of the local node's entry for a key.  The local node's entry is created if it does
+	 * not exist.  Only the member is written, so adding a member costs a single write regardless of the size of the collection.
+	 * Requires the set storage engine.
+	 * @param key The key of the entry.
+	 * @param member The member to add.
+	 * @throws UnsupportedOperationException If the cache does not store its values as native collections.
+	 */
+	public void addMember(K key, Object member)
+	{
+		final String storeKey = encodeKey(key);
+		
+		final byte[] serialized = serializeMember(member);
+		
+		writeMember(storeKey, () -> store.addMember(storeKey, serialized, isSingletonCrossClusterCache()));
+	}
+	
+	/**
+	 * Removes a member from the collection value of the local node's entry for a key.  The entry remains in the cache even if
+	 * it holds no more members.  Requires the set storage engine.  See {@link #addMember(Object, Object)}.
+	 * @param key The key of the entry.
+	 * @param member The member to remove.
+	 * @throws UnsupportedOperationException If the cache does not store its values as native collections.
+	 */
+	public void removeMember(K key, Object member)
+	{
+		final String storeKey = encodeKey(key);
+		
+		final byte[] serialized = serializeMember(member);
+		
+		writeMember(storeKey, () -> store.removeMember(storeKey, serialized));
+	}
+	
+	/**
+	 * Writes a member of the local node's entry for a key in the background if asynchronous writes are enabled and otherwise
+	 * on the calling thread.
+	 * @param storeKey The encoded key of the entry.
+	 * @param write The store write of the member.
+	 */
+	protected void writeMember(String storeKey, Runnable write)
+	{
+		final Runnable memberWrite = () ->
+		{
+			try (CacheMetrics.Sample sample = metrics.start(CacheOperation.PUT))
+			{
+				write.run();
+				
+				statistics.recordPuts(1);
+				
+				if (evictionTracker != null)
+					evictionTracker.recordWrite(storeKey);
+				
+				invalidateNearCache(storeKey);
+			}
+		};
+		
+		if (settings.getAsyncWritesEnabled())
+			writeInBackground(storeKey, memberWrite);
+		else
+		{
+			awaitPendingWrite(storeKey);
+			
+			memberWrite.run();
+		}
+	}
 
 	@Override
 	public V remove(Object key) 
 	{
-		final Optional<RedisCacheEntry> retVal = remotelyCached.findById(name + nodeId.toString() +  key);
+		final String storeKey = encodeKey(key);
+		
+		// the removed value is returned, so removes always wait for Redis
+		awaitPendingWrite(storeKey);
 		
-		if (retVal.isPresent())
+		return removeEntry(storeKey);
+	}
+	
+	/**
+	 * Removes the local node's entry for a key without blocking the calling thread.  The remove runs after all asynchronous writes
+	 * of the local node to the key that were made before the call.  See {@link CacheAsyncExecutor}.
+	 * @param key The key of the entry.
+	 * @return A future completed with the value of the removed entry or null if the local node held no entry.
+	 */
+	public CompletableFuture<V> removeAsync(K key)
+	{
+		final String storeKey = encodeKey(key);
+		
+		return submitWrite(storeKey, () -> removeEntry(storeKey));
+	}
+	
+	/**
+	 * Removes the local node's entry for a key and invalidates the key in the near caches.
+	 * @param storeKey The encoded key of the entry.
+	 * @return The value of the removed entry or null if the local node held no entry.
+	 */
+	protected V removeEntry(String storeKey)
+	{
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.REMOVE))
 		{
-			remotelyCached.deleteById(name + nodeId.toString() +  key);
-			return deserializedRedisCacheEntryValue(retVal.get().getValue());
+			final byte[] retVal = store.remove(storeKey);
+		
+			statistics.recordRemove();
+			
+			if (evictionTracker != null)
+				evictionTracker.recordRemove(storeKey);
+		
+			invalidateNearCache(storeKey);
+		
+			return (retVal == null) ? null : deserializedRedisCacheEntryValue(retVal);
 		}
-		else
-			return null;
 	}
 
 	@Override
 	public void clear() 
 	{
-		purgeClusteredNodeCaches(nodeId);
+		flushPendingWrites();
+		
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.CLEAR))
+		{
+			// the local node's entries are dropped in constant time and reclaimed in the background
+			store.clear();
+			
+			if (evictionTracker != null)
+				evictionTracker.clear();
+			
+			invalidateNearCache((Collection<String>)null);
+		}
 	}
 
 	@Override
 	public void purgeClusteredNodeCaches(NodeID node) 
 	{
-		if (this.nodePurgable && !isSingletonCrossClusterCache())
+		flushPendingWrites();
+		
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.PURGE))
 		{
-			Log.info("Purging cluster cache {} on node {}", name, node.toString());
-			
-			/*
-			 * Caches can hold a lot of entries.  Getting the full list in one shot can kill Redis performance.
-			 * Page instead.
-			 */		
-			final RedisCacheEntry probe = new RedisCacheEntry((String)null, (String)null, (String)null, name + node.toString(), (String)null, maxLifetime);
-			
-			final Pageable pageParam = PageRequest.of(0, 500);
-			Page<RedisCacheEntry> page = null;
-			do
-			{				
-				page = remotelyCached.findAll(Example.of(probe), pageParam);
+			if (this.nodePurgable && !isSingletonCrossClusterCache())
+			{
+				if (!node.equals(nodeId) && purgeRegistration != null)
+				{
+					// one node sweeps every cache of the departed node... the entries are gone or going once this returns
+					purgeCoordinator.purge(purgeRegistration, node, nodeId);
+				}
+				else
+				{
+					Log.info("Purging cluster cache {} on node {}", name, node.toString());
+				
+					store.purge(node);
+				}
 				
-				remotelyCached.deleteAll(page.toList());
-			} while(page.toList().size() > 0);
+				if (evictionTracker != null && node.equals(nodeId))
+					evictionTracker.clear();
+				else if (evictionTracker != null)
+					evictionTracker.drop(node);
+			
+				/*
+				 * Lookups merge entries from all nodes, so any key in the near cache may 
+				 * include values from the purged node.
+				 */
+				invalidateNearCache((Collection<String>)null);
+			}
 		}
 	}
 
@@ -370,13 +979,65 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 	@Override
 	public void putAll(Map m) 
 	{
-		// TODO Auto-generated method stub
-		if (m != null && m.size() > 0)
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.PUT_ALL))
 		{
-			m.forEach((key, value) -> 
-			{				
-				remotelyCached.save(createSafeRedisCacheEntry(key, value));				
-			});
+			if (m != null && m.size() > 0)
+			{
+				// serialize everything up front so the pipelines only carry Redis commands
+				final Map<String, byte[]> values = new LinkedHashMap<>();
+				m.forEach((key, value) -> values.put(encodeKey(key), serializeValue(value)));
+				
+				if (writeBehind != null)
+				{
+					values.forEach((storeKey, serialized) -> 
+					{
+						awaitAsyncWrite(storeKey);
+						
+						writeBehind.put(storeKey, serialized);
+					});
+				}
+				else
+				{
+					values.keySet().forEach(this::awaitPendingWrite);
+					
+					putEntries(values);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the local node's entries for multiple keys and invalidates the keys in the near caches.
+	 * @param values The encoded values keyed by encoded entry key.
+	 */
+	protected void putEntries(Map<String, byte[]> values)
+	{
+		store.putAll(values, isSingletonCrossClusterCache());
+		
+		statistics.recordPuts(values.size());
+		
+		if (evictionTracker != null)
+			values.keySet().forEach(evictionTracker::recordWrite);
+		
+		if (nearCache != null)
+			invalidateNearCache(new ArrayList<>(values.keySet()));
+	}
+	
+	/**
+	 * Writes a batch of queued writes of the {@link WriteBehindQueue}.  Runs on the write behind thread or on a thread that
+	 * needs the queued writes in Redis.
+	 * @param batch The encoded values keyed by encoded entry key.
+	 */
+	protected void writeBatch(Map<String, byte[]> batch)
+	{
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.PUT_ALL))
+		{
+			putEntries(batch);
+		}
+		catch (RuntimeException e)
+		{
+			statistics.recordFailedWrites(batch.size());
+			throw e;
 		}
 	}
 
@@ -385,52 +1046,253 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
     {
 		return nodePurgable;
     }
+    
+    /**
+     * Registers this cache to be swept when a node departs the cluster.  Only caches whose entries are purged per node are registered.
+     */
+    protected void registerForCoordinatedPurge()
+    {
+    	if (nodePurgable && !isSingletonCrossClusterCache() && purgeCoordinator.isEnabled())
+    		purgeRegistration = purgeCoordinator.registerCache(name, settings.getStorageEngine());
+    }
 	
-	protected RedisCacheEntry createSafeRedisCacheEntry(Object key, Object value)
+	/**
+	 * Removes the local node's entries chosen for eviction by the {@link CacheEvictionTracker}.  Runs on the eviction thread.
+	 * @param keys The keys of the evicted entries.
+	 */
+	protected void evict(List<String> keys)
 	{
-		try
+		try (CacheMetrics.Sample sample = metrics.start(CacheOperation.EVICT))
 		{
-			String mappedValue = "";
+			store.removeAll(keys);
 			
-			// check and see if the value has it's own wrapping
-			if (value instanceof Externalizable)
-			{
-				final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-				final ObjectOutputStream obOutStream = new ObjectOutputStream(outStream);
-				((Externalizable)value).writeExternal(obOutStream);
-				obOutStream.flush();
-				mappedValue = Base64.encodeBase64String(outStream.toByteArray());
-			}
-			else
-				mappedValue = objectMapper.writeValueAsString(value);
+			statistics.recordEvictions(keys.size());
+			
+			invalidateNearCache(keys);
+		}
+	}
+	
+	/**
+	 * Runs a write of an entry on the entry's stripe of the {@link CacheAsyncExecutor} and tracks it as pending until it completes.
+	 * @param storeKey The encoded key of the entry.
+	 * @param write The write.
+	 * @return A future completed with the result of the write.
+	 */
+	protected <T> CompletableFuture<T> submitWrite(String storeKey, Supplier<T> write)
+	{
+		final CompletableFuture<T> retVal = asyncExecutor.submit(name, storeKey, () ->
+		{
+			// queued write behind writes of the key were made first
+			if (writeBehind != null)
+				writeBehind.flushIfPending(storeKey);
+			
+			return write.get();
+		});
+		
+		// a later write to the key replaces this one... the stripe completes them in order
+		pendingWrites.put(storeKey, retVal);
+		retVal.whenComplete((result, e) -> 
+		{
+			pendingWrites.remove(storeKey, retVal);
+			
+			if (e != null)
+				statistics.recordFailedWrites(1);
+		});
+		
+		return retVal;
+	}
+	
+	/**
+	 * Runs a write of an entry in the background without reporting its outcome to the caller.  Failed writes are logged.
+	 * @param storeKey The encoded key of the entry.
+	 * @param write The write.
+	 */
+	protected void writeInBackground(String storeKey, Runnable write)
+	{
+		submitWrite(storeKey, () -> 
+		{
+			write.run();
+			return null;
+		}).whenComplete((result, e) -> 
+		{
+			if (e != null)
+				Log.warn("Failed to write entry {} of cache {} in the background.", storeKey, name, e);
+		});
+	}
+	
+	/**
+	 * Waits for the pending writes of the local node to a key to reach Redis.  Queued write behind writes are flushed and
+	 * asynchronous writes are awaited.  See {@link #awaitAsyncWrite(String)}.
+	 * @param storeKey The encoded key of the entry.
+	 */
+	protected void awaitPendingWrite(String storeKey)
+	{
+		if (writeBehind != null)
+			writeBehind.flushIfPending(storeKey);
+		
+		awaitAsyncWrite(storeKey);
+	}
+	
+	/**
+	 * Waits for the pending asynchronous writes of the local node to a key to complete.  Failed writes are not reported.  Returns
+	 * immediately on a thread of the {@link CacheAsyncExecutor}, which must never wait for operations queued behind it.
+	 * @param storeKey The encoded key of the entry.
+	 */
+	protected void awaitAsyncWrite(String storeKey)
+	{
+		if (pendingWrites.isEmpty() || CacheAsyncExecutor.isWorkerThread())
+			return;
+		
+		final CompletableFuture<?> pending = pendingWrites.get(storeKey);
+		if (pending != null)
+			pending.handle((result, e) -> null).join();
+	}
+	
+	/**
+	 * Waits for all pending writes of the local node to this cache to reach Redis.  Queued write behind writes are flushed and
+	 * asynchronous writes are awaited.  Operations that read or modify more than a single key call this first so the local 
+	 * node always sees its own writes.
+	 */
+	public void flushPendingWrites()
+	{
+		if (writeBehind != null)
+			writeBehind.flush();
+		
+		if (pendingWrites.isEmpty() || CacheAsyncExecutor.isWorkerThread())
+			return;
+		
+		for (CompletableFuture<?> pending : new ArrayList<>(pendingWrites.values()))
+			pending.handle((result, e) -> null).join();
+	}
+	
+	/**
+	 * Removes a key from the near caches of all cluster nodes if the near cache is enabled.  This must be called after
+	 * the key has been written to Redis.
+	 * @param storeKey The encoded key to remove.
+	 */
+	protected void invalidateNearCache(String storeKey)
+	{
+		if (nearCache != null)
+			invalidateNearCache(Collections.singletonList(storeKey));
+	}
+	
+	/**
+	 * Removes keys from the near caches of all cluster nodes if the near cache is enabled.  If Redis tracks keys for 
+	 * this cache, other nodes are notified of key changes by Redis and only the near caches in this JVM are invalidated.  
+	 * Removing all entries is always published, because clearing retires entries without touching the keys Redis tracks.  
+	 * This must be called after the keys have been written to Redis.
+	 * @param keys The keys to remove or null to remove all entries.
+	 */
+	protected void invalidateNearCache(Collection<String> keys)
+	{
+		if (nearCache == null)
+			return;
+		
+		if (keys == null)
+			invalidationBus.invalidateAll(name);
+		else if (clientTracking != null)
+			invalidationBus.invalidateLocal(name, keys);
+		else
+			invalidationBus.invalidate(name, keys);
+	}
+	
+	/**
+	 * Creates the codec used to convert values of this cache to and from the bytes stored in Redis.  The codec bound to the
+	 * value type of the cache in the {@link CacheValueCodecRegistry} is used.  Subclasses may override this to provide a codec 
+	 * specific to the cache.
+	 * @return The codec of this cache.
+	 */
+	protected CacheValueCodec createValueCodec()
+	{
+		final CacheValueCodecRegistry registry = CachingConfiguration.getApplicationContext().getBean(CacheValueCodecRegistry.class);
+		
+		// collection elements are stored as set members, so each element is encoded with the codec of the element type
+		if (settings.getStorageEngine() == StorageEngine.SET)
+			return new CollectionCacheValueCodec(registry.getCodec(objectMapper.getTypeFactory().constructType(valueTypeReference).getContentType()));
+		
+		return registry.getCodec(getDeserilizedValueType());
+	}
+	
+	/**
+	 * Creates the codec used to convert keys of this cache to and from the entry keys stored in Redis.  The codec bound to the
+	 * key type of the cache in the {@link CacheKeyCodecRegistry} is used.
+	 * @return The key codec of this cache.
+	 */
+	protected CacheKeyCodec createKeyCodec()
+	{
+		return CachingConfiguration.getApplicationContext().getBean(CacheKeyCodecRegistry.class).getCodec(keyTypeReference);
+	}
+	
+	/**
+	 * Encodes a key of this cache into the entry key stored in Redis.  Keys are encoded once per operation.
+	 * @param key The key.
+	 * @return The encoded key.
+	 */
+	protected String encodeKey(Object key)
+	{
+		return keyCodec.encode(key);
+	}
+	
+	/**
+	 * Decodes an entry key stored in Redis into a key of this cache.
+	 * @param storeKey The encoded key.
+	 * @return The key.
+	 */
+	@SuppressWarnings("unchecked")
+	protected K decodeKey(String storeKey)
+	{
+		return (K)keyCodec.decode(storeKey);
+	}
+	
+	/**
+	 * Indicates if the declared value type of this cache is a collection.
+	 * @return True if the declared value type of this cache is a collection.
+	 */
+	protected boolean isCollectionValued()
+	{
+		return Collection.class.isAssignableFrom(objectMapper.getTypeFactory().constructType(valueTypeReference).getRawClass());
+	}
+	
+	protected byte[] serializeMember(Object member)
+	{
+		if (!(valueCodec instanceof CollectionCacheValueCodec))
+			throw new UnsupportedOperationException("Cache " + name + " does not store values as native collections");
 		
-			return new RedisCacheEntry(name + nodeId.toString() +  key, name + key, name, nodeCacheName, mappedValue, maxLifetime);	
+		try
+		{
+			return ((CollectionCacheValueCodec)valueCodec).getElementCodec().encode(member);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalArgumentException("Error serializing cache collection member.", e);
+		}
+	}
+	
+	protected byte[] serializeValue(Object value)
+	{
+		try
+		{
+			final byte[] retVal = valueCodec.encode(value);
+			
+			statistics.recordSerializedWrite(retVal);
+			
+			return retVal;
 		}
 		catch (Exception e)
 		{
 			Log.error("Error serializing cache entry.  Setting entry to null value.", e);
-			return new RedisCacheEntry(name + nodeId.toString() +  key, name + key , name, nodeCacheName, null, maxLifetime);	
+			return null;	
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	protected V deserializedRedisCacheEntryValue(String serialized)
+	protected V deserializedRedisCacheEntryValue(byte[] serialized)
 	{
 		try
 		{
-			Class<?> obType = objectMapper.getTypeFactory().constructType(getDeserilizedValueType()).getRawClass();
-			if (Externalizable.class.isAssignableFrom(obType))
-			{
-				 final ByteArrayInputStream inStream = new ByteArrayInputStream(Base64.decodeBase64(serialized));
-				 final ObjectInputStream obInStream = new ObjectInputStream(inStream);
-				 
-				 V retVal = (V)obType.newInstance();
-				 ((Externalizable)retVal).readExternal(obInStream);
-				 
-				 return retVal;
-			}
-			else
-				return objectMapper.readValue(serialized, getDeserilizedValueType());
+			statistics.recordSerializedRead(serialized);
+			
+			return (V)valueCodec.decode(serialized);
 		}
 		catch (Exception e)
 		{
@@ -439,9 +1301,10 @@ public abstract class RedisClusteredCache<K,V> implements Cache<K,V>
 		}
 	}
 	
+	@SuppressWarnings("unchecked")
 	public <T> TypeReference<T> getDeserilizedValueType()
 	{
-        return forType(valueType);
+        return (TypeReference<T>)valueTypeReference;
 	}
 	
 	protected <T> TypeReference<T> forType(final Type type) 
@@ -0,0 +1,26 @@
+--
+-- Records the caches swept by a coordinated purge of a departed node and releases the purge lease.
+--
+-- KEYS[1] lease of the departed node
+-- KEYS[2] hash of swept cache names of the departed node
+--
+-- ARGV[1] id of the sweep... also the value of the lease held by the sweeping node
+-- ARGV[2] time in milliseconds the swept cache names are retained
+-- ARGV[3..n] names of the swept caches
+--
+-- Returns 1 if the lease was released or 0 if the lease expired and was taken by another node.
+--
+for i = 3, #ARGV do
+    redis.call('HSET', KEYS[2], ARGV[i], ARGV[1])
+end
+
+if #ARGV > 2 then
+    redis.call('PEXPIRE', KEYS[2], ARGV[2])
+end
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    redis.call('DEL', KEYS[1])
+    return 1
+end
+
+return 0
@@ -0,0 +1,23 @@
+--
+-- Indicates if any cluster node holds a live entry for a clustered cache key.
+--
+-- Keys of the entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] clustered cache key index
+--
+-- ARGV[1] key prefix (keyspace + ':')
+--
+-- Returns 1 if a live entry exists, otherwise 0.  Entries that are indexed but no longer exist
+-- (for example expired entries) and entries retired by the retire_node script are skipped.
+--
+local prefix = ARGV[1]
+
+for _, id in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+    local fields = redis.call('HMGET', prefix .. id, 'key', 'nodeCacheName')
+    if fields[1] and fields[2] and redis.call('SISMEMBER', prefix .. 'nodeCacheName:' .. fields[2], id) == 1 then
+        return 1
+    end
+end
+
+return 0
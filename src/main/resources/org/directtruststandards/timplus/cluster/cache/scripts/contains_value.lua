@@ -0,0 +1,27 @@
+--
+-- Indicates if any live entry of a cache holds a value by checking only the entries whose value
+-- has the same fingerprint.
+--
+-- Keys of the entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] value fingerprint index
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2] encoded value
+--
+-- Returns 1 if an entry holds the value, otherwise 0.  Entries that no longer exist, entries
+-- retired by the retire_node script, and entries with a different value of the same fingerprint
+-- are skipped.
+--
+local prefix = ARGV[1]
+
+for _, id in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+    local fields = redis.call('HMGET', prefix .. id, 'key', 'data', 'value', 'nodeCacheName')
+    if fields[1] and fields[4] and (fields[2] or fields[3]) == ARGV[2]
+            and redis.call('SISMEMBER', prefix .. 'nodeCacheName:' .. fields[4], id) == 1 then
+        return 1
+    end
+end
+
+return 0
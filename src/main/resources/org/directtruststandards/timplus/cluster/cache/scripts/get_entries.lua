@@ -0,0 +1,32 @@
+--
+-- Reads the encoded values of all cluster node entries of one or more clustered cache keys
+-- in a single step.
+--
+-- Keys of the entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1..n] clustered cache key indexes
+--
+-- ARGV[1] key prefix (keyspace + ':')
+--
+-- Returns one array per clustered cache key holding the encoded value of each existing entry.
+-- Entries written by earlier versions hold a text value instead of binary data.  Entries with a
+-- null value are returned as nil.  Entries that are indexed but no longer exist
+-- (for example expired entries) are skipped, as are entries that are no longer members of their
+-- node cache name index because the node's entries were retired by the retire_node script.
+--
+local prefix = ARGV[1]
+
+local result = {}
+for i, index in ipairs(KEYS) do
+    local values = {}
+    for _, id in ipairs(redis.call('SMEMBERS', index)) do
+        local fields = redis.call('HMGET', prefix .. id, 'key', 'data', 'value', 'nodeCacheName')
+        if fields[1] and fields[4] and redis.call('SISMEMBER', prefix .. 'nodeCacheName:' .. fields[4], id) == 1 then
+            values[#values + 1] = fields[2] or fields[3]
+        end
+    end
+    result[i] = values
+end
+
+return result
@@ -0,0 +1,27 @@
+--
+-- Reads the encoded values of a batch of entries by id, skipping entries that are not live.
+--
+-- Keys of the entries are derived from the ids, so this script is not compatible with Redis
+-- Cluster.
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2..n] entry ids
+--
+-- Returns the encoded value of each live entry in the order of the ids.  Entries written by
+-- earlier versions hold a text value instead of binary data.  Entries with a null value are
+-- returned as nil.  Entries that no longer exist (for example expired entries) are skipped, as
+-- are entries that are no longer members of their node cache name index because the node's
+-- entries were retired by the retire_node script.
+--
+local prefix = ARGV[1]
+
+local values = {}
+for i = 2, #ARGV do
+    local id = ARGV[i]
+    local fields = redis.call('HMGET', prefix .. id, 'key', 'data', 'value', 'nodeCacheName')
+    if fields[1] and fields[4] and redis.call('SISMEMBER', prefix .. 'nodeCacheName:' .. fields[4], id) == 1 then
+        values[#values + 1] = fields[2] or fields[3]
+    end
+end
+
+return values
@@ -0,0 +1,41 @@
+--
+-- Reads the entries of every cluster node for one or more keys of a cache stored as one hash
+-- per node.
+--
+-- KEYS[1] node registry set of the cache
+--
+-- ARGV[1] node hash key prefix
+-- ARGV[2] current time in milliseconds since the epoch
+-- ARGV[3..n] entry keys
+--
+-- Returns one array per entry key holding the value of each node's unexpired entry.  Entries
+-- with a null value are returned as nil.
+--
+local now = tonumber(ARGV[2])
+
+local fields = {}
+for i = 3, #ARGV do
+    fields[#fields + 1] = ARGV[i]
+end
+
+local result = {}
+for i = 1, #fields do
+    result[i] = {}
+end
+
+for _, node in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+    local encoded = redis.call('HMGET', ARGV[1] .. node, unpack(fields))
+    for i = 1, #fields do
+        local entry = encoded[i]
+        if entry then
+            local sep = string.find(entry, '|', 1, true)
+            local expiresAt = tonumber(sep and string.sub(entry, 1, sep - 1) or entry)
+            if expiresAt <= 0 or expiresAt > now then
+                local values = result[i]
+                values[#values + 1] = sep and string.sub(entry, sep + 1) or false
+            end
+        end
+    end
+end
+
+return result
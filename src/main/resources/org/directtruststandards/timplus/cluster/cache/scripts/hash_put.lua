@@ -0,0 +1,75 @@
+--
+-- Writes entries into the hash of the local cluster node for a cache and registers the node
+-- with the cache.  The hash expires once its lifetime has passed since the last write.  Entries
+-- carry their own expiration time, so readers ignore entries that expired before the hash did.
+--
+-- A node that keeps writing keeps its hash alive, so every write also checks a bounded number of
+-- fields for expiration and removes the expired ones.  The HSCAN cursor is kept in a separate key,
+-- so consecutive writes walk the whole hash and expired fields are removed at least as fast as
+-- new fields are written.
+--
+-- If the singleton flag is set, the entries of every other cluster node for the written fields
+-- are removed.
+--
+-- All keys of a cache share the cache name hash tag, so the node hashes derived from the node
+-- registry live in the same Redis Cluster slot as the declared keys.
+--
+-- KEYS[1] hash of the local node
+-- KEYS[2] node registry set of the cache
+-- KEYS[3] expiration sweep cursor of the hash of the local node
+--
+-- ARGV[1] node hash key prefix
+-- ARGV[2] local node id
+-- ARGV[3] time to live of the hash in milliseconds.  Values less than 1 never expire.
+-- ARGV[4] '1' if the cache is a singleton cross cluster cache
+-- ARGV[5] current time in milliseconds since the epoch
+-- ARGV[6] number of fields checked for expiration
+-- ARGV[7] eviction tracking set prefix of the cache.  Keys of removed fields are removed from the
+--         tracking sets of their nodes.
+-- ARGV[8..n] pairs of entry key and encoded entry
+--
+-- Returns the number of entries of other nodes removed.
+--
+local removed = 0
+if ARGV[4] == '1' then
+    for _, node in ipairs(redis.call('SMEMBERS', KEYS[2])) do
+        if node ~= ARGV[2] then
+            local nodeKey = ARGV[1] .. node
+            for i = 8, #ARGV, 2 do
+                if redis.call('HDEL', nodeKey, ARGV[i]) == 1 then
+                    redis.call('ZREM', ARGV[7] .. node, ARGV[i])
+                    removed = removed + 1
+                end
+            end
+        end
+    end
+end
+
+for i = 8, #ARGV, 2 do
+    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+
+local ttl = tonumber(ARGV[3])
+if ttl > 0 then
+    local now = tonumber(ARGV[5])
+    local scan = redis.call('HSCAN', KEYS[1], redis.call('GET', KEYS[3]) or '0', 'COUNT', ARGV[6])
+    local fields = scan[2]
+    for i = 1, #fields, 2 do
+        local entry = fields[i + 1]
+        local sep = string.find(entry, '|', 1, true)
+        local expiresAt = tonumber(sep and string.sub(entry, 1, sep - 1) or entry)
+        if expiresAt > 0 and expiresAt <= now then
+            redis.call('HDEL', KEYS[1], fields[i])
+            redis.call('ZREM', ARGV[7] .. ARGV[2], fields[i])
+        end
+    end
+
+    redis.call('SET', KEYS[3], scan[1], 'PX', ttl)
+    redis.call('PEXPIRE', KEYS[1], ttl)
+else
+    redis.call('PERSIST', KEYS[1])
+end
+
+redis.call('SADD', KEYS[2], ARGV[2])
+
+return removed
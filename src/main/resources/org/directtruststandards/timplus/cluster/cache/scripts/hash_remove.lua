@@ -0,0 +1,15 @@
+--
+-- Removes an entry from the hash of the local cluster node for a cache.
+--
+-- KEYS[1] hash of the local node
+--
+-- ARGV[1] entry key
+--
+-- Returns the encoded entry that was removed or nil if the node held no entry for the key.
+--
+local encoded = redis.call('HGET', KEYS[1], ARGV[1])
+if encoded then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+end
+
+return encoded
@@ -0,0 +1,32 @@
+--
+-- Removes a batch of the entries of a cluster node from a cache stored using the Spring Data Redis
+-- layout of RedisCacheEntry.  The node cache name index holds the ids of all of the node's entries
+-- and is used as the per node key set.  Entry hashes are removed with UNLINK so that Redis reclaims
+-- their memory in the background.
+--
+-- Keys of removed entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] node cache name index
+-- KEYS[2] keyspace set
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2] maximum number of entries removed by this call
+--
+-- Returns the number of the node's entries that remain.
+--
+local prefix = ARGV[1]
+
+for _, id in ipairs(redis.call('SRANDMEMBER', KEYS[1], tonumber(ARGV[2]))) do
+    local entryKey = prefix .. id
+    local idxKey = entryKey .. ':idx'
+    for _, index in ipairs(redis.call('SMEMBERS', idxKey)) do
+        redis.call('SREM', index, id)
+    end
+    -- ids of expired entries may linger in the node index without an index membership set
+    redis.call('SREM', KEYS[1], id)
+    redis.call('SREM', KEYS[2], id)
+    redis.call('UNLINK', entryKey, idxKey, entryKey .. ':phantom')
+end
+
+return redis.call('SCARD', KEYS[1])
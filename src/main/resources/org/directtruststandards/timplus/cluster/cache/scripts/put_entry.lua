@@ -0,0 +1,85 @@
+--
+-- Writes a cache entry using the Spring Data Redis layout of RedisCacheEntry and maintains
+-- its secondary indexes in a single atomic step.
+--
+-- If the singleton flag is set, the entries of every cluster node for the clustered cache key
+-- are removed before the new entry is written.  Otherwise only a previous version of the entry
+-- itself is replaced.  Existing entries are always removed from the clustered cache key index
+-- before the new entry is added so that the index is modified on every write.
+--
+-- Keys of removed entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] keyspace set
+-- KEYS[2] entry hash
+-- KEYS[3] entry index membership set (entry hash + ':idx')
+-- KEYS[4] clustered cache key index
+-- KEYS[5] cache name index
+-- KEYS[6] node cache name index
+-- KEYS[7] optional value fingerprint index.  Only passed by caches with an indexed value and
+--         only for entries with a non null value.
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2] entry id
+-- ARGV[3] clustered cache key
+-- ARGV[4] cache name
+-- ARGV[5] node cache name
+-- ARGV[6] encoded value or an empty string for a null value
+-- ARGV[7] time to live in milliseconds.  Values less than 1 never expire.
+-- ARGV[8] entity class name
+-- ARGV[9] '1' if the cache is a singleton cross cluster cache
+-- ARGV[10] eviction tracking set prefix of the cache.  Keys of the removed entries of other nodes
+--          are removed from the nodes' tracking sets.
+--
+-- Returns the number of entries removed.
+--
+local prefix = ARGV[1]
+
+local function removeEntry(id)
+    local entryKey = prefix .. id
+    local idxKey = entryKey .. ':idx'
+    for _, index in ipairs(redis.call('SMEMBERS', idxKey)) do
+        redis.call('SREM', index, id)
+    end
+    redis.call('SREM', KEYS[1], id)
+    redis.call('DEL', idxKey, entryKey .. ':phantom')
+    return redis.call('DEL', entryKey)
+end
+
+local removed = 0
+if ARGV[9] == '1' then
+    -- ids are the node cache name (cache name and node id) followed by the entry key
+    local key = string.sub(ARGV[3], #ARGV[4] + 1)
+    for _, id in ipairs(redis.call('SMEMBERS', KEYS[4])) do
+        removed = removed + removeEntry(id)
+        if id ~= ARGV[2] then
+            redis.call('ZREM', ARGV[10] .. string.sub(id, #ARGV[4] + 1, #id - #key), key)
+        end
+    end
+end
+removed = removed + removeEntry(ARGV[2])
+
+redis.call('HMSET', KEYS[2], '_class', ARGV[8], 'key', ARGV[2], 'clusteredCacheKey', ARGV[3],
+    'cacheName', ARGV[4], 'nodeCacheName', ARGV[5], 'expiration', ARGV[7])
+if ARGV[6] ~= '' then
+    redis.call('HSET', KEYS[2], 'data', ARGV[6])
+end
+
+local ttl = tonumber(ARGV[7])
+if ttl > 0 then
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+
+redis.call('SADD', KEYS[1], ARGV[2])
+redis.call('SADD', KEYS[4], ARGV[2])
+redis.call('SADD', KEYS[5], ARGV[2])
+redis.call('SADD', KEYS[6], ARGV[2])
+redis.call('SADD', KEYS[3], KEYS[4], KEYS[5], KEYS[6])
+
+-- the index membership set lets every removal path drop the fingerprint membership as well
+if KEYS[7] then
+    redis.call('SADD', KEYS[7], ARGV[2])
+    redis.call('SADD', KEYS[3], KEYS[7])
+end
+
+return removed
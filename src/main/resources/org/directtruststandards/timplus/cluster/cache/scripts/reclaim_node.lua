@@ -0,0 +1,34 @@
+--
+-- Removes a batch of the entries of a retired node index created by the retire_node script.
+-- Entries that were written again after the index was retired are live members of the node cache
+-- name index and are only dropped from the retired index.  Entry hashes are removed with UNLINK
+-- so that Redis reclaims their memory in the background.
+--
+-- Keys of removed entries are derived from the index members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] retired index
+-- KEYS[2] node cache name index
+-- KEYS[3] keyspace set
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2] maximum number of entries removed by this call
+--
+-- Returns the number of entries that remain in the retired index.
+--
+local prefix = ARGV[1]
+
+for _, id in ipairs(redis.call('SRANDMEMBER', KEYS[1], tonumber(ARGV[2]))) do
+    redis.call('SREM', KEYS[1], id)
+    if redis.call('SISMEMBER', KEYS[2], id) == 0 then
+        local entryKey = prefix .. id
+        local idxKey = entryKey .. ':idx'
+        for _, index in ipairs(redis.call('SMEMBERS', idxKey)) do
+            redis.call('SREM', index, id)
+        end
+        redis.call('SREM', KEYS[3], id)
+        redis.call('UNLINK', entryKey, idxKey, entryKey .. ':phantom')
+    end
+end
+
+return redis.call('SCARD', KEYS[1])
@@ -0,0 +1,24 @@
+--
+-- Starts a new generation of the entries of a cluster node in a cache stored using the Spring Data
+-- Redis layout of RedisCacheEntry.  The node cache name index is renamed to a retired index in
+-- constant time, so the node's existing entries immediately stop being live while their hashes
+-- and remaining index memberships are reclaimed later by the reclaim_node script.  Entries are
+-- only live while their id is a member of the node cache name index.
+--
+-- Caches stored as native Redis sets retire the key set of the node the same way, and their
+-- retired key sets are reclaimed by the set_reclaim script.
+--
+-- KEYS[1] node cache name index, or key set of the node
+-- KEYS[2] retired index
+-- KEYS[3] set of the cache's retired indexes
+--
+-- Returns 1 if the node held entries or 0 if there was nothing to retire.
+--
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+
+redis.call('RENAME', KEYS[1], KEYS[2])
+redis.call('SADD', KEYS[3], KEYS[2])
+
+return 1
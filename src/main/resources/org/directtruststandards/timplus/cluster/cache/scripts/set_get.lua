@@ -0,0 +1,44 @@
+--
+-- Reads the members of every cluster node, or of a single node, for one or more keys of a cache
+-- stored as native Redis sets.  A node's entry is live while the node is an unexpired holder of
+-- the key and the key is a member of the node's key set, so entries retired by a clear are skipped.
+--
+-- ARGV[1] holders sorted set key prefix
+-- ARGV[2] member set key prefix
+-- ARGV[3] current time in milliseconds since the epoch
+-- ARGV[4] id of the node to read or an empty string to read all nodes
+-- ARGV[5] node key set prefix
+-- ARGV[6..n] entry keys
+--
+-- Returns one array per entry key holding an array of members for each node with an unexpired
+-- entry.  Nodes whose entry holds no members return an empty array.
+--
+local now = tonumber(ARGV[3])
+
+local result = {}
+for i = 6, #ARGV do
+    local key = ARGV[i]
+    local holdersKey = ARGV[1] .. key
+
+    local nodes
+    if ARGV[4] == '' then
+        nodes = redis.call('ZRANGEBYSCORE', holdersKey, '(' .. ARGV[3], '+inf')
+    else
+        nodes = {}
+        local score = redis.call('ZSCORE', holdersKey, ARGV[4])
+        if score and (score == 'inf' or tonumber(score) > now) then
+            nodes[1] = ARGV[4]
+        end
+    end
+
+    local values = {}
+    for _, node in ipairs(nodes) do
+        if redis.call('SISMEMBER', ARGV[5] .. node, key) == 1 then
+            values[#values + 1] = redis.call('SMEMBERS', ARGV[2] .. node .. ':' .. key)
+        end
+    end
+
+    result[#result + 1] = values
+end
+
+return result
@@ -0,0 +1,28 @@
+--
+-- Removes a batch of the entries of a cluster node from a cache stored as native Redis sets.  The
+-- node's key set is used to find the node's entries.  Member sets are removed with UNLINK so that
+-- Redis reclaims their memory in the background.  Once the node holds no more entries, it is
+-- removed from the node registry of the cache.
+--
+-- KEYS[1] key set of the node
+-- KEYS[2] node registry set of the cache
+--
+-- ARGV[1] holders sorted set key prefix
+-- ARGV[2] member set key prefix
+-- ARGV[3] node id
+-- ARGV[4] maximum number of entries removed by this call
+--
+-- Returns the number of the node's entries that remain.
+--
+for _, key in ipairs(redis.call('SRANDMEMBER', KEYS[1], tonumber(ARGV[4]))) do
+    redis.call('ZREM', ARGV[1] .. key, ARGV[3])
+    redis.call('UNLINK', ARGV[2] .. ARGV[3] .. ':' .. key)
+    redis.call('SREM', KEYS[1], key)
+end
+
+local remaining = redis.call('SCARD', KEYS[1])
+if remaining == 0 then
+    redis.call('SREM', KEYS[2], ARGV[3])
+end
+
+return remaining
@@ -0,0 +1,91 @@
+--
+-- Writes the local cluster node's members of a key of a cache stored as native Redis sets.  Each
+-- node's members of a key are a separate set, and the nodes holding an entry for the key are
+-- tracked in a sorted set scored by the time the node's entry expires.
+--
+-- The members may replace the node's members, be added to them, or be removed from them.  Adding
+-- or removing members only touches the provided members, regardless of how many members the
+-- node or other nodes hold.  Removing members from a key the node holds no entry for does nothing.
+--
+-- If the singleton flag is set, the entries of every other cluster node for the key are removed.
+--
+-- The node's entry is only live while the key is a member of the node's key set, so members left
+-- behind by a clear that retired the key set are replaced.
+--
+-- All keys of a cache share the cache name hash tag, so the member sets and node key sets
+-- derived from the holders live in the same Redis Cluster slot as the declared keys.
+--
+-- KEYS[1] holders sorted set of the entry key
+-- KEYS[2] member set of the local node for the entry key
+-- KEYS[3] key set of the local node
+-- KEYS[4] node registry set of the cache
+--
+-- ARGV[1] local node id
+-- ARGV[2] entry key
+-- ARGV[3] time to live in milliseconds.  Values less than 1 never expire.
+-- ARGV[4] '1' if the cache is a singleton cross cluster cache
+-- ARGV[5] member set key prefix
+-- ARGV[6] node key set prefix
+-- ARGV[7] 'r' to replace, 'a' to add, or 'd' to remove the members
+-- ARGV[8] current time in milliseconds since the epoch
+-- ARGV[9] eviction tracking set prefix of the cache.  The key is removed from the tracking sets
+--         of the nodes whose entries are removed.
+-- ARGV[10..n] encoded members
+--
+-- Returns the number of entries of other nodes removed.
+--
+local now = tonumber(ARGV[8])
+local ttl = tonumber(ARGV[3])
+local mode = ARGV[7]
+
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+local live = score and (score == 'inf' or tonumber(score) > now) and redis.call('SISMEMBER', KEYS[3], ARGV[2]) == 1
+
+if mode == 'd' and not live then
+    return 0
+end
+
+local removed = 0
+if ARGV[4] == '1' then
+    for _, node in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do
+        if node ~= ARGV[1] then
+            redis.call('UNLINK', ARGV[5] .. node .. ':' .. ARGV[2])
+            redis.call('SREM', ARGV[6] .. node, ARGV[2])
+            redis.call('ZREM', KEYS[1], node)
+            redis.call('ZREM', ARGV[9] .. node, ARGV[2])
+            removed = removed + 1
+        end
+    end
+end
+
+-- members of an expired entry may outlive the entry by a few milliseconds
+if mode == 'r' or not live then
+    redis.call('UNLINK', KEYS[2])
+end
+
+for i = 10, #ARGV do
+    if mode == 'd' then
+        redis.call('SREM', KEYS[2], ARGV[i])
+    else
+        redis.call('SADD', KEYS[2], ARGV[i])
+    end
+end
+
+redis.call('SADD', KEYS[3], ARGV[2])
+redis.call('SADD', KEYS[4], ARGV[1])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+
+if ttl > 0 then
+    redis.call('ZADD', KEYS[1], now + ttl, ARGV[1])
+    for i = 1, 3 do
+        redis.call('PEXPIRE', KEYS[i], ttl)
+    end
+else
+    redis.call('ZADD', KEYS[1], '+inf', ARGV[1])
+    for i = 1, 3 do
+        redis.call('PERSIST', KEYS[i])
+    end
+end
+
+return removed
@@ -0,0 +1,37 @@
+--
+-- Removes a batch of the entries of a retired key set of a cluster node created by the retire_node
+-- script from a cache stored as native Redis sets.  Keys that were written again after the key set
+-- was retired are members of the node's current key set and are only dropped from the retired key
+-- set.  Member sets are removed with UNLINK so that Redis reclaims their memory in the background.
+-- Once the retired key set is empty, it is dropped from the cache's set of retired key sets.
+--
+-- All keys of a cache share the cache name hash tag, so the holders and member sets derived from
+-- the retired keys live in the same Redis Cluster slot as the declared keys.
+--
+-- KEYS[1] retired key set
+-- KEYS[2] key set of the node
+-- KEYS[3] set of the cache's retired key sets
+--
+-- ARGV[1] holders sorted set key prefix
+-- ARGV[2] member set key prefix
+-- ARGV[3] node id
+-- ARGV[4] eviction tracking set of the node
+-- ARGV[5] maximum number of entries removed by this call
+--
+-- Returns the number of entries that remain in the retired key set.
+--
+for _, key in ipairs(redis.call('SRANDMEMBER', KEYS[1], tonumber(ARGV[5]))) do
+    redis.call('SREM', KEYS[1], key)
+    if redis.call('SISMEMBER', KEYS[2], key) == 0 then
+        redis.call('ZREM', ARGV[1] .. key, ARGV[3])
+        redis.call('UNLINK', ARGV[2] .. ARGV[3] .. ':' .. key)
+        redis.call('ZREM', ARGV[4], key)
+    end
+end
+
+local remaining = redis.call('SCARD', KEYS[1])
+if remaining == 0 then
+    redis.call('SREM', KEYS[3], KEYS[1])
+end
+
+return remaining
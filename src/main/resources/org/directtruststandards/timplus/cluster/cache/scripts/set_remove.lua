@@ -0,0 +1,27 @@
+--
+-- Removes the local cluster node's entry for a key of a cache stored as native Redis sets.
+--
+-- KEYS[1] holders sorted set of the entry key
+-- KEYS[2] member set of the local node for the entry key
+-- KEYS[3] key set of the local node
+--
+-- ARGV[1] local node id
+-- ARGV[2] entry key
+-- ARGV[3] current time in milliseconds since the epoch
+--
+-- Returns 1 and the removed members if the node held an unexpired entry for the key, and 0 and
+-- an empty array otherwise.
+--
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+local live = score and (score == 'inf' or tonumber(score) > tonumber(ARGV[3])) and redis.call('SISMEMBER', KEYS[3], ARGV[2]) == 1
+
+local members = {}
+if live then
+    members = redis.call('SMEMBERS', KEYS[2])
+end
+
+redis.call('ZREM', KEYS[1], ARGV[1])
+redis.call('UNLINK', KEYS[2])
+redis.call('SREM', KEYS[3], ARGV[2])
+
+return { live and 1 or 0, members }
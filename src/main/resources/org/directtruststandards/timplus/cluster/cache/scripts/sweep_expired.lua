@@ -0,0 +1,53 @@
+--
+-- Removes the index memberships of a batch of expired entries.  Redis expires entry hashes on its
+-- own, but without keyspace events the ids of expired entries remain in the keyspace set and in
+-- every index set the entry was a member of.  The keyspace set holds the id of every entry, so
+-- walking it with a cursor reaches every expired entry.  The index sets of an entry are listed in
+-- its index membership set, which does not expire.
+--
+-- Keys of the entries are derived from the keyspace set members, so this script is not compatible
+-- with Redis Cluster.
+--
+-- KEYS[1] keyspace set
+--
+-- ARGV[1] key prefix (keyspace + ':')
+-- ARGV[2] SSCAN cursor of the keyspace set, '0' to start a new walk
+-- ARGV[3] SSCAN count hint
+-- ARGV[4] eviction tracking keyspace.  Keys of the removed entries are removed from the tracking
+--         sets of their nodes.
+--
+-- Returns the next cursor ('0' once the walk is complete), the number of scanned entries and the
+-- number of removed expired entries.
+--
+local prefix = ARGV[1]
+local cacheNamePrefix = prefix .. 'cacheName:'
+local nodeCacheNamePrefix = prefix .. 'nodeCacheName:'
+
+local scan = redis.call('SSCAN', KEYS[1], ARGV[2], 'COUNT', tonumber(ARGV[3]))
+
+local removed = 0
+for _, id in ipairs(scan[2]) do
+    local entryKey = prefix .. id
+    if redis.call('EXISTS', entryKey) == 0 then
+        local idxKey = entryKey .. ':idx'
+        local cacheName, nodeCacheName
+        for _, index in ipairs(redis.call('SMEMBERS', idxKey)) do
+            redis.call('SREM', index, id)
+            if string.sub(index, 1, #cacheNamePrefix) == cacheNamePrefix then
+                cacheName = string.sub(index, #cacheNamePrefix + 1)
+            elseif string.sub(index, 1, #nodeCacheNamePrefix) == nodeCacheNamePrefix then
+                nodeCacheName = string.sub(index, #nodeCacheNamePrefix + 1)
+            end
+        end
+        -- ids are the node cache name (cache name and node id) followed by the entry key
+        if cacheName and nodeCacheName then
+            redis.call('ZREM', ARGV[4] .. ':{' .. cacheName .. '}:' .. string.sub(nodeCacheName, #cacheName + 1),
+                string.sub(id, #nodeCacheName + 1))
+        end
+        redis.call('SREM', KEYS[1], id)
+        redis.call('UNLINK', idxKey, entryKey .. ':phantom')
+        removed = removed + 1
+    end
+end
+
+return {scan[1], #scan[2], removed}
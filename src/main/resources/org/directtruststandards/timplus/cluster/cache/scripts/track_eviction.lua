@@ -0,0 +1,134 @@
+--
+-- Records entry accesses in the eviction tracking set of a node's entries of a cache and pops the
+-- entries to evict once the set holds more members than the cache's max size.
+--
+-- Entries can disappear without the node recording a removal, for example when they expire, are
+-- replaced by a singleton write of another node, or are swept.  Members of such entries are dead:
+-- they inflate the member count and, with LFU, may hold counts that keep them from ever being the
+-- lowest member.  Each call checks a bounded number of members on a rotating cursor against the
+-- storage engine of the cache and removes the dead ones.  While the set holds more members than
+-- the max size, more members are checked before entries are evicted, and every member popped for
+-- eviction is checked as well, so only live entries are evicted.
+--
+-- KEYS[1] eviction tracking sorted set
+-- KEYS[2] ZSCAN cursor of the dead member sweep of the tracking set
+--
+-- ARGV[1] eviction policy (LRU, LFU or FIFO)
+-- ARGV[2] max entries.  Values less than 1 never evict.
+-- ARGV[3] maximum number of entries popped, and number of members checked per sweep step
+-- ARGV[4] time to live of the tracking set in milliseconds.  Values less than 1 never expire.
+-- ARGV[5] current time in milliseconds since the epoch
+-- ARGV[6] liveness check of the storage engine
+--         'r' repository: ARGV[7] node cache name index, ARGV[8] node cache name, ARGV[9] entry key prefix
+--         'h' hash: ARGV[7] hash of the node
+--         's' set: ARGV[7] holders key prefix, ARGV[8] node id, ARGV[9] key set of the node
+-- ARGV[10..n] triplets of operation ('w' write, 'r' read, 'd' remove), entry key and score.  The
+--             score is the access time for LRU and FIFO and the number of accesses for LFU.
+--
+-- Reads only update entries that are already tracked, so reads of entries held by other nodes
+-- are ignored.  FIFO writes keep the score of an entry that is already tracked.
+--
+-- Returns the keys of the entries to evict, least valuable first.
+--
+local policy = ARGV[1]
+local limit = tonumber(ARGV[3])
+local now = tonumber(ARGV[5])
+local check = ARGV[6]
+local ttl = tonumber(ARGV[4])
+local written = false
+
+local function isLive(member)
+    if check == 'r' then
+        local id = ARGV[8] .. member
+        return redis.call('SISMEMBER', ARGV[7], id) == 1 and redis.call('EXISTS', ARGV[9] .. id) == 1
+    elseif check == 'h' then
+        local entry = redis.call('HGET', ARGV[7], member)
+        if not entry then
+            return false
+        end
+        local sep = string.find(entry, '|', 1, true)
+        local expiresAt = tonumber(sep and string.sub(entry, 1, sep - 1) or entry)
+        return expiresAt <= 0 or expiresAt > now
+    elseif check == 's' then
+        local score = redis.call('ZSCORE', ARGV[7] .. member, ARGV[8])
+        return score and (score == 'inf' or tonumber(score) > now) and redis.call('SISMEMBER', ARGV[9], member) == 1
+    end
+    return true
+end
+
+-- checks the next members of the rotating sweep and returns the next cursor
+local function sweep()
+    local scan = redis.call('ZSCAN', KEYS[1], redis.call('GET', KEYS[2]) or '0', 'COUNT', limit)
+    local members = scan[2]
+    for i = 1, #members, 2 do
+        if not isLive(members[i]) then
+            redis.call('ZREM', KEYS[1], members[i])
+        end
+    end
+    if ttl > 0 then
+        redis.call('SET', KEYS[2], scan[1], 'PX', ttl)
+    else
+        redis.call('SET', KEYS[2], scan[1])
+    end
+    return scan[1]
+end
+
+for i = 10, #ARGV, 3 do
+    local op, member, score = ARGV[i], ARGV[i + 1], ARGV[i + 2]
+    if op == 'd' then
+        redis.call('ZREM', KEYS[1], member)
+    else
+        local command = {'ZADD', KEYS[1]}
+        if op == 'r' then
+            command[#command + 1] = 'XX'
+        elseif policy == 'FIFO' then
+            command[#command + 1] = 'NX'
+        end
+        if policy == 'LFU' then
+            command[#command + 1] = 'INCR'
+        end
+        if op == 'w' then
+            written = true
+        end
+        command[#command + 1] = score
+        command[#command + 1] = member
+        redis.call(unpack(command))
+    end
+end
+
+if written and ttl > 0 then
+    redis.call('PEXPIRE', KEYS[1], ttl)
+end
+
+sweep()
+
+local maxEntries = tonumber(ARGV[2])
+if maxEntries < 1 then
+    return {}
+end
+
+-- the count may include dead members the sweep has not reached yet, so check up to every member
+-- before evicting live entries
+local count = redis.call('ZCARD', KEYS[1])
+local steps = math.ceil(count / limit)
+while count > maxEntries and steps > 0 do
+    sweep()
+    steps = steps - 1
+    count = redis.call('ZCARD', KEYS[1])
+end
+
+local evicted = {}
+while count > maxEntries and #evicted < limit do
+    local popped = redis.call('ZPOPMIN', KEYS[1], math.min(count - maxEntries, limit - #evicted))
+    if #popped == 0 then
+        break
+    end
+    for i = 1, #popped, 2 do
+        if isLive(popped[i]) then
+            evicted[#evicted + 1] = popped[i]
+        end
+    end
+    count = count - #popped / 2
+end
+
+return evicted
@@ -0,0 +1,81 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.jivesoftware.openfire.session.DomainPair;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CacheKeyCodecRegistry_getCodecTest
+{
+	protected CacheKeyCodecRegistry createRegistry()
+	{
+		final CacheKeyCodecRegistry registry = new CacheKeyCodecRegistry(new ObjectMapper());
+		RedisDelegatedClusterCacheFactory.registerKeyCodecs(registry);
+		
+		return registry;
+	}
+	
+	@Test
+	public void testGetCodec_boundTypes_assertSpecializedCodecs() throws Exception
+	{
+		final CacheKeyCodecRegistry registry = createRegistry();
+		
+		assertTrue(registry.getCodec(new TypeReference<DomainPair>() {}) instanceof DomainPairCacheKeyCodec);
+		assertTrue(registry.getCodec(new TypeReference<NodeID>() {}) instanceof NodeIdCacheKeyCodec);
+		assertTrue(registry.getCodec(new TypeReference<JID>() {}) instanceof JidCacheKeyCodec);
+	}
+	
+	@Test
+	public void testGetCodec_unboundTypes_assertDefaultCodec() throws Exception
+	{
+		final CacheKeyCodecRegistry registry = createRegistry();
+		
+		assertTrue(registry.getCodec(new TypeReference<String>() {}) instanceof DefaultCacheKeyCodec);
+		assertTrue(registry.getCodec(new TypeReference<Serializable>() {}) instanceof DefaultCacheKeyCodec);
+	}
+	
+	@Test
+	public void testEncodeDecode_stringKey_assertNotCopied() throws Exception
+	{
+		final CacheKeyCodec codec = new DefaultCacheKeyCodec();
+		
+		final String key = "TestKey";
+		
+		assertSame(key, codec.encode(key));
+		assertEquals("12", codec.encode(12));
+		assertSame(key, codec.decode(key));
+	}
+	
+	@Test
+	public void testEncodeDecode_domainPair_assertCompactAndStable() throws Exception
+	{
+		final CacheKeyCodec codec = new DomainPairCacheKeyCodec();
+		
+		final DomainPair key = new DomainPair("cerner.com", "direct.securehealthemail.com");
+		
+		final String encoded = codec.encode(key);
+		
+		assertEquals("cerner.com|direct.securehealthemail.com", encoded);
+		assertEquals(key, codec.decode(encoded));
+	}
+	
+	@Test
+	public void testEncodeDecode_nodeId_assertRoundTrip() throws Exception
+	{
+		final CacheKeyCodec codec = new NodeIdCacheKeyCodec();
+		
+		final NodeID key = NodeID.getInstance("0001".getBytes());
+		
+		assertEquals("0001", codec.encode(key));
+		assertEquals(key, codec.decode(codec.encode(key)));
+	}
+}
@@ -0,0 +1,82 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.jivesoftware.openfire.roster.Roster;
+import org.jivesoftware.openfire.spi.ClientRoute;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CacheValueCodecRegistry_getCodecTest
+{
+	protected CacheValueCodecRegistry createRegistry()
+	{
+		final CacheValueCodecRegistry registry = new CacheValueCodecRegistry(new ObjectMapper());
+		RedisDelegatedClusterCacheFactory.registerValueCodecs(registry);
+		
+		return registry;
+	}
+	
+	@Test
+	public void testGetCodec_boundTypes_assertSpecializedCodecs() throws Exception
+	{
+		final CacheValueCodecRegistry registry = createRegistry();
+		
+		assertTrue(registry.getCodec(new TypeReference<NodeID>() {}) instanceof NodeIdCacheValueCodec);
+		assertTrue(registry.getCodec(new TypeReference<ClientRoute>() {}) instanceof ClientRouteCacheValueCodec);
+		assertTrue(registry.getCodec(new TypeReference<Roster>() {}) instanceof ExternalizableCacheValueCodec);
+	}
+	
+	@Test
+	public void testGetCodec_unboundTypes_assertFallbackCodecs() throws Exception
+	{
+		final CacheValueCodecRegistry registry = createRegistry();
+		
+		assertTrue(registry.getCodec(new TypeReference<List<NodeID>>() {}) instanceof DefaultCacheValueCodec);
+		assertTrue(registry.getCodec(new TypeReference<DefaultCacheValueCodec_encodeDecodeTest.TestExternalizable>() {}) 
+				instanceof ExternalizableCacheValueCodec);
+	}
+	
+	@Test
+	public void testEncodeDecode_nodeId_assertCompact() throws Exception
+	{
+		final CacheValueCodec codec = new NodeIdCacheValueCodec();
+		
+		final byte[] encoded = codec.encode(NodeID.getInstance("0001".getBytes()));
+		
+		assertEquals(5, encoded.length);
+		assertArrayEquals("0001".getBytes(), ((NodeID)codec.decode(encoded)).toByteArray());
+	}
+	
+	@Test
+	public void testEncodeDecode_clientRoute_assertCompact() throws Exception
+	{
+		final CacheValueCodec codec = new ClientRouteCacheValueCodec();
+		
+		final byte[] encoded = codec.encode(new ClientRoute(NodeID.getInstance("0001".getBytes()), true));
+		
+		assertEquals(6, encoded.length);
+		
+		final ClientRoute route = (ClientRoute)codec.decode(encoded);
+		assertArrayEquals("0001".getBytes(), route.getNodeID().toByteArray());
+		assertTrue(route.isAvailable());
+	}
+	
+	@Test
+	public void testDecode_legacyExternalizedClientRoute() throws Exception
+	{
+		final byte[] legacy = new ExternalizableCacheValueCodec(ClientRoute.class).encode(new ClientRoute(NodeID.getInstance("0001".getBytes()), false));
+		
+		final ClientRoute route = (ClientRoute)new ClientRouteCacheValueCodec().decode(legacy);
+		
+		assertArrayEquals("0001".getBytes(), route.getNodeID().toByteArray());
+		assertEquals(false, route.isAvailable());
+	}
+}
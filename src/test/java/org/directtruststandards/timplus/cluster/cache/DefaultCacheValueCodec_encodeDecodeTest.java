@@ -0,0 +1,100 @@
+package org.directtruststandards.timplus.cluster.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DefaultCacheValueCodec_encodeDecodeTest
+{
+	@Test
+	public void testEncodeDecode_jsonValue() throws Exception
+	{
+		final DefaultCacheValueCodec codec = new DefaultCacheValueCodec(new ObjectMapper(), new TypeReference<String>() {});
+		
+		final byte[] encoded = codec.encode("TestValue");
+		
+		assertEquals("\"TestValue\"", new String(encoded, StandardCharsets.UTF_8));
+		assertEquals("TestValue", codec.decode(encoded));
+	}
+	
+	@Test
+	public void testEncodeDecode_externalizableValue_assertRawBytes() throws Exception
+	{
+		final DefaultCacheValueCodec codec = new DefaultCacheValueCodec(new ObjectMapper(), new TypeReference<TestExternalizable>() {});
+		
+		final byte[] encoded = codec.encode(new TestExternalizable("TestValue"));
+		
+		assertEquals((byte)0xAC, encoded[0]);
+		assertEquals("TestValue", ((TestExternalizable)codec.decode(encoded)).value);
+	}
+	
+	@Test
+	public void testEncodeDecode_genericValue_assertResolvedOnce() throws Exception
+	{
+		final DefaultCacheValueCodec codec = new DefaultCacheValueCodec(new ObjectMapper(), new TypeReference<Map<String, List<String>>>() {});
+		
+		assertFalse(codec.isExternalizable());
+		
+		final Map<String, List<String>> value = Collections.singletonMap("TestKey", Arrays.asList("TestValue1", "TestValue2"));
+		
+		assertEquals(value, codec.decode(codec.encode(value)));
+	}
+	
+	@Test
+	public void testDecode_legacyBase64ExternalizableValue() throws Exception
+	{
+		final DefaultCacheValueCodec codec = new DefaultCacheValueCodec(new ObjectMapper(), new TypeReference<TestExternalizable>() {});
+		
+		final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		final ObjectOutputStream obOutStream = new ObjectOutputStream(outStream);
+		new TestExternalizable("TestValue").writeExternal(obOutStream);
+		obOutStream.flush();
+		
+		final byte[] legacy = Base64.encodeBase64String(outStream.toByteArray()).getBytes(StandardCharsets.UTF_8);
+		
+		assertEquals("TestValue", ((TestExternalizable)codec.decode(legacy)).value);
+	}
+	
+	public static class TestExternalizable implements Externalizable
+	{
+		protected String value;
+		
+		public TestExternalizable()
+		{
+		}
+		
+		public TestExternalizable(String value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException
+		{
+			out.writeUTF(value);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException
+		{
+			value = in.readUTF();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package org.directtruststandards.timplus.cluster.cache;
 
+import java.io.IOException;
+
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
@@ -23,19 +25,19 @@ public class TestApplication
     private RedisServer redisServer;
 
     
-    public TestApplication(RedisProperties redisProperties) 
+    public TestApplication(RedisProperties redisProperties) throws IOException
     {
         this.redisServer = new RedisServer(redisProperties.getPort());
     }
 
     @PostConstruct
-    public void postConstruct() 
+    public void postConstruct() throws IOException
     {
         redisServer.start();
     }
 
     @PreDestroy
-    public void preDestroy() 
+    public void preDestroy() throws IOException
     {
         redisServer.stop();
     }	
@@ -0,0 +1,121 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.directtruststandards.timplus.cluster.cache.CacheAsyncExecutor;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_asyncTest extends SpringBaseTest
+{
+	@Test
+	public void testAsync_putGetRemove_assertCompletedInOrder() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitCache");
+		
+		final CompletableFuture<Serializable> put = cache.putAsync("TestKey", "TestValue");
+		final CompletableFuture<Serializable> get = cache.getAsync("TestKey");
+		final CompletableFuture<Serializable> remove = cache.removeAsync("TestKey");
+		final CompletableFuture<Serializable> getRemoved = cache.getAsync("TestKey");
+		
+		assertEquals("TestValue", put.get());
+		assertEquals("TestValue", get.get());
+		assertEquals("TestValue", remove.get());
+		assertNull(getRemoved.get());
+		
+		assertEquals(1, cache.getStatistics().getPuts());
+		assertEquals(1, cache.getStatistics().getRemoves());
+		assertEquals(0, cache.getStatistics().getFailedWrites());
+	}
+	
+	@Test
+	public void testAsyncWrites_putThenRead_assertLocalNodeReadsOwnWrites() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitAsyncCache");
+		
+		for (int i = 0; i < 100; ++i)
+			cache.put("TestKey", "TestValue" + i);
+		
+		for (int i = 0; i < 20; ++i)
+			cache.put("TestKey" + i, "TestValue" + i);
+		
+		// the last write of each key wins even though callers never waited
+		assertEquals("TestValue99", cache.get("TestKey"));
+		assertTrue(cache.containsKey("TestKey19"));
+		assertEquals(21, cache.size());
+		
+		assertEquals("TestValue5", cache.remove("TestKey5"));
+		assertFalse(cache.containsKey("TestKey5"));
+		
+		cache.clear();
+		
+		assertEquals(0, cache.size());
+		assertTrue(cache.pendingWrites.isEmpty());
+	}
+	
+	@Test
+	public void testAsyncWrites_flushPendingWrites_assertWrittenToRedis() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitAsyncCache");
+		
+		cache.put("TestKey", "TestValue");
+		
+		cache.flushPendingWrites();
+		
+		assertTrue(cache.pendingWrites.isEmpty());
+		assertEquals("TestValue", cache.getRemote(cache.encodeKey("TestKey")));
+		
+		cache.clear();
+	}
+	
+	@Test
+	public void testAsyncExecutor_stripeThreadSubmitsToFullStripe_assertRejectedWithoutBlocking() throws Exception
+	{
+		final ClusterCacheProperties properties = new ClusterCacheProperties();
+		properties.setAsyncThreads(1);
+		properties.setAsyncQueueCapacity(1);
+		
+		final CacheAsyncExecutor executor = new CacheAsyncExecutor(properties);
+		try
+		{
+			// the operation runs on the stripe thread and fills the stripe's queue before submitting again
+			final CompletableFuture<CompletableFuture<String>> nested = executor.submit("JUnitCache", "TestKey", () ->
+			{
+				executor.submit("JUnitCache", "TestKey", () -> "Queued");
+				return executor.submit("JUnitCache", "TestKey", () -> "Rejected");
+			});
+			
+			final CompletableFuture<String> rejected = nested.get(5, TimeUnit.SECONDS);
+			
+			final ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		finally
+		{
+			executor.destroy();
+		}
+		
+		final ExecutionException e = assertThrows(ExecutionException.class, 
+				() -> executor.submit("JUnitCache", "TestKey", () -> "ShutDown").get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+	}
+	
+	protected RedisClusteredCache<Serializable, Serializable> createCache(String cacheName)
+	{
+		return new GenericRouteCache<>(cacheName, -1, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+	}
+}
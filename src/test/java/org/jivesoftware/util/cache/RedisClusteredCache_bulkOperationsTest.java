@@ -0,0 +1,162 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_bulkOperationsTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+
+	@Test
+	public void testPutAll_multipleChunks_assertAllCached() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1234; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+
+		cache.putAll(entries);
+
+		assertEquals(1234, cache.size());
+		assertEquals("TestValue0", cache.get("TestKey0"));
+		assertEquals("TestValue1233", cache.get("TestKey1233"));
+	}
+
+	@Test
+	public void testPutAll_existingEntries_assertReplaced() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		cache.put("TestKey1", "OldValue");
+
+		final Map<String, String> entries = new HashMap<>();
+		entries.put("TestKey1", "TestValue1");
+		entries.put("TestKey2", "TestValue2");
+
+		cache.putAll(entries);
+
+		assertEquals(2, cache.size());
+		assertEquals("TestValue1", cache.get("TestKey1"));
+		assertEquals(1, redisRepo.findByClusteredCacheKey(cache.getName() + "TestKey1").size());
+	}
+
+	@Test
+	public void testPutAll_scriptsFlushed_assertReloadedAndCached() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		redisTemplate.execute((RedisCallback<Void>)connection ->
+		{
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 10; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+
+		cache.putAll(entries);
+
+		assertEquals(10, cache.size());
+		assertEquals("TestValue9", cache.get("TestKey9"));
+	}
+
+	@Test
+	public void testGetAll_someKeysMissing_assertOnlyFoundReturned() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		cache.put("TestKey1", "TestValue1");
+		cache.put("TestKey3", "TestValue3");
+
+		final Map<Serializable, Serializable> values = cache.getAll(Arrays.asList("TestKey1", "TestKey2", "TestKey3"));
+
+		assertEquals(2, values.size());
+		assertEquals("TestValue1", values.get("TestKey1"));
+		assertEquals("TestValue3", values.get("TestKey3"));
+		assertFalse(values.containsKey("TestKey2"));
+	}
+
+	@Test
+	public void testGetAll_multipleChunks_assertAllReturned() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final Map<String, String> entries = new HashMap<>();
+		final List<Serializable> keys = new ArrayList<>();
+		for (int i = 0; i < 1234; ++i)
+		{
+			entries.put("TestKey" + i, "TestValue" + i);
+			keys.add("TestKey" + i);
+		}
+
+		cache.putAll(entries);
+
+		final Map<Serializable, Serializable> values = cache.getAll(keys);
+
+		assertEquals(1234, values.size());
+		for (int i = 0; i < 1234; ++i)
+			assertEquals("TestValue" + i, values.get("TestKey" + i));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGetAll_entriesFromMultipleNodes_assertMerged() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+
+		cache1.put("TestKey", "TestValue1");
+		cache2.put("TestKey", "TestValue2");
+
+		final Map<Serializable, Serializable> values = cache1.getAll(Collections.singletonList("TestKey"));
+
+		final Collection<Object> merged = (Collection<Object>)values.get("TestKey");
+
+		assertEquals(2, merged.size());
+		assertTrue(merged.contains("TestValue1"));
+		assertTrue(merged.contains("TestValue2"));
+	}
+
+	@Test
+	public void testGetAll_scriptsFlushed_assertReloaded() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		cache.put("TestKey", "TestValue");
+
+		redisTemplate.execute((RedisCallback<Void>)connection ->
+		{
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+
+		assertEquals("TestValue", cache.getAll(Collections.singletonList("TestKey")).get("TestKey"));
+	}
+}
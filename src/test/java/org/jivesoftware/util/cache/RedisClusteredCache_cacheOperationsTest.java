@@ -320,6 +320,42 @@ public class RedisClusteredCache_cacheOperationsTest extends SpringBaseTest
 		assertEquals(1, cache.size());
 	}
 	
+	@Test
+	public void testCacheObjects_singletonClusterCache_putFromOtherNode_assertReplaced() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final String entryKey = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), false, true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), false, true);
+		
+		cache1.put(entryKey, "TestValue1");
+		
+		cache2.put(entryKey, "TestValue2");
+		
+		assertEquals("TestValue2", cache1.get(entryKey));
+		
+		final Collection<RedisCacheEntry> entries = redisRepo.findByClusteredCacheKey(cacheName + entryKey);
+		
+		assertEquals(1, entries.size());
+		
+		final RedisCacheEntry entry = entries.iterator().next();
+		
+		assertEquals(cacheName + "0001" + entryKey, entry.getKey());
+		assertEquals(cacheName, entry.getCacheName());
+		assertEquals(cacheName + "0001", entry.getNodeCacheName());
+		
+		assertEquals(0, redisRepo.findByNodeCacheName(cacheName + "0000").size());
+		assertEquals(1, redisRepo.findByCacheName(cacheName).size());
+		
+		cache2.remove(entryKey);
+		
+		assertNull(cache1.get(entryKey));
+		assertEquals(0, redisRepo.count());
+	}	
+	
 	@Test
 	public void testCacheObjects_clear() throws Exception
 	{	
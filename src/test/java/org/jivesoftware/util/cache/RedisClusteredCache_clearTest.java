@@ -0,0 +1,124 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheOperation;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheScripts;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.RetiredEntryReclaimer;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_clearTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+	
+	@Autowired
+	protected RetiredEntryReclaimer reclaimer;
+	
+	@Test
+	public void testClear_largeCache_assertEntriesHiddenImmediatelyAndReclaimed() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 5000; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache1.putAll(entries);
+		cache2.put("TestKey0", "OtherNodeValue");
+		
+		cache1.clear();
+		
+		// a single script retires the node's entries regardless of their number
+		assertTrue(cache1.getMetrics().getOperationMetrics(CacheOperation.CLEAR).getRedisRoundTrips() <= 2);
+		
+		assertEquals(0, cache1.size());
+		assertEquals("OtherNodeValue", cache2.get("TestKey0"));
+		assertNull(cache2.get("TestKey1"));
+		assertEquals(Collections.singletonMap("TestKey0", "OtherNodeValue"), cache2.getAll(Arrays.asList("TestKey1", "TestKey0")));
+		assertFalse(cache2.containsKey("TestKey1"));
+		assertEquals(1, cache2.values().size());
+		
+		reclaimer.reclaimNow(cacheName, 500);
+		
+		assertTrue(redisRepo.findByClusteredCacheKey(cacheName + "TestKey1").isEmpty());
+		assertEquals(1, redisRepo.findByCacheName(cacheName).size());
+		
+		final long retiredIndexes = redisTemplate.execute((RedisCallback<Long>)connection ->
+			connection.setCommands().sCard(RedisCacheScripts.retiredIndexesKey(cacheName).getBytes(StandardCharsets.UTF_8)));
+		
+		assertEquals(0, retiredIndexes);
+	}
+	
+	@Test
+	public void testClear_rewriteAfterClear_assertRewriteSurvivesReclaim() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		cache.put("OtherKey", "OtherValue");
+		
+		cache.clear();
+		
+		assertNull(cache.remove("OtherKey"));
+		
+		cache.put("TestKey", "NewValue");
+		
+		reclaimer.reclaimNow(cacheName, 500);
+		
+		assertEquals("NewValue", cache.get("TestKey"));
+		assertNull(cache.get("OtherKey"));
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void testClear_singletonCache_assertCleared() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, 
+				NodeID.getInstance("0000".getBytes()), false, true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		cache.clear();
+		
+		assertNull(cache.get("TestKey"));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testClear_emptyCache_assertNothingRetired() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.clear();
+		
+		assertFalse(reclaimer.hasRetiredEntries(cacheName));
+	}
+}
@@ -0,0 +1,103 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+
+import org.directtruststandards.timplus.cluster.cache.NearCache;
+import org.directtruststandards.timplus.cluster.cache.NearCacheInvalidationBus;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheEntry;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+public class RedisClusteredCache_clientTrackingTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+	
+	@Autowired
+	protected RedisMessageListenerContainer listenerContainer;
+	
+	@Test
+	public void testClientTracking_trackingCache_assertTracked() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitTrackingCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		assertNotNull(cache.nearCache);
+		assertNotNull(cache.clientTracking);
+		assertTrue(cache.clientTracking.isTracking());
+	}
+	
+	@Test
+	public void testClientTracking_entryModifiedByOtherClient_assertInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitTrackingCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		// Redis pushes the invalidation of our own write asynchronously... read until the near cache holds the entry
+		final long populateTimeout = System.currentTimeMillis() + 5000;
+		do
+		{
+			assertEquals("TestValue", cache.get("TestKey"));
+			Thread.sleep(20);
+		} while (cache.nearCache.size() == 0 && System.currentTimeMillis() < populateTimeout);
+		
+		assertEquals(1, cache.nearCache.size());
+		
+		// overwrite the entry without going through the cache... no invalidation is published
+		redisRepo.save(new RedisCacheEntry("JUnitTrackingCache" + cache.nodeId.toString() + "TestKey", "JUnitTrackingCache" + "TestKey", 
+				"JUnitTrackingCache", "JUnitTrackingCache" + cache.nodeId.toString(), objectMapper.writeValueAsString("TestValue2"), 50000L));
+		
+		final long timeout = System.currentTimeMillis() + 5000;
+		while (cache.nearCache.size() > 0 && System.currentTimeMillis() < timeout)
+			Thread.sleep(20);
+		
+		assertEquals(0, cache.nearCache.size());
+		
+		assertEquals("TestValue2", cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testClientTracking_clear_assertRemoteNearCachesInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitTrackingCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		// clearing retires the entries without touching the keys Redis tracks... other nodes rely on the bus
+		final NearCacheInvalidationBus remoteBus = new NearCacheInvalidationBus(redisTemplate);
+		final ChannelTopic topic = new ChannelTopic(NearCacheInvalidationBus.INVALIDATION_CHANNEL);
+		final NearCache<String> remoteNearCache = new NearCache<>(50, 50000);
+		remoteBus.register("JUnitTrackingCache", remoteNearCache);
+		listenerContainer.addMessageListener(remoteBus, topic);
+		try
+		{
+			remoteNearCache.put("TestKey", "TestValue", remoteNearCache.epoch());
+			assertEquals(1, remoteNearCache.size());
+			
+			cache.clear();
+			
+			final long timeout = System.currentTimeMillis() + 5000;
+			while (remoteNearCache.size() > 0 && System.currentTimeMillis() < timeout)
+				Thread.sleep(20);
+		}
+		finally
+		{
+			listenerContainer.removeMessageListener(remoteBus, topic);
+			remoteBus.destroy();
+		}
+		
+		assertEquals(0, remoteNearCache.size());
+	}
+}
@@ -0,0 +1,196 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_evictionTest extends SpringBaseTest
+{
+	@Test
+	public void testEviction_lru_assertLeastRecentlyUsedEvicted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitLruCache");
+
+		putRange(cache, 0, 10);
+		cache.evictionTracker.run();
+		Thread.sleep(10);
+
+		for (int i = 0; i < 5; ++i)
+			cache.get("TestKey" + i);
+		cache.evictionTracker.run();
+		Thread.sleep(10);
+
+		putRange(cache, 10, 15);
+		cache.evictionTracker.run();
+
+		assertEquals(10, cache.size());
+		assertEquals(5, cache.getStatistics().getEvictions());
+		assertPresent(cache, 0, 5, true);
+		assertPresent(cache, 5, 10, false);
+		assertPresent(cache, 10, 15, true);
+
+		cache.clear();
+	}
+
+	@Test
+	public void testEviction_lfu_assertLeastFrequentlyUsedEvicted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitLfuCache");
+
+		putRange(cache, 0, 10);
+		for (int i = 0; i < 5; ++i)
+		{
+			cache.get("TestKey" + i);
+			cache.get("TestKey" + i);
+		}
+
+		putRange(cache, 10, 15);
+		for (int i = 10; i < 15; ++i)
+			cache.get("TestKey" + i);
+
+		cache.evictionTracker.run();
+
+		assertEquals(10, cache.size());
+		assertPresent(cache, 0, 5, true);
+		assertPresent(cache, 5, 10, false);
+		assertPresent(cache, 10, 15, true);
+
+		cache.clear();
+	}
+
+	@Test
+	public void testEviction_fifo_assertOldestEvictedAndMaxSizeLowered() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitFifoCache");
+
+		assertFifoEviction(cache);
+	}
+
+	@Test
+	public void testEviction_fifoHashCache_assertOldestEvictedAndMaxSizeLowered() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitFifoHashCache");
+
+		assertFifoEviction(cache);
+	}
+
+	@Test
+	public void testEviction_removedAndCleared_assertNotEvicted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache("JUnitLruCache");
+
+		putRange(cache, 0, 10);
+		cache.remove("TestKey0");
+		cache.evictionTracker.run();
+
+		// the removed entry no longer counts towards the max size
+		cache.put("TestKey10", "TestValue10");
+		cache.evictionTracker.run();
+
+		assertEquals(10, cache.size());
+		assertEquals(0, cache.getStatistics().getEvictions());
+
+		cache.clear();
+		putRange(cache, 0, 10);
+		cache.evictionTracker.run();
+
+		assertEquals(10, cache.size());
+		assertEquals(0, cache.getStatistics().getEvictions());
+
+		cache.clear();
+	}
+
+	@Test
+	public void testEviction_lfuWithExpiredEntries_assertLiveEntriesNotEvicted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitLfuCache", 10, 200,
+				NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+
+		// frequently used entries that expire keep high counts in the tracking set
+		putRange(cache, 0, 10);
+		for (int i = 0; i < 10; ++i)
+		{
+			cache.get("TestKey" + i);
+			cache.get("TestKey" + i);
+		}
+		cache.evictionTracker.run();
+
+		Thread.sleep(300);
+
+		putRange(cache, 10, 15);
+		cache.evictionTracker.run();
+
+		assertEquals(0, cache.getStatistics().getEvictions());
+		for (int i = 0; i < 10; ++i)
+			assertNull(cache.get("TestKey" + i));
+		assertPresent(cache, 10, 15, true);
+
+		// only live entries count towards the max size
+		putRange(cache, 15, 25);
+		cache.evictionTracker.run();
+
+		assertEquals(5, cache.getStatistics().getEvictions());
+
+		cache.clear();
+	}
+
+	protected void assertFifoEviction(RedisClusteredCache<Serializable, Serializable> cache) throws Exception
+	{
+		putRange(cache, 0, 10);
+		cache.evictionTracker.run();
+		Thread.sleep(10);
+
+		// neither reads nor rewrites make an entry newer
+		for (int i = 0; i < 5; ++i)
+			cache.get("TestKey" + i);
+		cache.put("TestKey0", "NewValue0");
+		Thread.sleep(10);
+
+		putRange(cache, 10, 15);
+		cache.evictionTracker.run();
+
+		assertEquals(10, cache.size());
+		assertNull(cache.get("TestKey0"));
+		assertPresent(cache, 0, 5, false);
+		assertPresent(cache, 5, 15, true);
+
+		cache.setMaxCacheSize(3);
+		cache.evictionTracker.run();
+
+		assertEquals(3, cache.size());
+		assertPresent(cache, 12, 15, true);
+
+		cache.clear();
+	}
+
+	protected RedisClusteredCache<Serializable, Serializable> createCache(String cacheName)
+	{
+		return new GenericRouteCache<>(cacheName, 10, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+	}
+
+	protected void putRange(RedisClusteredCache<Serializable, Serializable> cache, int start, int end)
+	{
+		for (int i = start; i < end; ++i)
+			cache.put("TestKey" + i, "TestValue" + i);
+	}
+
+	protected void assertPresent(RedisClusteredCache<Serializable, Serializable> cache, int start, int end, boolean present)
+	{
+		for (int i = start; i < end; ++i)
+		{
+			if (present)
+				assertTrue(cache.containsKey("TestKey" + i), "TestKey" + i);
+			else
+				assertFalse(cache.containsKey("TestKey" + i), "TestKey" + i);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.ExpiredEntrySweeper;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheScripts;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_expiredEntrySweepTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+	
+	@Autowired
+	protected ExpiredEntrySweeper sweeper;
+	
+	@Test
+	public void testSweep_expiredEntries_assertIndexesCleanedAndLiveEntriesKept() throws Exception
+	{
+		final NodeID nodeId = NodeID.getInstance("0000".getBytes());
+		
+		final RedisClusteredCache<Serializable, Serializable> expiringCache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 100, nodeId, true);
+		
+		final RedisClusteredCache<Serializable, Serializable> liveCache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, nodeId, true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 500; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		expiringCache.putAll(entries);
+		liveCache.putAll(entries);
+		
+		Thread.sleep(300);
+		
+		final long removedBefore = sweeper.getRemovedEntries();
+		
+		sweeper.sweepAll();
+		
+		// the background sweeper may have removed some of the entries first
+		assertTrue(sweeper.getRemovedEntries() - removedBefore > 0);
+		assertTrue(sweeper.getCompletedWalks() > 0);
+		
+		assertEquals(0, scard(RedisCacheScripts.indexKey("cacheName", expiringCache.getName())));
+		assertEquals(0, scard(RedisCacheScripts.indexKey("nodeCacheName", expiringCache.getName() + nodeId.toString())));
+		assertEquals(0, scard(RedisCacheScripts.indexKey("clusteredCacheKey", expiringCache.getName() + "TestKey0")));
+		assertFalse(exists("timplusclustercache:" + expiringCache.getName() + nodeId.toString() + "TestKey0:idx"));
+		assertEquals(0, expiringCache.size());
+		
+		assertEquals(500, liveCache.size());
+		assertEquals(500, scard(RedisCacheScripts.indexKey("cacheName", liveCache.getName())));
+		assertEquals("TestValue0", liveCache.get("TestKey0"));
+		
+		assertTrue((Long)ManagementFactory.getPlatformMBeanServer().getAttribute(ExpiredEntrySweeper.getObjectName(), "ScannedEntries") >= 1000);
+	}
+	
+	protected long scard(String key)
+	{
+		return redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sCard(key.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	protected boolean exists(String key)
+	{
+		return redisTemplate.execute((RedisCallback<Boolean>)connection -> connection.keyCommands().exists(key.getBytes(StandardCharsets.UTF_8)));
+	}
+}
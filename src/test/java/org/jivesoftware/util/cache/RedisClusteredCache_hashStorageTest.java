@@ -0,0 +1,204 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.directtruststandards.timplus.cluster.cache.HashRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_hashStorageTest extends SpringBaseTest
+{
+	protected static final String CACHE_NAME = "JUnitHashCache";
+
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+
+	@BeforeEach
+	protected void deleteHashes()
+	{
+		redisTemplate.execute((RedisCallback<Void>)connection ->
+		{
+			final Set<byte[]> keys = connection.keyCommands().keys((HashRedisCacheStore.KEYSPACE + ":*").getBytes(StandardCharsets.UTF_8));
+			if (!keys.isEmpty())
+				connection.keyCommands().del(keys.toArray(new byte[keys.size()][]));
+
+			return null;
+		});
+	}
+
+	@Test
+	public void testHashStorage_cacheRetrieveAndRemove() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		assertTrue(cache.store instanceof HashRedisCacheStore);
+
+		cache.put("TestKey", "TestValue");
+
+		assertEquals("TestValue", cache.get("TestKey"));
+		assertTrue(cache.containsKey("TestKey"));
+		assertTrue(cache.containsValue("TestValue"));
+		assertEquals(1, cache.size());
+
+		// no entity hashes or index sets are written
+		assertEquals(0, redisRepo.count());
+		assertEquals(1, hashLength(HashRedisCacheStore.getNodeKey(CACHE_NAME, NodeID.getInstance("0000".getBytes()))));
+
+		assertEquals("TestValue", cache.remove("TestKey"));
+
+		assertNull(cache.get("TestKey"));
+		assertFalse(cache.containsKey("TestKey"));
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testHashStorage_keySetEntrySetAndValues() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+
+		cache1.put("TestKey1", "TestValue1");
+		cache1.put("TestKey2", "TestValue2");
+		cache2.put("TestKey3", "TestValue3");
+
+		assertEquals(2, cache1.keySet().size());
+		assertTrue(cache1.keySet().contains("TestKey1"));
+		assertTrue(cache1.keySet().contains("TestKey2"));
+
+		assertEquals(2, cache1.entrySet().size());
+
+		// values span all nodes
+		final Collection<Serializable> values = cache1.values();
+		assertEquals(3, values.size());
+		assertTrue(values.contains("TestValue3"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testHashStorage_entriesFromMultipleNodes_assertMergedAndPurgedByNode() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+
+		cache1.put("TestKey", "TestValue1");
+		cache2.put("TestKey", "TestValue2");
+
+		final Collection<Object> merged = (Collection<Object>)cache1.get("TestKey");
+		assertEquals(2, merged.size());
+
+		cache1.purgeClusteredNodeCaches(NodeID.getInstance("0001".getBytes()));
+
+		assertEquals("TestValue1", cache1.get("TestKey"));
+		assertEquals(0, hashLength(HashRedisCacheStore.getNodeKey(CACHE_NAME, NodeID.getInstance("0001".getBytes()))));
+	}
+
+	@Test
+	public void testHashStorage_singletonCache_putFromOtherNode_assertReplaced() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0000".getBytes()), false, true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0001".getBytes()), false, true);
+
+		cache1.put("TestKey", "TestValue1");
+		cache2.put("TestKey", "TestValue2");
+
+		assertEquals("TestValue2", cache1.get("TestKey"));
+		assertEquals(0, cache1.size());
+	}
+
+	@Test
+	public void testHashStorage_entryExpiresWhileHashAlive_assertNotReturned() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(CACHE_NAME, 50, 1000, NodeID.getInstance("0000".getBytes()), true);
+
+		cache.put("TestKey1", "TestValue1");
+
+		Thread.sleep(600);
+
+		// refreshes the lifetime of the node hash
+		cache.put("TestKey2", "TestValue2");
+
+		Thread.sleep(600);
+
+		assertNull(cache.get("TestKey1"));
+		assertEquals("TestValue2", cache.get("TestKey2"));
+		assertFalse(cache.keySet().contains("TestKey1"));
+
+		Thread.sleep(600);
+
+		assertNull(cache.get("TestKey2"));
+		assertEquals(0, hashLength(HashRedisCacheStore.getNodeKey(CACHE_NAME, NodeID.getInstance("0000".getBytes()))));
+	}
+
+	@Test
+	public void testHashStorage_nodeKeepsWritingPastLifetime_assertExpiredFieldsRemoved() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(CACHE_NAME, -1, 100, NodeID.getInstance("0000".getBytes()), true);
+
+		// every write refreshes the lifetime of the node hash, so it never expires as a whole
+		for (int i = 0; i < 300; ++i)
+		{
+			cache.put("TestKey" + i, "TestValue" + i);
+			Thread.sleep(3);
+		}
+
+		final long length = hashLength(HashRedisCacheStore.getNodeKey(CACHE_NAME, NodeID.getInstance("0000".getBytes())));
+
+		assertTrue(length < 150, "Expired fields were not removed: " + length);
+		assertEquals(length, cache.size());
+		assertFalse(cache.isEmpty());
+		assertEquals("TestValue299", cache.get("TestKey299"));
+	}
+
+	@Test
+	public void testHashStorage_putAllAndGetAll_multipleChunks() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final Map<String, String> entries = new HashMap<>();
+		final List<Serializable> keys = new ArrayList<>();
+		for (int i = 0; i < 1234; ++i)
+		{
+			entries.put("TestKey" + i, "TestValue" + i);
+			keys.add("TestKey" + i);
+		}
+		keys.add("MissingKey");
+
+		cache.putAll(entries);
+
+		assertEquals(1234, cache.size());
+
+		final Map<Serializable, Serializable> values = cache.getAll(keys);
+
+		assertEquals(1234, values.size());
+		for (int i = 0; i < 1234; ++i)
+			assertEquals("TestValue" + i, values.get("TestKey" + i));
+	}
+
+	protected long hashLength(String key)
+	{
+		return redisTemplate.execute((RedisCallback<Long>)connection -> connection.hashCommands().hLen(key.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,57 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.DomainPairNodeIdRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.jivesoftware.openfire.session.DomainPair;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_keyCodecTest extends SpringBaseTest
+{
+	@Test
+	public void testKeyCodec_domainPairKeys_assertCompactEntryKeysAndDecodedKeys() throws Exception
+	{
+		final NodeID node = NodeID.getInstance("0001".getBytes());
+		
+		final DomainPairNodeIdRouteCache<DomainPair, NodeID> cache = new DomainPairNodeIdRouteCache<>("JUnitCache", -1, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final DomainPair key1 = new DomainPair("cerner.com", "direct.securehealthemail.com");
+		final DomainPair key2 = new DomainPair("cerner.com", "example.com");
+		
+		cache.put(key1, node);
+		cache.put(key2, node);
+		
+		// lookups with equal pairs resolve to the same entry
+		assertEquals(node, cache.get(new DomainPair("cerner.com", "direct.securehealthemail.com")));
+		assertTrue(cache.containsKey(new DomainPair("cerner.com", "example.com")));
+		
+		assertEquals(1, redisRepo.findByClusteredCacheKey("JUnitCache" + "cerner.com|direct.securehealthemail.com").size());
+		
+		// keys are decoded back to domain pairs
+		assertEquals(new HashSet<>(Arrays.asList(key1, key2)), cache.keySet());
+		
+		try (Stream<DomainPair> keys = cache.keyStream())
+		{
+			final Set<DomainPair> streamed = keys.collect(Collectors.toSet());
+			assertEquals(cache.keySet(), streamed);
+		}
+		
+		final Map<DomainPair, NodeID> values = cache.getAll(Arrays.asList(key1, new DomainPair("cerner.com", "missing.com")));
+		assertEquals(1, values.size());
+		assertEquals(node, values.get(key1));
+		
+		assertEquals(node, cache.remove(key1));
+		assertNull(cache.get(key1));
+	}
+}
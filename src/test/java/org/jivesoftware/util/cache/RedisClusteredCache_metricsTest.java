@@ -0,0 +1,129 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheMetrics;
+import org.directtruststandards.timplus.cluster.cache.CacheOperation;
+import org.directtruststandards.timplus.cluster.cache.CacheOperationMetrics;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_metricsTest extends SpringBaseTest
+{
+	@Test
+	public void testMetrics_get_assertLatencyAndCommandsRecorded() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		cache.get("TestKey");
+		cache.get("TestKey");
+		
+		final CacheOperationMetrics get = cache.getMetrics().getOperationMetrics(CacheOperation.GET);
+		
+		assertEquals(2, get.getCount());
+		assertTrue(get.getRedisCommands() >= 2);
+		assertEquals(get.getRedisCommands(), get.getRedisRoundTrips());
+		assertTrue(get.getMaxLatencyMicros() >= get.getP50LatencyMicros() / 2);
+		
+		assertEquals(1, cache.getMetrics().getOperationMetrics(CacheOperation.PUT).getCount());
+		assertTrue(cache.getMetrics().getOperationMetrics(CacheOperation.PUT).getRedisCommands() > 0);
+	}
+	
+	@Test
+	public void testMetrics_pipelinedPutAll_assertFewerRoundTripsThanCommands() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 100; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache.putAll(entries);
+		
+		final CacheOperationMetrics putAll = cache.getMetrics().getOperationMetrics(CacheOperation.PUT_ALL);
+		
+		assertEquals(1, putAll.getCount());
+		assertTrue(putAll.getRedisCommands() >= 100);
+		assertTrue(putAll.getRedisRoundTrips() < putAll.getRedisCommands());
+	}
+	
+	@Test
+	public void testMetrics_keySet_assertPagingCommandsCounted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		cache.keySet();
+		
+		assertTrue(cache.getMetrics().getOperationMetrics(CacheOperation.KEY_SET).getRedisCommands() > 0);
+	}
+	
+	@Test
+	public void testMetrics_sizeAndIsEmpty_assertSingleCommand() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1000; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache.putAll(entries);
+		
+		assertEquals(1000, cache.size());
+		assertFalse(cache.isEmpty());
+		
+		final CacheOperationMetrics size = cache.getMetrics().getOperationMetrics(CacheOperation.SIZE);
+		
+		assertEquals(2, size.getCount());
+		assertEquals(2, size.getRedisCommands());
+		assertEquals(2, size.getRedisRoundTrips());
+	}
+	
+	@Test
+	public void testMetrics_publishedOverJmx() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		cache.get("TestKey");
+		
+		assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(CacheMetrics.getObjectName(cacheName, CacheOperation.GET), "Count"));
+		assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(CacheMetrics.getObjectName(cacheName, null), "Hits"));
+	}
+	
+	@Test
+	public void testMetrics_renamedAndDestroyed_assertRemovedFromJmx() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		final String newCacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(cacheName, null)));
+		
+		cache.setName(newCacheName);
+		
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(cacheName, null)));
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(cacheName, CacheOperation.GET)));
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(newCacheName, CacheOperation.GET)));
+		
+		new RedisDelegatedClusterCacheFactory().destroyCache(cache);
+		
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(newCacheName, null)));
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(CacheMetrics.getObjectName(newCacheName, CacheOperation.GET)));
+	}
+}
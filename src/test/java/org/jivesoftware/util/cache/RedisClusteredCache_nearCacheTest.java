@@ -0,0 +1,213 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.Collections;
+
+import org.directtruststandards.timplus.cluster.cache.NearCache;
+import org.directtruststandards.timplus.cluster.cache.NearCacheInvalidationBus;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheEntry;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+public class RedisClusteredCache_nearCacheTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+	
+	@Autowired
+	protected RedisMessageListenerContainer listenerContainer;
+	
+	@Test
+	public void testNearCache_notEnabled_assertNoNearCache() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		assertNull(cache.nearCache);
+	}
+	
+	@Test
+	public void testNearCache_cacheAndRetrieve_assertServedLocally() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		assertNotNull(cache.nearCache);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		// remove the entry behind the cache's back... the near cache should still serve it
+		redisRepo.deleteAll();
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_putAndRemove_assertInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		cache.put("TestKey", "TestValue2");
+		
+		assertEquals("TestValue2", cache.get("TestKey"));
+		
+		cache.remove("TestKey");
+		
+		assertNull(cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_clear_assertInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		cache.clear();
+		
+		assertEquals(0, cache.nearCache.size());
+		
+		assertNull(cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_exceedMaxSize_assertBounded() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 2, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		for (int i = 0; i < 5; ++i)
+		{
+			cache.put("TestKey" + i, "TestValue" + i);
+			assertEquals("TestValue" + i, cache.get("TestKey" + i));
+		}
+		
+		assertEquals(2, cache.nearCache.size());
+	}
+	
+	@Test
+	public void testNearCache_expiredEntry_assertReadFromRedis() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 100, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		redisRepo.deleteAll();
+		
+		Thread.sleep(200);
+		
+		assertNull(cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_singletonCacheOverwrittenByOtherNode_assertInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), false, true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0001".getBytes()), false, true);
+		
+		cache1.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache1.get("TestKey"));
+		
+		cache2.put("TestKey", "TestValue2");
+		
+		assertEquals("TestValue2", cache1.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_invalidationFromRemoteNode_assertInvalidated() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		// simulate a write by another cluster node
+		final NodeID remoteNode = NodeID.getInstance("0001".getBytes());
+		redisRepo.save(new RedisCacheEntry("JUnitNearCache" + remoteNode.toString() + "TestKey", "JUnitNearCache" + "TestKey", 
+				"JUnitNearCache", "JUnitNearCache" + remoteNode.toString(), objectMapper.writeValueAsString("TestValue2"), 50000L));
+		redisRepo.deleteById("JUnitNearCache" + cache.nodeId.toString() + "TestKey");
+		
+		assertEquals("TestValue", cache.get("TestKey"));
+		
+		final NearCacheInvalidationBus remoteBus = new NearCacheInvalidationBus(redisTemplate);
+		try
+		{
+			remoteBus.invalidate("JUnitNearCache", Collections.singletonList("TestKey"));
+			
+			final long timeout = System.currentTimeMillis() + 5000;
+			while (cache.nearCache.size() > 0 && System.currentTimeMillis() < timeout)
+				Thread.sleep(20);
+		}
+		finally
+		{
+			remoteBus.destroy();
+		}
+		
+		assertEquals("TestValue2", cache.get("TestKey"));
+	}
+	
+	@Test
+	public void testNearCache_subscriptionLost_assertSuspendedUntilRestored() throws Exception
+	{
+		// the bus is not subscribed to the channel, so it never receives its own heartbeats
+		final NearCacheInvalidationBus bus = new NearCacheInvalidationBus(redisTemplate, 50);
+		final ChannelTopic topic = new ChannelTopic(NearCacheInvalidationBus.INVALIDATION_CHANNEL);
+		final NearCache<String> nearCache = new NearCache<>(50, 50000);
+		bus.register("JUnitNearCache", nearCache);
+		try
+		{
+			nearCache.put("TestKey", "TestValue", nearCache.epoch());
+			assertEquals(1, nearCache.size());
+			
+			long timeout = System.currentTimeMillis() + 5000;
+			while (bus.isSubscribed() && System.currentTimeMillis() < timeout)
+				Thread.sleep(20);
+			
+			assertFalse(bus.isSubscribed());
+			assertEquals(0, nearCache.size());
+			
+			nearCache.put("TestKey", "TestValue", nearCache.epoch());
+			assertEquals(0, nearCache.size());
+			
+			listenerContainer.addMessageListener(bus, topic);
+			
+			timeout = System.currentTimeMillis() + 5000;
+			while (!bus.isSubscribed() && System.currentTimeMillis() < timeout)
+				Thread.sleep(20);
+			
+			assertTrue(bus.isSubscribed());
+			
+			nearCache.put("TestKey", "TestValue", nearCache.epoch());
+			assertEquals(1, nearCache.size());
+		}
+		finally
+		{
+			listenerContainer.removeMessageListener(bus, topic);
+			bus.destroy();
+		}
+	}
+}
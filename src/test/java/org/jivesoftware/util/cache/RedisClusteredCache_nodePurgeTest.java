@@ -0,0 +1,110 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheOperation;
+import org.directtruststandards.timplus.cluster.cache.CacheOperationMetrics;
+import org.directtruststandards.timplus.cluster.cache.NodePurgeCoordinator;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheScripts;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+public class RedisClusteredCache_nodePurgeTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+	
+	@Test
+	public void testPurge_multipleBatches_assertNodeEntriesAndIndexesRemoved() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1234; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache1.putAll(entries);
+		cache2.put("TestKey0", "OtherNodeValue");
+		
+		cache1.purgeClusteredNodeCaches(NodeID.getInstance("0001".getBytes()));
+		
+		assertEquals(1234, cache1.size());
+		assertEquals(0, cache2.size());
+		assertEquals("TestValue0", cache1.get("TestKey0"));
+		
+		cache2.purgeClusteredNodeCaches(NodeID.getInstance("0000".getBytes()));
+		
+		assertEquals(0, cache1.size());
+		assertFalse(cache1.containsKey("TestKey0"));
+		assertTrue(redisRepo.findByClusteredCacheKey(cacheName + "TestKey0").isEmpty());
+		
+		final long remainingIndexMembers = redisTemplate.execute((RedisCallback<Long>)connection ->
+			connection.setCommands().sCard(RedisCacheScripts.indexKey("cacheName", cacheName).getBytes()));
+		
+		assertEquals(0, remainingIndexMembers);
+	}
+	
+	@Test
+	public void testPurge_assertBoundedRoundTrips() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 2000; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache.putAll(entries);
+		
+		cache.purgeClusteredNodeCaches(NodeID.getInstance("0000".getBytes()));
+		
+		assertEquals(0, cache.size());
+		
+		// one round trip to size the node's key set, one pipeline of batched scripts, and the invalidation
+		final CacheOperationMetrics purge = cache.getMetrics().getOperationMetrics(CacheOperation.PURGE);
+		assertTrue(purge.getRedisRoundTrips() <= 4);
+	}
+	
+	@Test
+	public void testPurge_leaseHolderStopped_assertLeaseTakenOverAndNodeEntriesRemoved() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+		final NodeID departed = NodeID.getInstance(UUID.randomUUID().toString().getBytes());
+		
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, departed, true);
+		
+		cache2.put("TestKey0", "DepartedNodeValue");
+		
+		// a node took the lease and stopped before recording its sweep
+		redisTemplate.execute((RedisCallback<Boolean>)connection -> connection.stringCommands().set((NodePurgeCoordinator.KEYSPACE + ":lease:" + departed.toString()).getBytes(), 
+				"StoppedNodeSweep".getBytes(), Expiration.milliseconds(500), SetOption.SET_IF_ABSENT));
+		
+		final long start = System.currentTimeMillis();
+		cache1.purgeClusteredNodeCaches(departed);
+		
+		assertTrue(System.currentTimeMillis() - start >= 400);
+		assertEquals(0, cache2.size());
+		assertFalse(cache1.containsKey("TestKey0"));
+	}
+}
@@ -0,0 +1,158 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties;
+import org.directtruststandards.timplus.cluster.cache.ClusterCacheProperties.StorageEngine;
+import org.directtruststandards.timplus.cluster.cache.NearCacheInvalidationBus;
+import org.directtruststandards.timplus.cluster.cache.NodePurgeCoordinator;
+import org.directtruststandards.timplus.cluster.cache.NodePurgeCoordinator.PurgeResult;
+import org.directtruststandards.timplus.cluster.cache.RedisCacheScripts;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_purgeCoordinationTest extends SpringBaseTest
+{
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+
+	@Autowired
+	protected RedisCacheScripts scripts;
+
+	@Autowired
+	protected NearCacheInvalidationBus invalidationBus;
+
+	@Autowired
+	protected ClusterCacheProperties properties;
+
+	@Test
+	public void testPurge_departedNode_assertAllCachesSweptOnce() throws Exception
+	{
+		final NodeID local = NodeID.getInstance("0000".getBytes());
+		final NodeID departed = NodeID.getInstance(UUID.randomUUID().toString().getBytes());
+
+		final String cacheName1 = UUID.randomUUID().toString();
+		final String cacheName2 = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> localCache1 = new GenericRouteCache<>(cacheName1, 50, 50000, local, true);
+		final RedisClusteredCache<Serializable, Serializable> localCache2 = new GenericRouteCache<>(cacheName2, 50, 50000, local, true);
+		final RedisClusteredCache<Serializable, Serializable> localHashCache = new GenericRouteCache<>("JUnitHashCache", 50, 50000, local, true);
+
+		final RedisClusteredCache<Serializable, Serializable> departedCache1 = new GenericRouteCache<>(cacheName1, 50, 50000, departed, true);
+		final RedisClusteredCache<Serializable, Serializable> departedCache2 = new GenericRouteCache<>(cacheName2, 50, 50000, departed, true);
+		final RedisClusteredCache<Serializable, Serializable> departedHashCache = new GenericRouteCache<>("JUnitHashCache", 50, 50000, departed, true);
+
+		localCache1.put("LocalKey", "LocalValue");
+		for (int i = 0; i < 100; ++i)
+		{
+			departedCache1.put("TestKey" + i, "TestValue" + i);
+			departedCache2.put("TestKey" + i, "TestValue" + i);
+			departedHashCache.put("TestKey" + i, "TestValue" + i);
+		}
+
+		// the first cache to ask sweeps every cache of the departed node
+		localCache1.purgeClusteredNodeCaches(departed);
+
+		assertEquals(0, departedCache1.size());
+		assertEquals(0, departedCache2.size());
+		assertEquals(0, departedHashCache.size());
+		assertEquals(1, localCache1.size());
+		assertNull(localCache2.get("TestKey0"));
+		assertNull(localHashCache.get("TestKey0"));
+
+		// the other caches skip their request for the sweep... a late write survives the skipped request
+		departedCache2.put("LateKey", "LateValue");
+
+		localCache2.purgeClusteredNodeCaches(departed);
+
+		assertEquals("LateValue", localCache2.get("LateKey"));
+
+		// a later request sweeps again
+		localCache2.purgeClusteredNodeCaches(departed);
+
+		assertNull(localCache2.get("LateKey"));
+	}
+
+	@Test
+	public void testPurge_leaseHeld_assertWaitsForSweepAndSkipped() throws Exception
+	{
+		final NodeID departed = NodeID.getInstance(UUID.randomUUID().toString().getBytes());
+		final byte[] leaseKey = (NodePurgeCoordinator.KEYSPACE + ":lease:" + departed.toString()).getBytes(StandardCharsets.UTF_8);
+		final byte[] sweptKey = (NodePurgeCoordinator.KEYSPACE + ":swept:" + departed.toString()).getBytes(StandardCharsets.UTF_8);
+
+		final RedisClusteredCache<Serializable, Serializable> localCache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		final RedisClusteredCache<Serializable, Serializable> departedCache = new GenericRouteCache<>(localCache.getName(), 50, 50000, departed, true);
+
+		departedCache.put("TestKey", "TestValue");
+
+		redisTemplate.execute((RedisCallback<Boolean>)connection -> connection.stringCommands().set(leaseKey, "othernode".getBytes(StandardCharsets.UTF_8)));
+
+		// the lease holder records its sweep... it never removed the entry, so the entry shows the request did not sweep
+		final Thread holder = new Thread(() ->
+		{
+			try
+			{
+				Thread.sleep(300);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			redisTemplate.execute((RedisCallback<Boolean>)connection -> connection.hashCommands().hSet(sweptKey,
+					localCache.getName().getBytes(StandardCharsets.UTF_8), "othernode".getBytes(StandardCharsets.UTF_8)));
+			redisTemplate.execute((RedisCallback<Long>)connection -> connection.keyCommands().del(leaseKey));
+		});
+		holder.start();
+
+		final long start = System.currentTimeMillis();
+		localCache.purgeClusteredNodeCaches(departed);
+		holder.join();
+
+		assertTrue(System.currentTimeMillis() - start >= 250);
+		assertEquals("TestValue", localCache.get("TestKey"));
+
+		// the recorded sweep is claimed, so a later request sweeps
+		localCache.purgeClusteredNodeCaches(departed);
+
+		assertNull(localCache.get("TestKey"));
+	}
+
+	@Test
+	public void testPurge_sweptByOtherNode_assertClaimedOnce() throws Exception
+	{
+		final NodeID departed = NodeID.getInstance(UUID.randomUUID().toString().getBytes());
+		final NodeID local = NodeID.getInstance("0001".getBytes());
+		final String cacheName = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> departedCache = new GenericRouteCache<>(cacheName, 50, 50000, departed, true);
+
+		departedCache.put("TestKey", "TestValue");
+
+		// stands in for the coordinator of another cluster node
+		final NodePurgeCoordinator otherNode = new NodePurgeCoordinator(redisTemplate, scripts, invalidationBus, properties);
+		final NodePurgeCoordinator.Registration registration = otherNode.registerCache(cacheName, StorageEngine.REPOSITORY);
+
+		final RedisClusteredCache<Serializable, Serializable> localCache = new GenericRouteCache<>(cacheName, 50, 50000, local, true);
+
+		localCache.purgeClusteredNodeCaches(departed);
+
+		assertNull(localCache.get("TestKey"));
+
+		assertEquals(PurgeResult.SKIPPED, otherNode.purge(registration, departed, local));
+		assertEquals(PurgeResult.PURGED, otherNode.purge(registration, departed, local));
+	}
+}
@@ -0,0 +1,257 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.StringNodeIdListRouteCache;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.StringStringListRouteCache;
+import org.directtruststandards.timplus.cluster.cache.RepositoryRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.RetiredEntryReclaimer;
+import org.directtruststandards.timplus.cluster.cache.SetRedisCacheStore;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class RedisClusteredCache_setStorageTest extends SpringBaseTest
+{
+	protected static final String COMPONENT_CACHE_NAME = "JUnitComponentSetCache";
+
+	protected static final String SESSION_CACHE_NAME = "JUnitSessionSetCache";
+
+	protected static final NodeID NODE1 = NodeID.getInstance("0000".getBytes());
+
+	protected static final NodeID NODE2 = NodeID.getInstance("0001".getBytes());
+
+	@Autowired
+	@Qualifier("redisTemplate")
+	protected RedisTemplate<?, ?> redisTemplate;
+
+	@Autowired
+	protected RetiredEntryReclaimer reclaimer;
+
+	@BeforeEach
+	protected void deleteSets()
+	{
+		redisTemplate.execute((RedisCallback<Void>)connection ->
+		{
+			final Set<byte[]> keys = connection.keyCommands().keys((SetRedisCacheStore.KEYSPACE + ":*").getBytes(StandardCharsets.UTF_8));
+			if (!keys.isEmpty())
+				connection.keyCommands().del(keys.toArray(new byte[keys.size()][]));
+
+			return null;
+		});
+	}
+
+	@Test
+	public void testSetStorage_putFromMultipleNodes_assertMergedAndRemovedByNode() throws Exception
+	{
+		final StringNodeIdListRouteCache<String, List<NodeID>> cache1 = new StringNodeIdListRouteCache<>(COMPONENT_CACHE_NAME, 50, 50000, NODE1, true);
+
+		final StringNodeIdListRouteCache<String, List<NodeID>> cache2 = new StringNodeIdListRouteCache<>(COMPONENT_CACHE_NAME, 50, 50000, NODE2, true);
+
+		assertTrue(cache1.store instanceof SetRedisCacheStore);
+
+		cache1.put("component.domain", new ArrayList<>(Arrays.asList(NODE1)));
+		cache2.put("component.domain", new ArrayList<>(Arrays.asList(NODE2)));
+
+		final List<NodeID> merged = cache1.get("component.domain");
+		assertEquals(2, merged.size());
+		assertTrue(merged.containsAll(Arrays.asList(NODE1, NODE2)));
+
+		// no entity hashes or index sets are written
+		assertEquals(0, redisRepo.count());
+		assertEquals(1, setSize(SetRedisCacheStore.getMembersKey(COMPONENT_CACHE_NAME, NODE1.toString(), "component.domain")));
+
+		assertEquals(Arrays.asList(NODE1), cache1.remove("component.domain"));
+		assertNull(cache1.remove("component.domain"));
+
+		assertEquals(Arrays.asList(NODE2), cache1.get("component.domain"));
+		assertEquals(0, cache1.size());
+		assertEquals(1, cache2.size());
+
+		// an empty collection is still an entry
+		cache2.put("component.domain", new ArrayList<>());
+		assertEquals(Collections.emptyList(), cache1.get("component.domain"));
+		assertTrue(cache1.containsKey("component.domain"));
+
+		cache2.remove("component.domain");
+		assertNull(cache1.get("component.domain"));
+		assertFalse(cache1.containsKey("component.domain"));
+	}
+
+	@Test
+	public void testSetStorage_addAndRemoveMembers_assertOnlyMembersWritten() throws Exception
+	{
+		final StringStringListRouteCache<String, List<String>> cache1 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE1, true);
+
+		final StringStringListRouteCache<String, List<String>> cache2 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE2, true);
+
+		cache1.addMember("user@domain", "user@domain/res1");
+		cache1.addMember("user@domain", "user@domain/res2");
+		cache2.addMember("user@domain", "user@domain/res3");
+
+		assertEquals(new HashSet<>(Arrays.asList("user@domain/res1", "user@domain/res2", "user@domain/res3")), new HashSet<>(cache2.get("user@domain")));
+
+		cache1.removeMember("user@domain", "user@domain/res1");
+
+		assertEquals(new HashSet<>(Arrays.asList("user@domain/res2", "user@domain/res3")), new HashSet<>(cache2.get("user@domain")));
+		assertEquals(1, setSize(SetRedisCacheStore.getMembersKey(SESSION_CACHE_NAME, NODE1.toString(), "user@domain")));
+
+		// removing the last member leaves an empty entry
+		cache1.removeMember("user@domain", "user@domain/res2");
+		assertEquals(Arrays.asList("user@domain/res3"), cache2.get("user@domain"));
+		assertEquals(1, cache1.size());
+
+		// removing a member of a key the node holds no entry for does not create an entry
+		cache1.removeMember("other@domain", "other@domain/res1");
+		assertFalse(cache1.containsKey("other@domain"));
+
+		final RedisClusteredCache<Serializable, Serializable> repositoryCache = new GenericRouteCache<>("JUnitCache", 50, 50000, NODE1, true);
+		assertThrows(UnsupportedOperationException.class, () -> repositoryCache.addMember("TestKey", "TestValue"));
+	}
+
+	@Test
+	public void testSetStorage_keySetEntrySetValuesAndPurge() throws Exception
+	{
+		final StringStringListRouteCache<String, List<String>> cache1 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE1, true);
+
+		final StringStringListRouteCache<String, List<String>> cache2 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE2, true);
+
+		final Map<String, List<String>> entries = new HashMap<>();
+		for (int i = 0; i < 1234; ++i)
+			entries.put("user" + i + "@domain", Arrays.asList("user" + i + "@domain/res1", "user" + i + "@domain/res2"));
+
+		cache1.putAll(entries);
+		cache2.put("user0@domain", Arrays.asList("user0@domain/res3"));
+
+		assertEquals(1234, cache1.size());
+		assertEquals(1234, cache1.keySet().size());
+		assertEquals(1234, cache1.entrySet().size());
+		assertEquals(1234, cache1.keyStream().count());
+
+		// values span all nodes
+		final Collection<List<String>> values = cache1.values();
+		assertEquals(1235, values.size());
+		assertEquals(1235, cache2.valueStream().count());
+
+		final Map<String, List<String>> read = cache2.getAll(Arrays.asList("user0@domain", "user1@domain", "missing@domain"));
+		assertEquals(2, read.size());
+		assertEquals(3, read.get("user0@domain").size());
+
+		// set members are unordered
+		assertTrue(cache2.containsValue(Arrays.asList("user7@domain/res2", "user7@domain/res1")));
+		assertFalse(cache2.containsValue(Arrays.asList("user7@domain/res1")));
+
+		cache2.purgeClusteredNodeCaches(NODE1);
+
+		assertEquals(0, cache1.size());
+		assertEquals(Arrays.asList("user0@domain/res3"), cache2.get("user0@domain"));
+		assertNull(cache2.get("user1@domain"));
+
+		cache2.clear();
+
+		assertNull(cache2.get("user0@domain"));
+		assertTrue(cache2.isEmpty());
+	}
+
+	@Test
+	public void testSetStorage_clear_assertRetiredAndReclaimed() throws Exception
+	{
+		final StringStringListRouteCache<String, List<String>> cache1 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE1, true);
+
+		final StringStringListRouteCache<String, List<String>> cache2 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 50000, NODE2, true);
+
+		final Map<String, List<String>> entries = new HashMap<>();
+		for (int i = 0; i < 1234; ++i)
+			entries.put("user" + i + "@domain", Arrays.asList("user" + i + "@domain/res1"));
+
+		cache1.putAll(entries);
+		cache2.put("user0@domain", Arrays.asList("user0@domain/res2"));
+
+		cache1.clear();
+
+		// retired entries are skipped before they are reclaimed
+		assertTrue(cache1.isEmpty());
+		assertNull(cache2.get("user1@domain"));
+		assertEquals(Arrays.asList("user0@domain/res2"), cache2.get("user0@domain"));
+		assertFalse(cache1.containsKey("user1@domain"));
+		assertNull(cache1.remove("user2@domain"));
+
+		// an entry written after the clear survives reclaiming
+		cache1.addMember("user3@domain", "user3@domain/res3");
+		assertEquals(Arrays.asList("user3@domain/res3"), cache2.get("user3@domain"));
+
+		reclaimer.reclaimNow(SESSION_CACHE_NAME, 100);
+
+		assertFalse(reclaimer.hasRetiredEntries(SESSION_CACHE_NAME));
+		assertEquals(0, setSize(SetRedisCacheStore.getMembersKey(SESSION_CACHE_NAME, NODE1.toString(), "user1@domain")));
+		assertEquals(Arrays.asList("user3@domain/res3"), cache2.get("user3@domain"));
+		assertEquals(1, cache1.size());
+	}
+
+	@Test
+	public void testSetStorage_entryExpires_assertNotReturned() throws Exception
+	{
+		final StringStringListRouteCache<String, List<String>> cache1 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 500, NODE1, true);
+
+		final StringStringListRouteCache<String, List<String>> cache2 = new StringStringListRouteCache<>(SESSION_CACHE_NAME, 50, 500, NODE2, true);
+
+		cache1.addMember("user@domain", "user@domain/res1");
+
+		Thread.sleep(300);
+
+		// refreshes the lifetime of the key but not of the other node's entry
+		cache2.addMember("user@domain", "user@domain/res2");
+
+		Thread.sleep(300);
+
+		assertEquals(Arrays.asList("user@domain/res2"), cache1.get("user@domain"));
+		assertFalse(cache1.keySet().contains("user@domain"));
+
+		// adding to an expired entry starts a new entry
+		cache1.addMember("user@domain", "user@domain/res3");
+		assertEquals(new HashSet<>(Arrays.asList("user@domain/res2", "user@domain/res3")), new HashSet<>(cache1.get("user@domain")));
+
+		Thread.sleep(600);
+
+		assertNull(cache1.get("user@domain"));
+	}
+
+	@Test
+	public void testSetStorage_nonCollectionCache_assertRepositoryFallback() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(COMPONENT_CACHE_NAME, 50, 50000, NODE1, true);
+
+		assertTrue(cache.store instanceof RepositoryRedisCacheStore);
+
+		cache.put("TestKey", "TestValue");
+
+		assertEquals("TestValue", cache.get("TestKey"));
+	}
+
+	protected long setSize(String key)
+	{
+		return redisTemplate.execute((RedisCallback<Long>)connection -> connection.setCommands().sCard(key.getBytes(StandardCharsets.UTF_8)));
+	}
+}
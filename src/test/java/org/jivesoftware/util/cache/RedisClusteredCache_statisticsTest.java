@@ -0,0 +1,79 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheStatistics;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_statisticsTest extends SpringBaseTest
+{
+	@Test
+	public void testStatistics_getHitsAndMisses_assertCounted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		cache.get("TestKey");
+		cache.get("TestKey");
+		cache.get("MissingKey");
+		cache.getAll(Arrays.asList("TestKey", "MissingKey"));
+		
+		assertEquals(3, cache.getCacheHits());
+		assertEquals(2, cache.getCacheMisses());
+		assertEquals(3, cache.getStatistics().getRemoteHits());
+		assertEquals(0, cache.getStatistics().getLocalHits());
+	}
+	
+	@Test
+	public void testStatistics_nearCacheHits_assertCountedAsLocal() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>("JUnitNearCache", 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		cache.getStatistics().reset();
+		
+		cache.put("StatsKey", "TestValue");
+		
+		cache.get("StatsKey");
+		cache.get("StatsKey");
+		
+		assertEquals(1, cache.getStatistics().getRemoteHits());
+		assertEquals(1, cache.getStatistics().getLocalHits());
+		
+		cache.remove("StatsKey");
+	}
+	
+	@Test
+	public void testStatistics_putsRemovesAndBytes_assertCounted() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 10; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+		
+		cache.putAll(entries);
+		cache.put("TestKey10", "TestValue10");
+		cache.remove("TestKey0");
+		
+		final CacheStatistics stats = cache.getStatistics();
+		
+		assertEquals(11, stats.getPuts());
+		assertEquals(1, stats.getRemoves());
+		assertTrue(stats.getSerializedBytesWritten() > 0);
+		assertTrue(stats.getSerializedBytesRead() > 0);
+		
+		// 10 entries of roughly 12 encoded bytes each
+		assertEquals(10 * stats.getAverageSerializedValueSize(), cache.getCacheSize());
+		assertTrue(cache.getCacheSize() > 100);
+	}
+}
@@ -0,0 +1,142 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_streamingTest extends SpringBaseTest
+{
+	@Test
+	public void testStreams_repositoryCache_assertMatchEagerViews() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+
+		assertStreamsMatchEagerViews(cache1, cache2);
+	}
+
+	@Test
+	public void testStreams_hashCache_assertMatchEagerViews() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>("JUnitHashCache", 50, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>("JUnitHashCache", 50, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+
+		// the hash cache is shared with other tests
+		try
+		{
+			assertStreamsMatchEagerViews(cache1, cache2);
+		}
+		finally
+		{
+			cache1.clear();
+			cache2.clear();
+		}
+	}
+
+	@Test
+	public void testStreams_clearedCache_assertRetiredEntriesSkipped() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0001".getBytes()), true);
+
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1000; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+
+		cache1.putAll(entries);
+		cache2.put("OtherKey", "OtherValue");
+
+		cache1.clear();
+
+		try (Stream<Serializable> values = cache2.valueStream())
+		{
+			assertEquals(1, values.filter("OtherValue"::equals).count());
+		}
+
+		try (Stream<Serializable> keys = cache1.keyStream())
+		{
+			assertEquals(0, keys.count());
+		}
+	}
+
+	@Test
+	public void testValueStream_closedEarly_assertLimitedAndReusable() throws Exception
+	{
+		final String cacheName = UUID.randomUUID().toString();
+
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(cacheName, 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 2000; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+
+		cache.putAll(entries);
+
+		for (int i = 0; i < 5; ++i)
+		{
+			try (Stream<Serializable> values = cache.valueStream())
+			{
+				assertEquals(10, values.limit(10).count());
+			}
+		}
+
+		assertEquals(2000, cache.valueStream().count());
+	}
+
+	protected void assertStreamsMatchEagerViews(RedisClusteredCache<Serializable, Serializable> cache1, RedisClusteredCache<Serializable, Serializable> cache2)
+	{
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1500; ++i)
+			entries.put("TestKey" + i, "TestValue" + i);
+
+		cache1.putAll(entries);
+		cache2.put("TestKey0", "OtherNodeValue");
+
+		final Set<Serializable> keys;
+		try (Stream<Serializable> stream = cache1.keyStream())
+		{
+			keys = stream.collect(Collectors.toSet());
+		}
+		assertEquals(entries.keySet(), keys);
+		assertEquals(cache1.keySet(), keys);
+
+		final Map<Serializable, Serializable> streamedEntries;
+		try (Stream<Entry<Serializable, Serializable>> stream = cache1.entryStream())
+		{
+			streamedEntries = stream.collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+		}
+		assertEquals(entries, streamedEntries);
+
+		final List<Serializable> values;
+		try (Stream<Serializable> stream = cache1.valueStream())
+		{
+			values = stream.collect(Collectors.toList());
+		}
+		assertEquals(new HashSet<>(cache1.values()), new HashSet<>(values));
+		assertEquals(cache1.values().size(), values.size());
+		assertTrue(values.contains("OtherNodeValue"));
+		assertTrue(values.containsAll(entries.values()));
+	}
+}
@@ -0,0 +1,89 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheOperation;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+
+public class RedisClusteredCache_valueIndexTest extends SpringBaseTest
+{
+	protected static final String CACHE_NAME = "JUnitValueIndexCache";
+	
+	@Test
+	public void testContainsValue_indexedCache_assertSingleRoundTrip() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+		
+		final String prefix = UUID.randomUUID().toString();
+		
+		final Map<String, String> entries = new HashMap<>();
+		for (int i = 0; i < 1000; ++i)
+			entries.put(prefix + "Key" + i, prefix + "Value" + i);
+		
+		cache.putAll(entries);
+		cache.put(prefix + "SingleKey", prefix + "SingleValue");
+		
+		assertTrue(cache.containsValue(prefix + "Value500"));
+		assertTrue(cache.containsValue(prefix + "SingleValue"));
+		assertFalse(cache.containsValue(prefix + "MissingValue"));
+		
+		assertEquals(3, cache.getMetrics().getOperationMetrics(CacheOperation.CONTAINS_VALUE).getRedisRoundTrips());
+		
+		cache.clear();
+	}
+	
+	@Test
+	public void testContainsValue_indexedCache_removedReplacedAndCleared_assertNotFound() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache1 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+		
+		final RedisClusteredCache<Serializable, Serializable> cache2 = new GenericRouteCache<>(CACHE_NAME, 50, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+		
+		final String prefix = UUID.randomUUID().toString();
+		
+		cache1.put(prefix + "Key1", prefix + "Value1");
+		cache1.put(prefix + "Key2", prefix + "Value2");
+		cache2.put(prefix + "Key3", prefix + "SharedValue");
+		cache1.put(prefix + "Key4", prefix + "SharedValue");
+		
+		// entries of other nodes are found
+		assertTrue(cache1.containsValue(prefix + "Value1"));
+		assertTrue(cache2.containsValue(prefix + "Value1"));
+		
+		cache1.remove(prefix + "Key1");
+		assertFalse(cache2.containsValue(prefix + "Value1"));
+		
+		cache1.put(prefix + "Key2", prefix + "NewValue2");
+		assertFalse(cache1.containsValue(prefix + "Value2"));
+		assertTrue(cache1.containsValue(prefix + "NewValue2"));
+		
+		// a value held by entries of two nodes survives the clear of one node
+		cache1.clear();
+		assertFalse(cache2.containsValue(prefix + "NewValue2"));
+		assertTrue(cache2.containsValue(prefix + "SharedValue"));
+		
+		cache2.clear();
+		assertFalse(cache1.containsValue(prefix + "SharedValue"));
+	}
+	
+	@Test
+	public void testContainsValue_unindexedCache_assertValueCompared() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = new GenericRouteCache<>(UUID.randomUUID().toString(), 50, 50000, NodeID.getInstance("0000".getBytes()), true);
+		
+		cache.put("TestKey", "TestValue");
+		
+		assertTrue(cache.containsValue("TestValue"));
+		assertFalse(cache.containsValue("OtherValue"));
+	}
+}
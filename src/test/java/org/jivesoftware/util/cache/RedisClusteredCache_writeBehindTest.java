@@ -0,0 +1,103 @@
+package org.jivesoftware.util.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.directtruststandards.timplus.cluster.cache.CacheWriteBehindFlusher;
+import org.directtruststandards.timplus.cluster.cache.RedisDelegatedClusterCacheFactory.GenericRouteCache;
+import org.directtruststandards.timplus.cluster.cache.SpringBaseTest;
+import org.jivesoftware.openfire.cluster.NodeID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class RedisClusteredCache_writeBehindTest extends SpringBaseTest
+{
+	@Autowired
+	protected CacheWriteBehindFlusher flusher;
+	
+	@Test
+	public void testWriteBehind_sameKey_assertCoalescedIntoSingleWrite() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache();
+		
+		for (int i = 0; i < 100; ++i)
+			cache.put("TestKey", "TestValue" + i);
+		
+		assertEquals(1, cache.writeBehind.size());
+		assertNull(cache.getRemote(cache.encodeKey("TestKey")));
+		
+		// reading a queued key flushes the queue first
+		assertEquals("TestValue99", cache.get("TestKey"));
+		assertEquals(0, cache.writeBehind.size());
+		assertEquals(1, cache.getStatistics().getPuts());
+		
+		cache.clear();
+	}
+	
+	@Test
+	public void testWriteBehind_batchSizeReached_assertFlushedInBackground() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache();
+		
+		for (int i = 0; i < 5; ++i)
+			cache.put("TestKey" + i, "TestValue" + i);
+		
+		for (int i = 0; i < 100 && cache.writeBehind.size() > 0; ++i)
+			Thread.sleep(10);
+		
+		assertEquals(0, cache.writeBehind.size());
+		assertEquals("TestValue4", cache.getRemote(cache.encodeKey("TestKey4")));
+		
+		cache.clear();
+	}
+	
+	@Test
+	public void testWriteBehind_queueFull_assertAllWritesKept() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache();
+		
+		final Map<String, String> values = new HashMap<>();
+		for (int i = 0; i < 25; ++i)
+			values.put("TestKey" + i, "TestValue" + i);
+		
+		cache.putAll(values);
+		
+		// writers flush a full queue themselves, so the queue never holds more than its capacity
+		assertTrue(cache.writeBehind.size() <= 10);
+		
+		assertEquals(25, cache.size());
+		assertEquals(25, cache.getStatistics().getPuts());
+		
+		cache.clear();
+	}
+	
+	@Test
+	public void testWriteBehind_flushIntervalAndClear_assertQueueFlushed() throws Exception
+	{
+		final RedisClusteredCache<Serializable, Serializable> cache = createCache();
+		
+		cache.put("TestKey", "TestValue");
+		
+		flusher.flushAll();
+		
+		assertEquals("TestValue", cache.getRemote(cache.encodeKey("TestKey")));
+		
+		cache.put("TestKey", "TestValue2");
+		cache.clear();
+		
+		// the queued write reached Redis before the clear, so it does not outlive it
+		assertEquals(0, cache.writeBehind.size());
+		assertNull(cache.get("TestKey"));
+	}
+	
+	protected RedisClusteredCache<Serializable, Serializable> createCache()
+	{
+		return new GenericRouteCache<>("JUnitWriteBehindCache", -1, 50000, NodeID.getInstance(UUID.randomUUID().toString().getBytes()), true);
+	}
+}